@@ -12,6 +12,7 @@ public abstract class Context {
 
     private final Container container;
     private volatile ContextListener contextListener;
+    private volatile FrameClock frameClock;
 
     public Context(Container container) {
         this(container, null);
@@ -34,6 +35,31 @@ public abstract class Context {
         this.contextListener = contextListener;
     }
 
+    public FrameClock getFrameClock() {
+        return frameClock;
+    }
+
+    /**
+     * Sets the clock advanced before each paint, whose alpha is passed to
+     * {@link ContextListener#onPaint(Context, Graphics, boolean, float)}. Null by default,
+     * in which case the alpha is always 1.
+     */
+    public void setFrameClock(FrameClock frameClock) {
+        this.frameClock = frameClock;
+    }
+
+    /**
+     * Advances the frame clock, if any, for a new frame.
+     *
+     * @return the interpolation alpha of the frame
+     */
+    protected float advanceFrameClock() {
+        FrameClock clock = frameClock;
+        if (clock == null) return 1;
+        clock.advance();
+        return clock.getAlpha();
+    }
+
     public abstract void setX(int x);
     public abstract void setY(int y);
     public void setPosition(int x, int y) {
@@ -81,6 +107,17 @@ public abstract class Context {
     public abstract int getBackgroundColor();
 
     public abstract void requestPaint();
+
+    /**
+     * Requests a paint of the specified region only. Regions requested before the paint runs are merged,
+     * and the {@link Graphics} passed to {@link ContextListener#onPaint} is clipped to their union, the rest
+     * of the surface keeping its previous contents. Contexts that can not retain their contents repaint
+     * the whole surface, which is the default.
+     */
+    public void requestPaint(Rectangle dirty) {
+        requestPaint();
+    }
+
     public abstract void requestSnapshot();
     public void requestPaint(boolean snapshot) {
         if (snapshot) requestSnapshot();
@@ -14,6 +14,13 @@ public interface ContextListener {
     void onResize(Context context, int width, int height);
     void onMove(Context context, int xOnParent, int yOnParent);
     void onPaint(Context context, Graphics graphics, boolean snapshot);
+    /**
+     * Called instead of {@link #onPaint(Context, Graphics, boolean)}, with the interpolation alpha of the
+     * {@link FrameClock} of the context, or 1 if it has none. Forwards to the former by default.
+     */
+    default void onPaint(Context context, Graphics graphics, boolean snapshot, float alpha) {
+        onPaint(context, graphics, snapshot);
+    }
     void onSnapshot(Context context, Bitmap snapshot);
 
     boolean onKeyDown(Context context, String key, String code, int location, int modifiers);
@@ -0,0 +1,216 @@
+package unrefined.context;
+
+import unrefined.util.animation.AnimationManager;
+import unrefined.util.function.FloatSlot;
+import unrefined.util.signal.Signal;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed-timestep clock driving the simulation of a {@link Context}.
+ *
+ * <p>Each painted frame, the context calls {@link #advance()}, which adds the wall-clock time elapsed
+ * since the previous frame to an accumulator, then runs as many ticks of exactly one timestep as the
+ * accumulator holds: every tick updates the attached {@link AnimationManager}s and emits
+ * {@link #onTick()} with the timestep. The time left in the accumulator, less than a timestep, is
+ * exposed as the interpolation {@link #getAlpha() alpha} passed to the {@code onPaint} of the
+ * {@link ContextListener}, to render the state between the last two ticks:</p>
+ *
+ * <pre>{@code
+ * float x = previousX + (currentX - previousX) * alpha;
+ * }</pre>
+ *
+ * <p>The simulation is thus independent of the frame rate. A frame that runs long runs at most
+ * {@link #getMaxTicksPerFrame()} ticks and drops the rest of its backlog, so that a slow simulation
+ * slows down instead of falling further behind every frame.</p>
+ *
+ * <p>The tick delta passed to the managers and slots is the timestep in milliseconds. The clock is
+ * not thread-safe, it is advanced by the thread painting the context.</p>
+ *
+ * @see Context#setFrameClock(FrameClock)
+ */
+public class FrameClock {
+
+    private final long tickNanos;
+    private final float tickMillis;
+    private volatile int maxTicksPerFrame = 5;
+
+    private final List<AnimationManager> managers = new CopyOnWriteArrayList<>();
+    private final Signal<FloatSlot> onTick = Signal.ofSlot();
+
+    private long lastFrameTime;
+    private boolean started;
+    private long accumulator;
+    private volatile float alpha;
+
+    private volatile long frameCount;
+    private volatile long tickCount;
+    private volatile long droppedTickCount;
+    private volatile long frameNanos;
+    private volatile long tickNanosSpent;
+    private volatile long averageFrameNanos;
+    private volatile long averageTickNanos;
+
+    /**
+     * Creates a clock running the specified number of ticks per second.
+     */
+    public FrameClock(int ticksPerSecond) {
+        this(TimeUnit.SECONDS.toNanos(1) / ticksPerSecond, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a clock with the specified timestep.
+     */
+    public FrameClock(long timestep, TimeUnit unit) {
+        this.tickNanos = unit.toNanos(timestep);
+        if (tickNanos <= 0) throw new IllegalArgumentException("timestep <= 0");
+        this.tickMillis = tickNanos / 1_000_000f;
+    }
+
+    /**
+     * Emitted on each tick with the timestep in milliseconds, after the attached managers were updated.
+     * Slots are actuated through their dispatcher, directly if the painting thread is its dispatch thread.
+     */
+    public Signal<FloatSlot> onTick() {
+        return onTick;
+    }
+
+    /**
+     * Attaches a manager, which the clock updates with the timestep on each tick.
+     */
+    public void addManager(AnimationManager manager) {
+        if (!managers.contains(manager)) managers.add(manager);
+    }
+
+    public void removeManager(AnimationManager manager) {
+        managers.remove(manager);
+    }
+
+    public long getTimestep(TimeUnit unit) {
+        return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the maximum number of ticks a single frame runs to catch up, 5 by default.
+     */
+    public void setMaxTicksPerFrame(int maxTicksPerFrame) {
+        if (maxTicksPerFrame < 1) throw new IllegalArgumentException("maxTicksPerFrame < 1");
+        this.maxTicksPerFrame = maxTicksPerFrame;
+    }
+
+    public int getMaxTicksPerFrame() {
+        return maxTicksPerFrame;
+    }
+
+    /**
+     * Runs the ticks due since the previous frame, and updates the interpolation alpha. The first call
+     * after creation or {@link #reset()} only starts the clock.
+     *
+     * @return the number of ticks run
+     */
+    public int advance() {
+        long now = System.nanoTime();
+        if (!started) {
+            started = true;
+            lastFrameTime = now;
+            return 0;
+        }
+        long elapsed = now - lastFrameTime;
+        lastFrameTime = now;
+        frameNanos = elapsed;
+        averageFrameNanos += (elapsed - averageFrameNanos) >> 4;
+        frameCount ++;
+
+        accumulator += elapsed;
+        int ticks = 0;
+        int maxTicks = maxTicksPerFrame;
+        while (accumulator >= tickNanos && ticks < maxTicks) {
+            accumulator -= tickNanos;
+            for (AnimationManager manager : managers) {
+                manager.update(tickMillis);
+            }
+            if (!onTick.isEmpty()) onTick.emit(tickMillis);
+            ticks ++;
+        }
+        if (accumulator >= tickNanos) {
+            droppedTickCount += accumulator / tickNanos;
+            accumulator %= tickNanos;
+        }
+        tickCount += ticks;
+        alpha = (float) accumulator / tickNanos;
+
+        long spent = System.nanoTime() - now;
+        tickNanosSpent = spent;
+        averageTickNanos += (spent - averageTickNanos) >> 4;
+        return ticks;
+    }
+
+    /**
+     * Drops the accumulated time and restarts the clock on the next {@link #advance()}, e.g. after the
+     * context was hidden, so that the time it was not painted is not caught up with.
+     */
+    public void reset() {
+        started = false;
+        accumulator = 0;
+        alpha = 0;
+    }
+
+    /**
+     * Returns the fraction of a timestep elapsed since the last tick, in [0, 1).
+     */
+    public float getAlpha() {
+        return alpha;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Returns the number of ticks dropped because frames exceeded {@link #getMaxTicksPerFrame()}.
+     */
+    public long getDroppedTickCount() {
+        return droppedTickCount;
+    }
+
+    /**
+     * Returns the wall-clock time between the last two frames, in nanoseconds.
+     */
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+
+    /**
+     * Returns the time the ticks of the last frame took to run, in nanoseconds.
+     */
+    public long getTickNanos() {
+        return tickNanosSpent;
+    }
+
+    /**
+     * Returns the exponential moving average of {@link #getFrameNanos()} over about 16 frames.
+     */
+    public long getAverageFrameNanos() {
+        return averageFrameNanos;
+    }
+
+    /**
+     * Returns the exponential moving average of {@link #getTickNanos()} over about 16 frames.
+     */
+    public long getAverageTickNanos() {
+        return averageTickNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FrameClock[timestep=%dns,frames=%d,ticks=%d,dropped=%d,averageFrame=%dns,averageTick=%dns]",
+                tickNanos, frameCount, tickCount, droppedTickCount, averageFrameNanos, averageTickNanos);
+    }
+
+}
@@ -4,6 +4,7 @@ import unrefined.io.Disposable;
 import unrefined.math.FastMath;
 import unrefined.util.Cacheable;
 import unrefined.util.NotInstantiableError;
+import unrefined.util.Pool;
 import unrefined.util.Resettable;
 
 import java.util.ArrayDeque;
@@ -860,18 +861,21 @@ public abstract class Graphics implements Disposable, Resettable {
                 info.getTextScaleX(), info.getTextScaleY(), info.getTextSkewX(), info.getTextSkewY());
     }
 
+    private static final Pool<Info> INFO_POOL = Pool.ofShared(Info::new, 64);
     private final Deque<Info> infoDeque = new ArrayDeque<>();
     public int getInfoDequeSize() {
         return infoDeque.size();
     }
 
     public void save() {
-        Info info = new Info();
+        Info info = INFO_POOL.obtain();
         getInfo(info);
         infoDeque.push(info);
     }
     public void restore() {
-        setInfo(infoDeque.pop());
+        Info info = infoDeque.pop();
+        setInfo(info);
+        INFO_POOL.recycle(info);
     }
     public void restore(int depth) {
         depth = Math.min(depth, getInfoDequeSize());
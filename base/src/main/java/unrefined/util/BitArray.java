@@ -0,0 +1,419 @@
+package unrefined.util;
+
+import java.util.Arrays;
+
+/**
+ * BitArray is a growable array of bits packed into <code>long</code> words, using one bit per
+ * element instead of the byte a <code>boolean[]</code> takes. Bulk operations ({@link #and},
+ * {@link #or}, {@link #xor}, {@link #andNot}, {@link #cardinality} and the searches) work a
+ * word at a time. The array grows as bits past its end are set; bits that were never set read
+ * as false.
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class BitArray implements Cloneable {
+
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+    private static final long WORD_MASK = 0xFFFFFFFFFFFFFFFFL;
+
+    private long[] words;
+
+    /**
+     * The number of words in the logical size of this array, all words past it are zero.
+     */
+    private int wordsInUse;
+
+    private static int wordIndex(int bitIndex) {
+        return bitIndex >> ADDRESS_BITS_PER_WORD;
+    }
+
+    /**
+     * Creates a new BitArray with room for 64 bits.
+     */
+    public BitArray() {
+        this(BITS_PER_WORD);
+    }
+
+    /**
+     * Creates a new BitArray with room for the specified number of bits without growing.
+     */
+    public BitArray(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity < 0");
+        }
+        words = new long[wordIndex(initialCapacity - 1) + 1];
+    }
+
+    /**
+     * Creates a new BitArray holding the bits of the specified words, little-endian.
+     */
+    public static BitArray of(long[] words) {
+        BitArray array = new BitArray(0);
+        array.words = words.clone();
+        array.wordsInUse = words.length;
+        array.recalculateWordsInUse();
+        return array;
+    }
+
+    @Override
+    public BitArray clone() {
+        BitArray clone;
+        try {
+            clone = (BitArray) super.clone();
+        }
+        catch (CloneNotSupportedException e) {
+            clone = new BitArray(0);
+            clone.wordsInUse = wordsInUse;
+        }
+        clone.words = Arrays.copyOf(words, Math.max(wordsInUse, 1));
+        return clone;
+    }
+
+    private void ensureWords(int wordsRequired) {
+        if (words.length < wordsRequired) {
+            words = Arrays.copyOf(words, Math.max(words.length << 1, wordsRequired));
+        }
+        if (wordsInUse < wordsRequired) {
+            wordsInUse = wordsRequired;
+        }
+    }
+
+    private void recalculateWordsInUse() {
+        int i = wordsInUse - 1;
+        while (i >= 0 && words[i] == 0) {
+            i --;
+        }
+        wordsInUse = i + 1;
+    }
+
+    private static void checkIndex(int bitIndex) {
+        if (bitIndex < 0) throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+    }
+
+    private static void checkRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0) throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        if (fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex(" + fromIndex + ") > toIndex(" + toIndex + ")");
+        }
+    }
+
+    /**
+     * Returns the value of the bit at the specified index.
+     */
+    public boolean get(int bitIndex) {
+        checkIndex(bitIndex);
+        int wordIndex = wordIndex(bitIndex);
+        return wordIndex < wordsInUse && (words[wordIndex] & (1L << bitIndex)) != 0;
+    }
+
+    /**
+     * Sets the bit at the specified index to true.
+     */
+    public void set(int bitIndex) {
+        checkIndex(bitIndex);
+        int wordIndex = wordIndex(bitIndex);
+        ensureWords(wordIndex + 1);
+        words[wordIndex] |= 1L << bitIndex;
+    }
+
+    /**
+     * Sets the bit at the specified index to the specified value.
+     */
+    public void set(int bitIndex, boolean value) {
+        if (value) set(bitIndex);
+        else clear(bitIndex);
+    }
+
+    /**
+     * Sets the bits from <code>fromIndex</code> (inclusive) to <code>toIndex</code> (exclusive) to true.
+     */
+    public void set(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex) return;
+
+        int startWordIndex = wordIndex(fromIndex);
+        int endWordIndex = wordIndex(toIndex - 1);
+        ensureWords(endWordIndex + 1);
+
+        long firstWordMask = WORD_MASK << fromIndex;
+        long lastWordMask = WORD_MASK >>> -toIndex;
+        if (startWordIndex == endWordIndex) {
+            words[startWordIndex] |= (firstWordMask & lastWordMask);
+        }
+        else {
+            words[startWordIndex] |= firstWordMask;
+            for (int i = startWordIndex + 1; i < endWordIndex; i ++) {
+                words[i] = WORD_MASK;
+            }
+            words[endWordIndex] |= lastWordMask;
+        }
+    }
+
+    /**
+     * Sets the bit at the specified index to false.
+     */
+    public void clear(int bitIndex) {
+        checkIndex(bitIndex);
+        int wordIndex = wordIndex(bitIndex);
+        if (wordIndex >= wordsInUse) return;
+        words[wordIndex] &= ~(1L << bitIndex);
+        recalculateWordsInUse();
+    }
+
+    /**
+     * Sets the bits from <code>fromIndex</code> (inclusive) to <code>toIndex</code> (exclusive) to false.
+     */
+    public void clear(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex) return;
+
+        int startWordIndex = wordIndex(fromIndex);
+        if (startWordIndex >= wordsInUse) return;
+        int endWordIndex = wordIndex(toIndex - 1);
+        if (endWordIndex >= wordsInUse) {
+            toIndex = length();
+            endWordIndex = wordsInUse - 1;
+        }
+
+        long firstWordMask = WORD_MASK << fromIndex;
+        long lastWordMask = WORD_MASK >>> -toIndex;
+        if (startWordIndex == endWordIndex) {
+            words[startWordIndex] &= ~(firstWordMask & lastWordMask);
+        }
+        else {
+            words[startWordIndex] &= ~firstWordMask;
+            for (int i = startWordIndex + 1; i < endWordIndex; i ++) {
+                words[i] = 0;
+            }
+            words[endWordIndex] &= ~lastWordMask;
+        }
+        recalculateWordsInUse();
+    }
+
+    /**
+     * Sets all bits to false, keeping the capacity.
+     */
+    public void clear() {
+        Arrays.fill(words, 0, wordsInUse, 0);
+        wordsInUse = 0;
+    }
+
+    /**
+     * Inverts the bit at the specified index.
+     */
+    public void flip(int bitIndex) {
+        checkIndex(bitIndex);
+        int wordIndex = wordIndex(bitIndex);
+        ensureWords(wordIndex + 1);
+        words[wordIndex] ^= 1L << bitIndex;
+        recalculateWordsInUse();
+    }
+
+    /**
+     * Returns the index of the highest set bit plus one, or 0 if no bit is set.
+     */
+    public int length() {
+        if (wordsInUse == 0) return 0;
+        return BITS_PER_WORD * (wordsInUse - 1) +
+                (BITS_PER_WORD - Long.numberOfLeadingZeros(words[wordsInUse - 1]));
+    }
+
+    /**
+     * Returns the number of bits this array holds without growing.
+     */
+    public int capacity() {
+        return words.length * BITS_PER_WORD;
+    }
+
+    /**
+     * Returns true if no bit is set.
+     */
+    public boolean isEmpty() {
+        return wordsInUse == 0;
+    }
+
+    /**
+     * Returns the number of bits set to true.
+     */
+    public int cardinality() {
+        int sum = 0;
+        for (int i = 0; i < wordsInUse; i ++) {
+            sum += Long.bitCount(words[i]);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the index of the first bit set to true at or after the specified index,
+     * or -1 if there is none.
+     */
+    public int nextSetBit(int fromIndex) {
+        checkIndex(fromIndex);
+        int u = wordIndex(fromIndex);
+        if (u >= wordsInUse) return -1;
+
+        long word = words[u] & (WORD_MASK << fromIndex);
+        while (true) {
+            if (word != 0) return (u * BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+            if (++ u == wordsInUse) return -1;
+            word = words[u];
+        }
+    }
+
+    /**
+     * Returns the index of the first bit set to false at or after the specified index.
+     */
+    public int nextClearBit(int fromIndex) {
+        checkIndex(fromIndex);
+        int u = wordIndex(fromIndex);
+        if (u >= wordsInUse) return fromIndex;
+
+        long word = ~words[u] & (WORD_MASK << fromIndex);
+        while (true) {
+            if (word != 0) return (u * BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+            if (++ u == wordsInUse) return wordsInUse * BITS_PER_WORD;
+            word = ~words[u];
+        }
+    }
+
+    /**
+     * Returns the index of the last bit set to true at or before the specified index,
+     * or -1 if there is none or the index is -1.
+     */
+    public int previousSetBit(int fromIndex) {
+        if (fromIndex < 0) {
+            if (fromIndex == -1) return -1;
+            throw new IndexOutOfBoundsException("fromIndex < -1: " + fromIndex);
+        }
+        int u = wordIndex(fromIndex);
+        if (u >= wordsInUse) return length() - 1;
+
+        long word = words[u] & (WORD_MASK >>> -(fromIndex + 1));
+        while (true) {
+            if (word != 0) return (u + 1) * BITS_PER_WORD - 1 - Long.numberOfLeadingZeros(word);
+            if (u -- == 0) return -1;
+            word = words[u];
+        }
+    }
+
+    /**
+     * Returns true if any bit is set in both this array and the specified one.
+     */
+    public boolean intersects(BitArray other) {
+        for (int i = Math.min(wordsInUse, other.wordsInUse) - 1; i >= 0; i --) {
+            if ((words[i] & other.words[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Keeps only the bits that are also set in the specified array.
+     */
+    public void and(BitArray other) {
+        if (this == other) return;
+        while (wordsInUse > other.wordsInUse) {
+            words[-- wordsInUse] = 0;
+        }
+        for (int i = 0; i < wordsInUse; i ++) {
+            words[i] &= other.words[i];
+        }
+        recalculateWordsInUse();
+    }
+
+    /**
+     * Sets the bits that are set in the specified array.
+     */
+    public void or(BitArray other) {
+        if (this == other) return;
+        int wordsInCommon = Math.min(wordsInUse, other.wordsInUse);
+        ensureWords(other.wordsInUse);
+        for (int i = 0; i < wordsInCommon; i ++) {
+            words[i] |= other.words[i];
+        }
+        if (wordsInCommon < other.wordsInUse) {
+            System.arraycopy(other.words, wordsInCommon, words, wordsInCommon, other.wordsInUse - wordsInCommon);
+        }
+    }
+
+    /**
+     * Inverts the bits that are set in the specified array.
+     */
+    public void xor(BitArray other) {
+        int wordsInCommon = Math.min(wordsInUse, other.wordsInUse);
+        ensureWords(other.wordsInUse);
+        for (int i = 0; i < wordsInCommon; i ++) {
+            words[i] ^= other.words[i];
+        }
+        if (wordsInCommon < other.wordsInUse) {
+            System.arraycopy(other.words, wordsInCommon, words, wordsInCommon, other.wordsInUse - wordsInCommon);
+        }
+        recalculateWordsInUse();
+    }
+
+    /**
+     * Clears the bits that are set in the specified array.
+     */
+    public void andNot(BitArray other) {
+        for (int i = Math.min(wordsInUse, other.wordsInUse) - 1; i >= 0; i --) {
+            words[i] &= ~other.words[i];
+        }
+        recalculateWordsInUse();
+    }
+
+    /**
+     * Returns the bits as little-endian words, up to the highest set bit.
+     */
+    public long[] toLongArray() {
+        return Arrays.copyOf(words, wordsInUse);
+    }
+
+    /**
+     * Releases the capacity past the highest set bit.
+     */
+    public void trimToSize() {
+        if (wordsInUse != words.length) {
+            words = Arrays.copyOf(words, Math.max(wordsInUse, 1));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BitArray)) return false;
+
+        BitArray that = (BitArray) o;
+        if (wordsInUse != that.wordsInUse) return false;
+
+        for (int i = 0; i < wordsInUse; i ++) {
+            if (words[i] != that.words[i]) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = 1234;
+        for (int i = wordsInUse; -- i >= 0; ) {
+            h ^= words[i] * (i + 1);
+        }
+        return (int) ((h >> 32) ^ h);
+    }
+
+    @Override
+    public String toString() {
+        if (wordsInUse == 0) return "{}";
+
+        StringBuilder buffer = new StringBuilder(cardinality() * 6 + 2);
+        buffer.append('{');
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            if (buffer.length() > 1) buffer.append(", ");
+            buffer.append(i);
+            if (i == Integer.MAX_VALUE) break;
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+}
@@ -18,35 +18,55 @@ package unrefined.util;
 
 import unrefined.nio.charset.Charsets;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 /**
  * A cache that uses a bounded amount of space on a filesystem. Each cache
@@ -91,6 +111,15 @@ import java.util.regex.Pattern;
  * an error occurs while writing a cache value, the edit will fail silently.
  * Callers should handle other problems by catching {@code IOException} and
  * responding appropriately.
+ *
+ * <p>This class is safe for use by multiple threads, and there is no lock
+ * shared by the whole cache on the hot paths. Operations on one key are
+ * serialized by one of a fixed number of striped locks, so {@link #get},
+ * {@link #edit} and {@link #remove} of unrelated keys run in parallel. The
+ * LRU order is kept as an access stamp per entry instead of a linked list.
+ * Journal records are handed to a dedicated writer thread in the order of
+ * the operations on each key; readers never wait for the journal, and
+ * writers only wait for it to be flushed when an edit begins.
  */
 public class DiskLruCache implements Closeable {
 
@@ -107,6 +136,20 @@ public class DiskLruCache implements Closeable {
     private static final String REMOVE = "REMOVE";
     private static final String READ = "READ";
 
+    private static final String CHECKPOINT_FILE = "journal.idx";
+    private static final String CHECKPOINT_FILE_TEMP = "journal.idx.tmp";
+    private static final String LOG_FILE = "journal.log";
+    private static final String LOG_FILE_TEMP = "journal.log.tmp";
+    private static final int BINARY_MAGIC = 0x444c5255; // "DLRU"
+    private static final int BINARY_VERSION_1 = 1;
+    private static final int BINARY_HEADER_SIZE = 24;
+
+    private static final byte OP_END = 0;
+    private static final byte OP_CLEAN = 1;
+    private static final byte OP_DIRTY = 2;
+    private static final byte OP_REMOVE = 3;
+    private static final byte OP_READ = 4;
+
     /*
      * This cache uses a journal file named "journal". A typical journal file
      * looks like this:
@@ -145,26 +188,67 @@ public class DiskLruCache implements Closeable {
      * occasionally be compacted by dropping redundant lines. A temporary file named
      * "journal.tmp" will be used during compaction; that file should be deleted if
      * it exists when the cache is opened.
+     *
+     * Replaying a text journal of many entries is slow, so the cache can keep a
+     * binary journal instead. It is split in two files: a checkpoint named
+     * "journal.idx" holding the state of every entry at compaction time, and
+     * a log named "journal.log" holding the operations since. Both begin with
+     * the same 24 byte header: the magic number 0x444c5255, the binary journal's
+     * version, the application's version and the value count as 4 byte ints,
+     * and an 8 byte generation which is bumped by every compaction. A log whose
+     * generation differs from the checkpoint's predates it and is ignored.
+     *
+     * The header is followed by records, each made of a 1 byte operation, the
+     * key as a 1 byte length plus ASCII characters, the lengths of the values
+     * as 8 byte longs for CLEAN records only, and the CRC-32 of all of the
+     * above as a 4 byte int. The checkpoint holds CLEAN and DIRTY records and
+     * ends with an END record; the log holds any record. On open, the log is
+     * replayed up to the first record that is truncated or fails its checksum,
+     * which is a tail torn by a crash, and the log is cut there.
      */
 
     private final File directory;
     private final File journalFile;
     private final File journalFileTmp;
     private final File journalFileBackup;
+    private final File checkpointFile;
+    private final File checkpointFileTmp;
+    private final File logFile;
+    private final File logFileTmp;
+    private final boolean binaryJournal;
     private final int appVersion;
-    private long maxSize;
+    private volatile long maxSize;
     private final int valueCount;
-    private long size = 0;
-    private Writer journalWriter;
-    private final LinkedHashMap<String, Entry> lruEntries = new LinkedHashMap<>(0, 0.75f, true);
-    private int redundantOpCount;
+    private final AtomicLong size = new AtomicLong();
+    private final ConcurrentHashMap<String, Entry> lruEntries = new ConcurrentHashMap<>();
+    private final AtomicInteger redundantOpCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Striped locks guarding the state of the entries and their files. The
+     * lock of a key is picked by its hash, so an entry keeps its lock even
+     * after it is replaced.
+     */
+    private final Object[] locks;
+
+    /**
+     * Each access stamps the entry with the next value of this counter. The
+     * least recently used entry is the one with the smallest stamp.
+     */
+    private final AtomicLong nextAccessOrder = new AtomicLong();
+
+    /**
+     * The entries by access stamp, least recently used first. An entry is
+     * restamped and unlinked under its lock.
+     */
+    private final ConcurrentSkipListMap<Long, Entry> accessQueue = new ConcurrentSkipListMap<>();
 
     /**
      * To differentiate between old and current snapshots, each entry is given
      * a sequence number each time an edit is committed. A snapshot is stale if
      * its sequence number is not equal to its entry's sequence number.
      */
-    private long nextSequenceNumber = 0;
+    private final AtomicLong nextSequenceNumber = new AtomicLong();
 
     /**
      * This cache uses a single background thread to evict entries.
@@ -172,30 +256,109 @@ public class DiskLruCache implements Closeable {
     private final ThreadPoolExecutor executorService =
             new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
 
+    /**
+     * And another one to append the journal. The journal writer is only
+     * touched by this thread once the cache is open.
+     */
+    private final ThreadPoolExecutor journalService =
+            new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private JournalWriter journalWriter;
+    private volatile IOException journalError;
+
+    /**
+     * And a third one to complete the edits committed by {@link Editor#commitAsync}.
+     * It takes every commit queued so far as one batch, so the files and the
+     * journal are synced once per batch rather than once per commit.
+     */
+    private final ThreadPoolExecutor commitService =
+            new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private final ConcurrentLinkedQueue<Editor> pendingCommits = new ConcurrentLinkedQueue<>();
+
+    private final Runnable commitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            List<Editor> batch = new ArrayList<>();
+            for (Editor editor; (editor = pendingCommits.poll()) != null; ) {
+                batch.add(editor);
+            }
+            if (batch.isEmpty()) {
+                return; // Taken by the previous batch.
+            }
+            for (Editor editor : batch) {
+                editor.syncDirtyFiles();
+            }
+            for (Editor editor : batch) {
+                editor.pendingCommit.run();
+            }
+            try {
+                flushJournal(true);
+            } catch (IOException e) {
+                journalError = e; // Report it to the next flush.
+            }
+        }
+    };
+
+    /**
+     * The generation of the binary journal, and the length of its log that
+     * was replayed when the cache was opened.
+     */
+    private long generation;
+    private long logLength;
+
+    private final AtomicBoolean cleanupScheduled = new AtomicBoolean();
+
     private final Callable<Void> cleanupCallable = new Callable<Void>() {
         public Void call() throws Exception {
-            synchronized (DiskLruCache.this) {
-                if (journalWriter == null) {
-                    return null; // Closed.
-                }
-                trimToSize();
-                if (journalRebuildRequired()) {
-                    rebuildJournal();
-                    redundantOpCount = 0;
-                }
+            cleanupScheduled.set(false); // Requests from now on schedule another run.
+            if (closed) {
+                return null;
+            }
+            trimToSize();
+            if (journalRebuildRequired()) {
+                journalService.submit(rebuildCallable);
+            }
+            return null;
+        }
+    };
+
+    private final Callable<Void> rebuildCallable = new Callable<Void>() {
+        public Void call() throws Exception {
+            if (journalWriter == null || !journalRebuildRequired()) {
+                return null; // Closed, or already rebuilt.
+            }
+            try {
+                rebuildJournal();
+            } catch (IOException e) {
+                journalError = e;
             }
             return null;
         }
     };
 
-    private DiskLruCache(File directory, int appVersion, int valueCount, long maxSize) {
+    private DiskLruCache(File directory, int appVersion, int valueCount, long maxSize, boolean binaryJournal) {
         this.directory = directory;
         this.appVersion = appVersion;
         this.journalFile = new File(directory, JOURNAL_FILE);
         this.journalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
         this.journalFileBackup = new File(directory, JOURNAL_FILE_BACKUP);
+        this.checkpointFile = new File(directory, CHECKPOINT_FILE);
+        this.checkpointFileTmp = new File(directory, CHECKPOINT_FILE_TEMP);
+        this.logFile = new File(directory, LOG_FILE);
+        this.logFileTmp = new File(directory, LOG_FILE_TEMP);
+        this.binaryJournal = binaryJournal;
         this.valueCount = valueCount;
         this.maxSize = maxSize;
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        this.locks = new Object[stripes];
+        for (int i = 0; i < stripes; i ++) {
+            locks[i] = new Object();
+        }
+    }
+
+    private Object lockFor(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return locks[hash & (locks.length - 1)];
     }
 
     /**
@@ -208,6 +371,26 @@ public class DiskLruCache implements Closeable {
      * @throws IOException if reading or writing the cache directory fails
      */
     public static DiskLruCache open(File directory, int appVersion, int valueCount, long maxSize) throws IOException {
+        return open(directory, appVersion, valueCount, maxSize, false);
+    }
+
+    /**
+     * Opens the cache in {@code directory}, creating a cache if none exists
+     * there.
+     *
+     * <p>A binary journal is a checkpoint of every entry plus a checksummed log
+     * of the operations since, so opening only replays the log. It pays off for
+     * caches of many entries. A journal of the other format left in the
+     * directory is converted.
+     *
+     * @param directory     a writable directory
+     * @param valueCount    the number of values per cache entry. Must be positive.
+     * @param maxSize       the maximum number of bytes this cache should use to store
+     * @param binaryJournal whether to keep a binary journal instead of a text one
+     * @throws IOException if reading or writing the cache directory fails
+     */
+    public static DiskLruCache open(File directory, int appVersion, int valueCount, long maxSize,
+                                    boolean binaryJournal) throws IOException {
         if (maxSize <= 0) {
             throw new IllegalArgumentException("maxSize <= 0");
         }
@@ -228,13 +411,32 @@ public class DiskLruCache implements Closeable {
         }
 
         // Prefer to pick up where we left off.
-        DiskLruCache cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
-        if (cache.journalFile.exists()) {
+        DiskLruCache cache = new DiskLruCache(directory, appVersion, valueCount, maxSize, binaryJournal);
+        boolean checkpointExists = cache.checkpointFile.exists();
+        boolean journalExists = cache.journalFile.exists();
+        if (checkpointExists || journalExists) {
             try {
-                cache.readJournal();
+                boolean readBinary = checkpointExists && (!journalExists || cache.isBinaryJournalNewer());
+                if (readBinary) {
+                    cache.readBinaryJournal();
+                } else {
+                    cache.readJournal();
+                }
                 cache.processJournal();
-                cache.journalWriter = new BufferedWriter(
-                        new OutputStreamWriter(new FileOutputStream(cache.journalFile, true), Charsets.US_ASCII));
+                if (binaryJournal != readBinary) {
+                    cache.rebuildJournal();
+                } else if (binaryJournal) {
+                    cache.openLog();
+                } else {
+                    cache.journalWriter = new TextJournalWriter(new FileOutputStream(cache.journalFile, true));
+                }
+                // A journal of the other format is converted by now, or stale.
+                if (binaryJournal) {
+                    deleteIfExists(cache.journalFile);
+                } else {
+                    deleteIfExists(cache.checkpointFile);
+                    deleteIfExists(cache.logFile);
+                }
                 return cache;
             } catch (IOException journalIsCorrupt) {
                 System.out
@@ -249,11 +451,24 @@ public class DiskLruCache implements Closeable {
 
         // Create a new empty cache.
         directory.mkdirs();
-        cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
+        cache = new DiskLruCache(directory, appVersion, valueCount, maxSize, binaryJournal);
         cache.rebuildJournal();
         return cache;
     }
 
+    /**
+     * Returns whether the binary journal was written after the text journal.
+     * Both are only left when a conversion between them was interrupted, so
+     * they hold the same entries, or when a version that did not convert them
+     * switched formats, so the one written last is current. On a tie the
+     * format the cache is opened with wins.
+     */
+    private boolean isBinaryJournalNewer() {
+        long binaryModified = Math.max(checkpointFile.lastModified(), logFile.lastModified());
+        long textModified = journalFile.lastModified();
+        return binaryModified == textModified ? binaryJournal : binaryModified > textModified;
+    }
+
     private void readJournal() throws IOException {
         StrictLineReader reader = new StrictLineReader(new FileInputStream(journalFile), Charsets.US_ASCII);
         try {
@@ -280,7 +495,7 @@ public class DiskLruCache implements Closeable {
                     break;
                 }
             }
-            redundantOpCount = lineCount - lruEntries.size();
+            redundantOpCount.set(lineCount - lruEntries.size());
         } finally {
             try {
                 reader.close();
@@ -302,7 +517,7 @@ public class DiskLruCache implements Closeable {
         if (secondSpace == -1) {
             key = line.substring(keyBegin);
             if (firstSpace == REMOVE.length() && line.startsWith(REMOVE)) {
-                lruEntries.remove(key);
+                unlink(lruEntries.remove(key));
                 return;
             }
         } else {
@@ -314,6 +529,7 @@ public class DiskLruCache implements Closeable {
             entry = new Entry(key);
             lruEntries.put(key, entry);
         }
+        touch(entry);
 
         if (secondSpace != -1 && firstSpace == CLEAN.length() && line.startsWith(CLEAN)) {
             String[] parts = line.substring(secondSpace + 1).split(" ");
@@ -323,23 +539,121 @@ public class DiskLruCache implements Closeable {
         } else if (secondSpace == -1 && firstSpace == DIRTY.length() && line.startsWith(DIRTY)) {
             entry.currentEditor = new Editor(entry);
         } else if (secondSpace == -1 && firstSpace == READ.length() && line.startsWith(READ)) {
-            // This work was already done by calling lruEntries.get().
+            // This work was already done by stamping the entry.
         } else {
             throw new IOException("unexpected journal line: " + line);
         }
     }
 
+    private void readBinaryJournal() throws IOException {
+        RecordReader reader = new RecordReader(checkpointFile);
+        try {
+            generation = reader.readHeader();
+            while (reader.next()) {
+                if (reader.op == OP_END) {
+                    break;
+                }
+                replayRecord(reader.op, reader.key, reader.lengths);
+            }
+            if (reader.op != OP_END) {
+                throw new IOException("truncated journal checkpoint");
+            }
+        } finally {
+            reader.close();
+        }
+
+        int recordCount = 0;
+        logLength = 0;
+        if (logFile.exists()) {
+            reader = new RecordReader(logFile);
+            try {
+                if (reader.readHeader() == generation) {
+                    // Stop at the first torn or corrupt record, the log will be cut there.
+                    while (reader.next()) {
+                        replayRecord(reader.op, reader.key, reader.lengths);
+                        recordCount++;
+                    }
+                    logLength = reader.offset;
+                }
+            } catch (EOFException tornHeader) {
+                logLength = 0;
+            } catch (IOException staleLog) {
+                logLength = 0;
+            } finally {
+                reader.close();
+            }
+        }
+        redundantOpCount.set(recordCount);
+    }
+
+    private void replayRecord(byte op, String key, long[] lengths) throws IOException {
+        if (op == OP_REMOVE) {
+            unlink(lruEntries.remove(key));
+            return;
+        }
+
+        Entry entry = lruEntries.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            lruEntries.put(key, entry);
+        }
+        touch(entry);
+
+        if (op == OP_CLEAN) {
+            entry.readable = true;
+            entry.currentEditor = null;
+            System.arraycopy(lengths, 0, entry.lengths, 0, valueCount);
+        } else if (op == OP_DIRTY) {
+            entry.currentEditor = new Editor(entry);
+        } else if (op != OP_READ) {
+            throw new IOException("unexpected journal record: " + op);
+        }
+    }
+
+    /**
+     * Continues the binary log replayed by {@link #readBinaryJournal}, cutting
+     * off its torn tail, or starts a new one if it was missing or stale.
+     */
+    private void openLog() throws IOException {
+        if (logLength < BINARY_HEADER_SIZE) {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(logFile));
+            try {
+                writeBinaryHeader(out, generation);
+            } finally {
+                out.close();
+            }
+        } else {
+            RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+            try {
+                file.setLength(logLength);
+            } finally {
+                file.close();
+            }
+        }
+        journalWriter = new BinaryJournalWriter(new FileOutputStream(logFile, true), valueCount);
+    }
+
+    private void writeBinaryHeader(DataOutputStream out, long generation) throws IOException {
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(BINARY_VERSION_1);
+        out.writeInt(appVersion);
+        out.writeInt(valueCount);
+        out.writeLong(generation);
+    }
+
     /**
      * Computes the initial size and collects garbage as a part of opening the
      * cache. Dirty entries are assumed to be inconsistent and will be deleted.
      */
     private void processJournal() throws IOException {
         deleteIfExists(journalFileTmp);
+        deleteIfExists(checkpointFileTmp);
+        deleteIfExists(logFileTmp);
         for (Iterator<Entry> i = lruEntries.values().iterator(); i.hasNext(); ) {
             Entry entry = i.next();
             if (entry.currentEditor == null) {
                 for (int t = 0; t < valueCount; t++) {
-                    size += entry.lengths[t];
+                    size.addAndGet(entry.lengths[t]);
                 }
             } else {
                 entry.currentEditor = null;
@@ -348,18 +662,24 @@ public class DiskLruCache implements Closeable {
                     deleteIfExists(entry.getDirtyFile(t));
                 }
                 i.remove();
+                unlink(entry);
             }
         }
     }
 
     /**
      * Creates a new journal that omits redundant information. This replaces the
-     * current journal if it exists.
+     * current journal if it exists. Once the cache is open, this only runs on
+     * the journal thread, so records queued after it are appended to the new journal.
      */
-    private synchronized void rebuildJournal() throws IOException {
+    private void rebuildJournal() throws IOException {
         if (journalWriter != null) {
             journalWriter.close();
         }
+        if (binaryJournal) {
+            rebuildBinaryJournal();
+            return;
+        }
 
         Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFileTmp), Charsets.US_ASCII));
         try {
@@ -373,12 +693,19 @@ public class DiskLruCache implements Closeable {
             writer.write("\n");
             writer.write("\n");
 
-            for (Entry entry : lruEntries.values()) {
-                if (entry.currentEditor != null) {
-                    writer.write(DIRTY + ' ' + entry.key + '\n');
-                } else {
-                    writer.write(CLEAN + ' ' + entry.key + entry.getLengths() + '\n');
+            for (Entry entry : accessQueue.values()) {
+                String line;
+                synchronized (lockFor(entry.key)) {
+                    if (lruEntries.get(entry.key) != entry) {
+                        continue; // Removed meanwhile, the REMOVE record is queued.
+                    }
+                    if (entry.currentEditor != null) {
+                        line = DIRTY + ' ' + entry.key + '\n';
+                    } else {
+                        line = CLEAN + ' ' + entry.key + entry.getLengths() + '\n';
+                    }
                 }
+                writer.write(line);
             }
         } finally {
             writer.close();
@@ -390,7 +717,126 @@ public class DiskLruCache implements Closeable {
         renameTo(journalFileTmp, journalFile, false);
         journalFileBackup.delete();
 
-        journalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), Charsets.US_ASCII));
+        journalWriter = new TextJournalWriter(new FileOutputStream(journalFile, true));
+        redundantOpCount.set(0);
+    }
+
+    /**
+     * Writes a checkpoint of the next generation and starts an empty log for
+     * it. The checkpoint is synced before it replaces the previous one, which
+     * stays valid together with its log until then.
+     */
+    private void rebuildBinaryJournal() throws IOException {
+        long nextGeneration = generation + 1;
+
+        FileOutputStream fileOut = new FileOutputStream(checkpointFileTmp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        try {
+            writeBinaryHeader(out, nextGeneration);
+            BinaryJournalWriter writer = new BinaryJournalWriter(out, fileOut.getFD(), valueCount);
+            for (Entry entry : accessQueue.values()) {
+                String op;
+                long[] lengths = null;
+                synchronized (lockFor(entry.key)) {
+                    if (lruEntries.get(entry.key) != entry) {
+                        continue; // Removed meanwhile, the REMOVE record is queued.
+                    }
+                    if (entry.currentEditor != null) {
+                        op = DIRTY;
+                    } else {
+                        op = CLEAN;
+                        lengths = entry.lengths.clone();
+                    }
+                }
+                writer.write(op, entry.key, lengths);
+            }
+            writer.writeEnd();
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        out = new DataOutputStream(new FileOutputStream(logFileTmp));
+        try {
+            writeBinaryHeader(out, nextGeneration);
+        } finally {
+            out.close();
+        }
+
+        renameTo(checkpointFileTmp, checkpointFile, true);
+        renameTo(logFileTmp, logFile, true);
+        generation = nextGeneration;
+
+        journalWriter = new BinaryJournalWriter(new FileOutputStream(logFile, true), valueCount);
+        redundantOpCount.set(0);
+    }
+
+    /**
+     * Queues a record to be appended to the journal. Records of a key must be
+     * queued while holding its lock, so they are appended in the order the
+     * operations happened.
+     *
+     * @param flush whether to flush the journal once no more records are queued
+     */
+    private void journal(final String op, final String key, final long[] lengths, final boolean flush) {
+        journalService.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (journalWriter == null) {
+                    return; // Closed.
+                }
+                try {
+                    journalWriter.write(op, key, lengths);
+                    if (flush && journalService.getQueue().isEmpty()) {
+                        journalWriter.flush();
+                    }
+                } catch (IOException e) {
+                    journalError = e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until every record queued so far is written and flushed, and
+     * reports the first error the journal thread ran into, if any.
+     *
+     * @param sync whether to also sync the journal to the storage device
+     */
+    private void flushJournal(final boolean sync) throws IOException {
+        await(journalService.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                if (journalWriter != null) {
+                    journalWriter.flush();
+                    if (sync) {
+                        journalWriter.sync();
+                    }
+                }
+                return null;
+            }
+        }));
+        IOException error = journalError;
+        if (error != null) {
+            journalError = null;
+            throw error;
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            else if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            else if (cause instanceof Error) throw (Error) cause;
+            else throw new IOException(cause);
+        }
     }
 
     private static void deleteIfExists(File file) throws IOException {
@@ -413,7 +859,7 @@ public class DiskLruCache implements Closeable {
      * exist is not currently readable. If a value is returned, it is moved to
      * the head of the LRU queue.
      */
-    public synchronized Snapshot get(String key) throws IOException {
+    public Snapshot get(String key) throws IOException {
         checkNotClosed();
         validateKey(key);
         Entry entry = lruEntries.get(key);
@@ -421,41 +867,66 @@ public class DiskLruCache implements Closeable {
             return null;
         }
 
-        if (!entry.readable) {
-            return null;
-        }
-
-        // Open all streams eagerly to guarantee that we see a single published
-        // snapshot. If we opened streams lazily then the streams could come
-        // from different edits.
-        InputStream[] ins = new InputStream[valueCount];
-        try {
-            for (int i = 0; i < valueCount; i++) {
-                ins[i] = new FileInputStream(entry.getCleanFile(i));
+        FileInputStream[] ins = new FileInputStream[valueCount];
+        long sequenceNumber;
+        long[] lengths;
+        synchronized (lockFor(key)) {
+            if (!entry.readable || lruEntries.get(key) != entry) {
+                return null;
             }
-        } catch (FileNotFoundException e) {
-            // A file must have been deleted manually!
-            for (int i = 0; i < valueCount; i++) {
-                if (ins[i] != null) {
-                    try {
-                        ins[i].close();
-                    }
-                    catch (IOException ignored) {
+
+            // Open all streams eagerly to guarantee that we see a single published
+            // snapshot. If we opened streams lazily then the streams could come
+            // from different edits.
+            try {
+                for (int i = 0; i < valueCount; i++) {
+                    ins[i] = new FileInputStream(entry.getCleanFile(i));
+                }
+            } catch (FileNotFoundException e) {
+                // A file must have been deleted manually!
+                for (int i = 0; i < valueCount; i++) {
+                    if (ins[i] != null) {
+                        try {
+                            ins[i].close();
+                        }
+                        catch (IOException ignored) {
+                        }
+                    } else {
+                        break;
                     }
-                } else {
-                    break;
                 }
+                return null;
             }
-            return null;
+
+            sequenceNumber = entry.sequenceNumber;
+            lengths = entry.lengths.clone();
+            touch(entry);
+            journal(READ, key, null, false);
         }
 
-        redundantOpCount++;
-        journalWriter.append(READ + ' ' + key + '\n');
+        redundantOpCount.incrementAndGet();
         if (journalRebuildRequired()) {
-            executorService.submit(cleanupCallable);
+            scheduleCleanup();
         }
 
-        return new Snapshot(key, entry.sequenceNumber, ins, entry.lengths);
+        return new Snapshot(key, sequenceNumber, ins, lengths);
+    }
+
+    /**
+     * Returns true if the entry named {@code key} exists and is readable. Unlike
+     * {@link #get}, this does not move the entry in the LRU queue nor journal a
+     * read.
+     */
+    public boolean contains(String key) {
+        checkNotClosed();
+        validateKey(key);
+        Entry entry = lruEntries.get(key);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (lockFor(key)) {
+            return entry.readable && lruEntries.get(key) == entry;
+        }
     }
 
     /**
@@ -466,27 +937,32 @@ public class DiskLruCache implements Closeable {
         return edit(key, ANY_SEQUENCE_NUMBER);
     }
 
-    private synchronized Editor edit(String key, long expectedSequenceNumber) throws IOException {
+    private Editor edit(String key, long expectedSequenceNumber) throws IOException {
         checkNotClosed();
         validateKey(key);
-        Entry entry = lruEntries.get(key);
-        if (expectedSequenceNumber != ANY_SEQUENCE_NUMBER && (entry == null
-                || entry.sequenceNumber != expectedSequenceNumber)) {
-            return null; // Snapshot is stale.
-        }
-        if (entry == null) {
-            entry = new Entry(key);
-            lruEntries.put(key, entry);
-        } else if (entry.currentEditor != null) {
-            return null; // Another edit is in progress.
-        }
+        Editor editor;
+        synchronized (lockFor(key)) {
+            Entry entry = lruEntries.get(key);
+            if (expectedSequenceNumber != ANY_SEQUENCE_NUMBER && (entry == null
+                    || entry.sequenceNumber != expectedSequenceNumber)) {
+                return null; // Snapshot is stale.
+            }
+            if (entry == null) {
+                entry = new Entry(key);
+                lruEntries.put(key, entry);
+            } else if (entry.currentEditor != null) {
+                return null; // Another edit is in progress.
+            }
+            touch(entry);
 
-        Editor editor = new Editor(entry);
-        entry.currentEditor = editor;
+            editor = new Editor(entry);
+            entry.currentEditor = editor;
+            journal(DIRTY, key, null, false);
+        }
 
         // Flush the journal before creating files to prevent file leaks.
-        journalWriter.write(DIRTY + ' ' + key + '\n');
-        journalWriter.flush();
+        // The entry is owned by the editor now, so the lock is not needed.
+        flushJournal(false);
         return editor;
     }
 
@@ -501,7 +977,7 @@ public class DiskLruCache implements Closeable {
      * Returns the maximum number of bytes that this cache should use to store
      * its data.
      */
-    public synchronized long getMaxSize() {
+    public long getMaxSize() {
         return maxSize;
     }
 
@@ -509,9 +985,9 @@ public class DiskLruCache implements Closeable {
      * Changes the maximum number of bytes the cache can store and queues a job
      * to trim the existing store, if necessary.
      */
-    public synchronized void setMaxSize(long maxSize) {
+    public void setMaxSize(long maxSize) {
         this.maxSize = maxSize;
-        executorService.submit(cleanupCallable);
+        scheduleCleanup();
     }
 
     /**
@@ -519,62 +995,64 @@ public class DiskLruCache implements Closeable {
      * this cache. This may be greater than the max size if a background
      * deletion is pending.
      */
-    public synchronized long size() {
-        return size;
+    public long size() {
+        return size.get();
     }
 
-    private synchronized void completeEdit(Editor editor, boolean success) throws IOException {
+    private void completeEdit(Editor editor, boolean success) throws IOException {
         Entry entry = editor.entry;
-        if (entry.currentEditor != editor) {
-            throw new IllegalStateException();
-        }
+        synchronized (lockFor(entry.key)) {
+            if (entry.currentEditor != editor) {
+                throw new IllegalStateException();
+            }
 
-        // If this edit is creating the entry for the first time, every index must have a value.
-        if (success && !entry.readable) {
-            for (int i = 0; i < valueCount; i++) {
-                if (!editor.written[i]) {
-                    editor.abort();
-                    throw new IllegalStateException("Newly created entry didn't create value for index " + i);
-                }
-                if (!entry.getDirtyFile(i).exists()) {
-                    editor.abort();
-                    return;
+            // If this edit is creating the entry for the first time, every index must have a value.
+            if (success && !entry.readable) {
+                for (int i = 0; i < valueCount; i++) {
+                    if (!editor.written[i]) {
+                        editor.abort();
+                        throw new IllegalStateException("Newly created entry didn't create value for index " + i);
+                    }
+                    if (!entry.getDirtyFile(i).exists()) {
+                        editor.abort();
+                        return;
+                    }
                 }
             }
-        }
 
-        for (int i = 0; i < valueCount; i++) {
-            File dirty = entry.getDirtyFile(i);
-            if (success) {
-                if (dirty.exists()) {
-                    File clean = entry.getCleanFile(i);
-                    dirty.renameTo(clean);
-                    long oldLength = entry.lengths[i];
-                    long newLength = clean.length();
-                    entry.lengths[i] = newLength;
-                    size = size - oldLength + newLength;
+            for (int i = 0; i < valueCount; i++) {
+                File dirty = entry.getDirtyFile(i);
+                if (success) {
+                    if (dirty.exists()) {
+                        File clean = entry.getCleanFile(i);
+                        dirty.renameTo(clean);
+                        long oldLength = entry.lengths[i];
+                        long newLength = clean.length();
+                        entry.lengths[i] = newLength;
+                        size.addAndGet(newLength - oldLength);
+                    }
+                } else {
+                    deleteIfExists(dirty);
                 }
-            } else {
-                deleteIfExists(dirty);
             }
-        }
 
-        redundantOpCount++;
-        entry.currentEditor = null;
-        if (entry.readable | success) {
-            entry.readable = true;
-            journalWriter.write(CLEAN + ' ' + entry.key + entry.getLengths() + '\n');
-            if (success) {
-                entry.sequenceNumber = nextSequenceNumber++;
+            entry.currentEditor = null;
+            if (entry.readable | success) {
+                entry.readable = true;
+                journal(CLEAN, entry.key, entry.lengths.clone(), true);
+                if (success) {
+                    entry.sequenceNumber = nextSequenceNumber.getAndIncrement();
+                }
+            } else {
+                lruEntries.remove(entry.key, entry);
+                unlink(entry);
+                journal(REMOVE, entry.key, null, true);
             }
-        } else {
-            lruEntries.remove(entry.key);
-            journalWriter.write(REMOVE + ' ' + entry.key + '\n');
         }
-        journalWriter.flush();
 
-        if (size > maxSize || journalRebuildRequired()) {
-            executorService.submit(cleanupCallable);
+        redundantOpCount.incrementAndGet();
+        if (size.get() > maxSize || journalRebuildRequired()) {
+            scheduleCleanup();
         }
     }
 
@@ -584,6 +1062,7 @@ public class DiskLruCache implements Closeable {
      */
     private boolean journalRebuildRequired() {
         final int redundantOpCompactThreshold = 2000;
+        int redundantOpCount = this.redundantOpCount.get();
         return redundantOpCount >= redundantOpCompactThreshold //
                 && redundantOpCount >= lruEntries.size();
     }
@@ -594,29 +1073,36 @@ public class DiskLruCache implements Closeable {
      *
      * @return true if an entry was removed.
      */
-    public synchronized boolean remove(String key) throws IOException {
+    public boolean remove(String key) throws IOException {
         checkNotClosed();
         validateKey(key);
         Entry entry = lruEntries.get(key);
-        if (entry == null || entry.currentEditor != null) {
-            return false;
-        }
+        return entry != null && removeEntry(entry);
+    }
 
-        for (int i = 0; i < valueCount; i++) {
-            File file = entry.getCleanFile(i);
-            if (file.exists() && !file.delete()) {
-                throw new IOException("failed to delete " + file);
+    private boolean removeEntry(Entry entry) throws IOException {
+        synchronized (lockFor(entry.key)) {
+            if (entry.currentEditor != null || lruEntries.get(entry.key) != entry) {
+                return false;
+            }
+
+            for (int i = 0; i < valueCount; i++) {
+                File file = entry.getCleanFile(i);
+                if (file.exists() && !file.delete()) {
+                    throw new IOException("failed to delete " + file);
+                }
+                size.addAndGet(-entry.lengths[i]);
+                entry.lengths[i] = 0;
             }
-            size -= entry.lengths[i];
-            entry.lengths[i] = 0;
-        }
 
-        redundantOpCount++;
-        journalWriter.append(REMOVE + ' ' + key + '\n');
-        lruEntries.remove(key);
+            journal(REMOVE, entry.key, null, false);
+            lruEntries.remove(entry.key, entry);
+            unlink(entry);
+        }
 
+        redundantOpCount.incrementAndGet();
         if (journalRebuildRequired()) {
-            executorService.submit(cleanupCallable);
+            scheduleCleanup();
         }
 
         return true;
@@ -625,12 +1111,12 @@ public class DiskLruCache implements Closeable {
     /**
      * Returns true if this cache has been closed.
      */
-    public synchronized boolean isClosed() {
-        return journalWriter == null;
+    public boolean isClosed() {
+        return closed;
     }
 
     private void checkNotClosed() {
-        if (journalWriter == null) {
+        if (closed) {
             throw new IllegalStateException("cache is closed");
         }
     }
@@ -638,33 +1124,85 @@ public class DiskLruCache implements Closeable {
     /**
      * Force buffered operations to the filesystem.
      */
-    public synchronized void flush() throws IOException {
+    public void flush() throws IOException {
         checkNotClosed();
         trimToSize();
-        journalWriter.flush();
+        flushJournal(false);
     }
 
     /**
      * Closes this cache. Stored values will remain on the filesystem.
      */
     public synchronized void close() throws IOException {
-        if (journalWriter == null) {
+        if (closed) {
             return; // Already closed.
         }
+        await(commitService.submit(commitRunnable)); // Complete the pending commits.
         for (Entry entry : new ArrayList<Entry>(lruEntries.values())) {
-            if (entry.currentEditor != null) {
-                entry.currentEditor.abort();
+            Editor editor;
+            synchronized (lockFor(entry.key)) {
+                editor = entry.currentEditor;
+            }
+            if (editor != null) {
+                try {
+                    editor.abort();
+                } catch (IllegalStateException ignored) {
+                    // Completed by its owner meanwhile.
+                }
             }
         }
         trimToSize();
-        journalWriter.close();
-        journalWriter = null;
+        closed = true;
+        await(journalService.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                JournalWriter writer = journalWriter;
+                journalWriter = null;
+                if (writer != null) {
+                    writer.close();
+                }
+                return null;
+            }
+        }));
     }
 
     private void trimToSize() throws IOException {
-        while (size > maxSize) {
-            Map.Entry<String, Entry> toEvict = lruEntries.entrySet().iterator().next();
-            remove(toEvict.getKey());
+        if (size.get() <= maxSize) {
+            return;
+        }
+        for (Entry entry : accessQueue.values()) {
+            if (size.get() <= maxSize) {
+                break;
+            }
+            removeEntry(entry); // Skipped if being edited.
+        }
+    }
+
+    /**
+     * Stamps the entry as the most recently used. Must hold the lock of the
+     * entry, or be opening the cache.
+     */
+    private void touch(Entry entry) {
+        accessQueue.remove(entry.accessOrder, entry);
+        entry.accessOrder = nextAccessOrder.getAndIncrement();
+        accessQueue.put(entry.accessOrder, entry);
+    }
+
+    /**
+     * Drops the entry removed from {@link #lruEntries} from the access queue.
+     */
+    private void unlink(Entry entry) {
+        if (entry != null) {
+            accessQueue.remove(entry.accessOrder, entry);
+        }
+    }
+
+    /**
+     * Queues a trim and journal rebuild check, unless one is already queued.
+     */
+    private void scheduleCleanup() {
+        if (cleanupScheduled.compareAndSet(false, true)) {
+            executorService.submit(cleanupCallable);
         }
     }
 
@@ -708,10 +1246,10 @@ public class DiskLruCache implements Closeable {
     public final class Snapshot implements Closeable {
         private final String key;
         private final long sequenceNumber;
-        private final InputStream[] ins;
+        private final FileInputStream[] ins;
         private final long[] lengths;
 
-        private Snapshot(String key, long sequenceNumber, InputStream[] ins, long[] lengths) {
+        private Snapshot(String key, long sequenceNumber, FileInputStream[] ins, long[] lengths) {
             this.key = key;
             this.sequenceNumber = sequenceNumber;
             this.ins = ins;
@@ -734,6 +1272,48 @@ public class DiskLruCache implements Closeable {
             return ins[index];
         }
 
+        /**
+         * Returns the channel of the file with the value for {@code index}. It
+         * shares its position with {@link #getInputStream}, and is closed with
+         * this snapshot.
+         */
+        public FileChannel getChannel(int index) {
+            return ins[index].getChannel();
+        }
+
+        /**
+         * Transfers the rest of the value for {@code index} to {@code target}
+         * with {@link FileChannel#transferTo}, which lets the operating system
+         * copy the file without passing it through the Java heap.
+         *
+         * @return the number of bytes transferred
+         */
+        public long transferTo(int index, WritableByteChannel target) throws IOException {
+            FileChannel channel = getChannel(index);
+            long position = channel.position();
+            long remaining = channel.size() - position;
+            long count = 0;
+            while (count < remaining) {
+                long transferred = channel.transferTo(position + count, remaining - count, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                count += transferred;
+            }
+            channel.position(position + count);
+            return count;
+        }
+
+        /**
+         * Maps the value for {@code index} into memory, read-only. The mapping
+         * remains valid after this snapshot is closed, even if the entry is
+         * updated or removed meanwhile.
+         */
+        public MappedByteBuffer map(int index) throws IOException {
+            FileChannel channel = getChannel(index);
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
         /**
          * Returns the string value for {@code index}.
          */
@@ -774,8 +1354,9 @@ public class DiskLruCache implements Closeable {
 
         private final Entry entry;
         private final boolean[] written;
-        private boolean hasErrors;
+        private volatile boolean hasErrors;
         private boolean committed;
+        private FutureTask<Void> pendingCommit;
 
         private Editor(Entry entry) {
             this.entry = entry;
@@ -787,7 +1368,7 @@ public class DiskLruCache implements Closeable {
          * or null if no value has been committed.
          */
         public InputStream newInputStream(int index) throws IOException {
-            synchronized (DiskLruCache.this) {
+            synchronized (lockFor(entry.key)) {
                 if (entry.currentEditor != this) {
                     throw new IllegalStateException();
                 }
@@ -819,7 +1400,7 @@ public class DiskLruCache implements Closeable {
          * IOExceptions.
          */
         public OutputStream newOutputStream(int index) throws IOException {
-            synchronized (DiskLruCache.this) {
+            synchronized (lockFor(entry.key)) {
                 if (entry.currentEditor != this) {
                     throw new IllegalStateException();
                 }
@@ -867,6 +1448,51 @@ public class DiskLruCache implements Closeable {
             committed = true;
         }
 
+        /**
+         * Commits this edit in the background and returns immediately. The
+         * files written are synced to the storage device before the edit is
+         * committed, and the journal once per batch of commits afterwards. Until
+         * the returned future is done, readers observe the previous values and
+         * the entry cannot be edited again.
+         *
+         * <p>Do not use the output streams of this editor after this call; this
+         * editor counts as committed for {@link #abortUnlessCommitted}.
+         */
+        public Future<Void> commitAsync() {
+            if (committed || pendingCommit != null) {
+                throw new IllegalStateException("already committed");
+            }
+            pendingCommit = new FutureTask<>(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    commit();
+                    return null;
+                }
+            });
+            committed = true;
+            pendingCommits.add(this);
+            commitService.execute(commitRunnable);
+            return pendingCommit;
+        }
+
+        private void syncDirtyFiles() {
+            if (hasErrors) {
+                return;
+            }
+            for (int i = 0; i < valueCount; i++) {
+                File dirty = entry.getDirtyFile(i);
+                if (!dirty.exists()) {
+                    continue;
+                }
+                try (RandomAccessFile file = new RandomAccessFile(dirty, "rw")) {
+                    file.getFD().sync();
+                } catch (IOException e) {
+                    hasErrors = true;
+                    return;
+                }
+            }
+        }
+
         /**
          * Aborts this edit. This releases the edit lock so another edit may be
          * started on the same key.
@@ -950,6 +1576,11 @@ public class DiskLruCache implements Closeable {
          */
         private long sequenceNumber;
 
+        /**
+         * The stamp of the most recent access to this entry.
+         */
+        private volatile long accessOrder;
+
         private Entry(String key) {
             this.key = key;
             this.lengths = new long[valueCount];
@@ -993,6 +1624,222 @@ public class DiskLruCache implements Closeable {
         }
     }
 
+    /**
+     * Appends records to a journal. Only used by one thread at a time.
+     */
+    private abstract static class JournalWriter implements Closeable, Flushable {
+        /**
+         * Appends a record. The lengths are only given for CLEAN records.
+         */
+        abstract void write(String op, String key, long[] lengths) throws IOException;
+
+        /**
+         * Syncs the flushed records to the storage device.
+         */
+        abstract void sync() throws IOException;
+    }
+
+    private static final class TextJournalWriter extends JournalWriter {
+        private final Writer writer;
+        private final FileDescriptor fd;
+
+        private TextJournalWriter(FileOutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, Charsets.US_ASCII));
+            this.fd = out.getFD();
+        }
+
+        @Override
+        void write(String op, String key, long[] lengths) throws IOException {
+            StringBuilder line = new StringBuilder(op).append(' ').append(key);
+            if (lengths != null) {
+                for (long length : lengths) {
+                    line.append(' ').append(length);
+                }
+            }
+            writer.write(line.append('\n').toString());
+        }
+
+        @Override
+        void sync() throws IOException {
+            fd.sync();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class BinaryJournalWriter extends JournalWriter {
+        private final DataOutputStream out;
+        private final FileDescriptor fd;
+        private final byte[] record;
+        private final CRC32 crc = new CRC32();
+
+        private BinaryJournalWriter(DataOutputStream out, FileDescriptor fd, int valueCount) {
+            this.out = out;
+            this.fd = fd;
+            this.record = new byte[2 + 64 + valueCount * 8];
+        }
+
+        private BinaryJournalWriter(FileOutputStream out, int valueCount) throws IOException {
+            this(new DataOutputStream(new BufferedOutputStream(out)), out.getFD(), valueCount);
+        }
+
+        @Override
+        void write(String op, String key, long[] lengths) throws IOException {
+            byte code;
+            switch (op) {
+                case CLEAN: code = OP_CLEAN; break;
+                case DIRTY: code = OP_DIRTY; break;
+                case REMOVE: code = OP_REMOVE; break;
+                case READ: code = OP_READ; break;
+                default: throw new IllegalArgumentException("unexpected journal op: " + op);
+            }
+            writeRecord(code, key, lengths);
+        }
+
+        void writeEnd() throws IOException {
+            writeRecord(OP_END, "", null);
+        }
+
+        @Override
+        void sync() throws IOException {
+            fd.sync();
+        }
+
+        private void writeRecord(byte op, String key, long[] lengths) throws IOException {
+            int n = 0;
+            record[n++] = op;
+            record[n++] = (byte) key.length();
+            for (int i = 0; i < key.length(); i++) {
+                record[n++] = (byte) key.charAt(i);
+            }
+            if (lengths != null) {
+                for (long length : lengths) {
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        record[n++] = (byte) (length >>> shift);
+                    }
+                }
+            }
+            crc.reset();
+            crc.update(record, 0, n);
+            out.write(record, 0, n);
+            out.writeInt((int) crc.getValue());
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the records of a binary journal file.
+     */
+    private final class RecordReader implements Closeable {
+        private final DataInputStream in;
+        private final byte[] record = new byte[2 + 64 + valueCount * 8];
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * The offset right after the last valid record.
+         */
+        private long offset;
+
+        private byte op = -1;
+        private String key;
+        private final long[] lengths = new long[valueCount];
+
+        private RecordReader(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+
+        /**
+         * Reads and verifies the header, and returns the generation.
+         */
+        private long readHeader() throws IOException {
+            int magic = in.readInt();
+            int version = in.readInt();
+            int appVersion = in.readInt();
+            int valueCount = in.readInt();
+            long generation = in.readLong();
+            if (magic != BINARY_MAGIC
+                    || version != BINARY_VERSION_1
+                    || appVersion != DiskLruCache.this.appVersion
+                    || valueCount != DiskLruCache.this.valueCount) {
+                throw new IOException("unexpected journal header: [" + Integer.toHexString(magic) + ", "
+                        + version + ", " + appVersion + ", " + valueCount + "]");
+            }
+            offset = BINARY_HEADER_SIZE;
+            return generation;
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return false at the end of the file, or at a torn or corrupt record
+         */
+        private boolean next() throws IOException {
+            try {
+                int n = 0;
+                byte op = in.readByte();
+                int keyLength = in.readUnsignedByte();
+                if (op < OP_END || op > OP_READ || keyLength > 64) {
+                    return false;
+                }
+                record[n++] = op;
+                record[n++] = (byte) keyLength;
+                in.readFully(record, n, keyLength);
+                n += keyLength;
+                if (op == OP_CLEAN) {
+                    in.readFully(record, n, valueCount * 8);
+                    n += valueCount * 8;
+                }
+                int checksum = in.readInt();
+                crc.reset();
+                crc.update(record, 0, n);
+                if ((int) crc.getValue() != checksum) {
+                    return false;
+                }
+
+                this.op = op;
+                this.key = new String(record, 2, keyLength, Charsets.US_ASCII);
+                if (op == OP_CLEAN) {
+                    for (int i = 0, p = 2 + keyLength; i < valueCount; i++) {
+                        long length = 0;
+                        for (int j = 0; j < 8; j++) {
+                            length = (length << 8) | (record[p++] & 0xFF);
+                        }
+                        lengths[i] = length;
+                    }
+                }
+                offset += n + 4;
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
     private static String readFully(Reader reader) throws IOException {
         try {
             StringWriter writer = new StringWriter();
@@ -1,6 +1,14 @@
 package unrefined.util;
 
+import unrefined.util.function.DoubleBiOperator;
+import unrefined.util.function.FloatBiOperator;
+import unrefined.util.function.IntBiOperator;
+import unrefined.util.function.LongBiOperator;
+
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Objects;
 
@@ -10,11 +18,21 @@ public final class FastArray {
         throw new NotInstantiableError(FastArray.class);
     }
 
+    /**
+     * Byte ranges at least this long are processed 8 bytes at a time.
+     */
+    private static final int SWAR_THRESHOLD = 16;
+
     public static int hashCode(byte[] a, int off, int len) {
         if (a == null) return 0;
 
         int result = 1;
-        for (int i = 0; i < len; i ++) {
+        int i = 0;
+        for (int end = len & ~3; i < end; i += 4) {
+            result = 923521 * result + 29791 * a[off + i] + 961 * a[off + i + 1]
+                    + 31 * a[off + i + 2] + a[off + i + 3];
+        }
+        for (; i < len; i ++) {
             result = 31 * result + a[off + i];
         }
 
@@ -25,7 +43,12 @@ public final class FastArray {
         if (a == null) return 0;
 
         int result = 1;
-        for (int i = 0; i < len; i ++) {
+        int i = 0;
+        for (int end = len & ~3; i < end; i += 4) {
+            result = 923521 * result + 29791 * a[off + i] + 961 * a[off + i + 1]
+                    + 31 * a[off + i + 2] + a[off + i + 3];
+        }
+        for (; i < len; i ++) {
             result = 31 * result + a[off + i];
         }
 
@@ -36,7 +59,12 @@ public final class FastArray {
         if (a == null) return 0;
 
         int result = 1;
-        for (int i = 0; i < len; i ++) {
+        int i = 0;
+        for (int end = len & ~3; i < end; i += 4) {
+            result = 923521 * result + 29791 * a[off + i] + 961 * a[off + i + 1]
+                    + 31 * a[off + i + 2] + a[off + i + 3];
+        }
+        for (; i < len; i ++) {
             result = 31 * result + a[off + i];
         }
 
@@ -61,7 +89,13 @@ public final class FastArray {
         if (a == null) return 0;
 
         int result = 1;
-        for (int i = 0; i < len; i ++) {
+        int i = 0;
+        for (int end = len & ~3; i < end; i += 4) {
+            result = 923521 * result + 29791 * Float.floatToIntBits(a[off + i])
+                    + 961 * Float.floatToIntBits(a[off + i + 1])
+                    + 31 * Float.floatToIntBits(a[off + i + 2]) + Float.floatToIntBits(a[off + i + 3]);
+        }
+        for (; i < len; i ++) {
             result = 31 * result + Float.floatToIntBits(a[off + i]);
         }
 
@@ -95,7 +129,12 @@ public final class FastArray {
         if (a == null) return 0;
 
         int result = 1;
-        for (int i = 0; i < len; i ++) {
+        int i = 0;
+        for (int end = len & ~3; i < end; i += 4) {
+            result = 923521 * result + 29791 * a[off + i] + 961 * a[off + i + 1]
+                    + 31 * a[off + i + 2] + a[off + i + 3];
+        }
+        for (; i < len; i ++) {
             result = 31 * result + a[off + i];
         }
 
@@ -157,48 +196,121 @@ public final class FastArray {
 
     public static boolean contains(byte[] array, byte element) {
         if (array == null) return false;
-        for (byte b : array) {
-            if (b == element) return true;
+        return indexOf(array, 0, array.length, element) != -1;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the element in the range, or -1 if absent.
+     * Long ranges are searched 8 bytes at a time (SWAR).
+     */
+    public static int indexOf(byte[] array, int off, int len, byte element) {
+        int i = 0;
+        if (len >= SWAR_THRESHOLD) {
+            ByteBuffer buffer = ByteBuffer.wrap(array).order(ByteOrder.LITTLE_ENDIAN);
+            long pattern = (element & 0xFFL) * 0x0101010101010101L;
+            for (int end = len & ~7; i < end; i += 8) {
+                long word = buffer.getLong(off + i) ^ pattern;
+                // The lowest set high bit marks the first zero byte, false positives only follow it
+                long zeros = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+                if (zeros != 0) return i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+            }
         }
-        return false;
+        for (; i < len; i ++) {
+            if (array[off + i] == element) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the two ranges hold the same bytes. Long ranges are compared
+     * 8 bytes at a time.
+     */
+    public static boolean equals(byte[] a, int aOff, byte[] b, int bOff, int len) {
+        if (a == b && aOff == bOff) return true;
+        return mismatch(a, aOff, b, bOff, len) == -1;
+    }
+
+    /**
+     * Returns the index of the first mismatching byte relative to the starts of the two ranges,
+     * or -1 if they hold the same bytes. Long ranges are compared 8 bytes at a time.
+     */
+    public static int mismatch(byte[] a, int aOff, byte[] b, int bOff, int len) {
+        int i = 0;
+        if (len >= SWAR_THRESHOLD) {
+            ByteBuffer aBuffer = ByteBuffer.wrap(a).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer bBuffer = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+            for (int end = len & ~7; i < end; i += 8) {
+                long difference = aBuffer.getLong(aOff + i) ^ bBuffer.getLong(bOff + i);
+                if (difference != 0) return i + (Long.numberOfTrailingZeros(difference) >>> 3);
+            }
+        }
+        for (; i < len; i ++) {
+            if (a[aOff + i] != b[bOff + i]) return i;
+        }
+        return -1;
     }
 
     public static boolean contains(short[] array, short element) {
         if (array == null) return false;
-        for (short s : array) {
-            if (s == element) return true;
+        int i = 0;
+        for (int end = array.length & ~3; i < end; i += 4) {
+            if (array[i] == element | array[i + 1] == element
+                    | array[i + 2] == element | array[i + 3] == element) return true;
+        }
+        for (; i < array.length; i ++) {
+            if (array[i] == element) return true;
         }
         return false;
     }
 
     public static boolean contains(int[] array, int element) {
         if (array == null) return false;
-        for (int i : array) {
-            if (i == element) return true;
+        int i = 0;
+        for (int end = array.length & ~3; i < end; i += 4) {
+            if (array[i] == element | array[i + 1] == element
+                    | array[i + 2] == element | array[i + 3] == element) return true;
+        }
+        for (; i < array.length; i ++) {
+            if (array[i] == element) return true;
         }
         return false;
     }
 
     public static boolean contains(long[] array, long element) {
         if (array == null) return false;
-        for (long l : array) {
-            if (l == element) return true;
+        int i = 0;
+        for (int end = array.length & ~3; i < end; i += 4) {
+            if (array[i] == element | array[i + 1] == element
+                    | array[i + 2] == element | array[i + 3] == element) return true;
+        }
+        for (; i < array.length; i ++) {
+            if (array[i] == element) return true;
         }
         return false;
     }
 
     public static boolean contains(float[] array, float element) {
         if (array == null) return false;
-        for (float f : array) {
-            if (f == element) return true;
+        int i = 0;
+        for (int end = array.length & ~3; i < end; i += 4) {
+            if (array[i] == element | array[i + 1] == element
+                    | array[i + 2] == element | array[i + 3] == element) return true;
+        }
+        for (; i < array.length; i ++) {
+            if (array[i] == element) return true;
         }
         return false;
     }
 
     public static boolean contains(double[] array, double element) {
         if (array == null) return false;
-        for (double d : array) {
-            if (d == element) return true;
+        int i = 0;
+        for (int end = array.length & ~3; i < end; i += 4) {
+            if (array[i] == element | array[i + 1] == element
+                    | array[i + 2] == element | array[i + 3] == element) return true;
+        }
+        for (; i < array.length; i ++) {
+            if (array[i] == element) return true;
         }
         return false;
     }
@@ -213,8 +325,13 @@ public final class FastArray {
 
     public static boolean contains(char[] array, char element) {
         if (array == null) return false;
-        for (char c : array) {
-            if (c == element) return true;
+        int i = 0;
+        for (int end = array.length & ~3; i < end; i += 4) {
+            if (array[i] == element | array[i + 1] == element
+                    | array[i + 2] == element | array[i + 3] == element) return true;
+        }
+        for (; i < array.length; i ++) {
+            if (array[i] == element) return true;
         }
         return false;
     }
@@ -562,6 +679,13 @@ public final class FastArray {
         return need;
     }
 
+    public static int hashTableSize(int need) {
+        long size = (long) need + need / 3 + 1; // keep the load factor at most 0.75
+        int n = 2;
+        while (n < size && n < (1 << 30)) n <<= 1;
+        return n;
+    }
+
     public static int binarySearchUnchecked(long[] a, int fromIndex, int toIndex, long key) {
         int low = fromIndex;
         int high = toIndex - 1;
@@ -782,6 +906,474 @@ public final class FastArray {
         return binarySearchUnchecked(a, 0, a.length, key, c);
     }
 
+    public static void parallelSort(float[] keys, int[] values) {
+        parallelSort(keys, values, 0, keys.length);
+    }
+
+    /**
+     * Sorts the range of keys into ascending order of {@link Float#compare}, and moves the
+     * values at the same indices along with them. The sort is stable, and runs in parallel
+     * for large ranges.
+     */
+    public static void parallelSort(float[] keys, int[] values, int fromIndex, int toIndex) {
+        rangeCheck(keys, fromIndex, toIndex);
+        rangeCheck(values, fromIndex, toIndex);
+        ParallelArrays.sort(keys, values, fromIndex, toIndex);
+    }
+
+    public static void parallelSort(double[] keys, int[] values) {
+        parallelSort(keys, values, 0, keys.length);
+    }
+
+    /**
+     * Sorts the range of keys into ascending order of {@link Double#compare}, and moves the
+     * values at the same indices along with them. The sort is stable, and runs in parallel
+     * for large ranges.
+     */
+    public static void parallelSort(double[] keys, int[] values, int fromIndex, int toIndex) {
+        rangeCheck(keys, fromIndex, toIndex);
+        rangeCheck(values, fromIndex, toIndex);
+        ParallelArrays.sort(keys, values, fromIndex, toIndex);
+    }
+
+    public static void radixSort(int[] a) {
+        ParallelArrays.radixSort(a, 0, a.length);
+    }
+
+    /**
+     * Sorts the range into ascending numerical order with a radix sort, which takes
+     * linear time and a temporary array as long as the range.
+     */
+    public static void radixSort(int[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        ParallelArrays.radixSort(a, fromIndex, toIndex);
+    }
+
+    public static void radixSort(long[] a) {
+        ParallelArrays.radixSort(a, null, 0, a.length);
+    }
+
+    /**
+     * Sorts the range into ascending numerical order with a radix sort, which takes
+     * linear time and a temporary array as long as the range.
+     */
+    public static void radixSort(long[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        ParallelArrays.radixSort(a, null, fromIndex, toIndex);
+    }
+
+    public static int[] argsort(int[] a) {
+        return argsort(a, 0, a.length);
+    }
+
+    /**
+     * Returns the indices of the range in the ascending order of their elements.
+     * Equal elements keep the order of their indices. The array is not modified.
+     */
+    public static int[] argsort(int[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        long[] keys = new long[a.length];
+        for (int i = fromIndex; i < toIndex; i ++) {
+            keys[i] = a[i];
+        }
+        return ParallelArrays.argsort(keys, fromIndex, toIndex);
+    }
+
+    public static int[] argsort(long[] a) {
+        return argsort(a, 0, a.length);
+    }
+
+    /**
+     * Returns the indices of the range in the ascending order of their elements.
+     * Equal elements keep the order of their indices. The array is not modified.
+     */
+    public static int[] argsort(long[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        return ParallelArrays.argsort(a.clone(), fromIndex, toIndex);
+    }
+
+    public static int[] argsort(float[] a) {
+        return argsort(a, 0, a.length);
+    }
+
+    /**
+     * Returns the indices of the range in the ascending order of {@link Float#compare}
+     * of their elements. Equal elements keep the order of their indices. The array is not modified.
+     */
+    public static int[] argsort(float[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        long[] keys = new long[a.length];
+        for (int i = fromIndex; i < toIndex; i ++) {
+            keys[i] = ParallelArrays.sortableBits(a[i]);
+        }
+        return ParallelArrays.argsort(keys, fromIndex, toIndex);
+    }
+
+    public static int[] argsort(double[] a) {
+        return argsort(a, 0, a.length);
+    }
+
+    /**
+     * Returns the indices of the range in the ascending order of {@link Double#compare}
+     * of their elements. Equal elements keep the order of their indices. The array is not modified.
+     */
+    public static int[] argsort(double[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        long[] keys = new long[a.length];
+        for (int i = fromIndex; i < toIndex; i ++) {
+            keys[i] = ParallelArrays.sortableBits(a[i]);
+        }
+        return ParallelArrays.argsort(keys, fromIndex, toIndex);
+    }
+
+    public static void parallelPrefix(int[] a, IntBiOperator op) {
+        parallelPrefix(a, 0, a.length, op);
+    }
+
+    /**
+     * Replaces each element of the range with the cumulation of it and the preceding
+     * elements by the associative operator, in parallel for large ranges.
+     */
+    public static void parallelPrefix(int[] a, int fromIndex, int toIndex, IntBiOperator op) {
+        Objects.requireNonNull(op);
+        Arrays.parallelPrefix(a, fromIndex, toIndex, op::apply);
+    }
+
+    public static void parallelPrefix(long[] a, LongBiOperator op) {
+        parallelPrefix(a, 0, a.length, op);
+    }
+
+    /**
+     * Replaces each element of the range with the cumulation of it and the preceding
+     * elements by the associative operator, in parallel for large ranges.
+     */
+    public static void parallelPrefix(long[] a, int fromIndex, int toIndex, LongBiOperator op) {
+        Objects.requireNonNull(op);
+        Arrays.parallelPrefix(a, fromIndex, toIndex, op::apply);
+    }
+
+    public static void parallelPrefix(float[] a, FloatBiOperator op) {
+        parallelPrefix(a, 0, a.length, op);
+    }
+
+    /**
+     * Replaces each element of the range with the cumulation of it and the preceding
+     * elements by the associative operator, in parallel for large ranges.
+     */
+    public static void parallelPrefix(float[] a, int fromIndex, int toIndex, FloatBiOperator op) {
+        Objects.requireNonNull(op);
+        rangeCheck(a, fromIndex, toIndex);
+        if (fromIndex < toIndex) ParallelArrays.prefix(a, fromIndex, toIndex, op);
+    }
+
+    public static void parallelPrefix(double[] a, DoubleBiOperator op) {
+        parallelPrefix(a, 0, a.length, op);
+    }
+
+    /**
+     * Replaces each element of the range with the cumulation of it and the preceding
+     * elements by the associative operator, in parallel for large ranges.
+     */
+    public static void parallelPrefix(double[] a, int fromIndex, int toIndex, DoubleBiOperator op) {
+        Objects.requireNonNull(op);
+        Arrays.parallelPrefix(a, fromIndex, toIndex, op::apply);
+    }
+
+    public static long parallelSum(int[] a) {
+        return parallelSum(a, 0, a.length);
+    }
+
+    public static long parallelSum(int[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        long[] sums = new long[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            long sum = 0;
+            for (int i = from; i < to; i ++) {
+                sum += a[i];
+            }
+            sums[index] = sum;
+        });
+        long result = 0;
+        for (long sum : sums) {
+            result += sum;
+        }
+        return result;
+    }
+
+    public static long parallelSum(long[] a) {
+        return parallelSum(a, 0, a.length);
+    }
+
+    public static long parallelSum(long[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        long[] sums = new long[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            long sum = 0;
+            for (int i = from; i < to; i ++) {
+                sum += a[i];
+            }
+            sums[index] = sum;
+        });
+        long result = 0;
+        for (long sum : sums) {
+            result += sum;
+        }
+        return result;
+    }
+
+    public static double parallelSum(float[] a) {
+        return parallelSum(a, 0, a.length);
+    }
+
+    /**
+     * Returns the sum of the range, accumulated in double precision.
+     */
+    public static double parallelSum(float[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        double[] sums = new double[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            double sum = 0;
+            for (int i = from; i < to; i ++) {
+                sum += a[i];
+            }
+            sums[index] = sum;
+        });
+        double result = 0;
+        for (double sum : sums) {
+            result += sum;
+        }
+        return result;
+    }
+
+    public static double parallelSum(double[] a) {
+        return parallelSum(a, 0, a.length);
+    }
+
+    public static double parallelSum(double[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        double[] sums = new double[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            double sum = 0;
+            for (int i = from; i < to; i ++) {
+                sum += a[i];
+            }
+            sums[index] = sum;
+        });
+        double result = 0;
+        for (double sum : sums) {
+            result += sum;
+        }
+        return result;
+    }
+
+    public static int parallelMin(int[] a) {
+        return parallelMin(a, 0, a.length);
+    }
+
+    /**
+     * Returns the smallest element of the range, or {@link Integer#MAX_VALUE} if it is empty.
+     */
+    public static int parallelMin(int[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        int[] results = new int[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            int result = Integer.MAX_VALUE;
+            for (int i = from; i < to; i ++) {
+                result = Math.min(result, a[i]);
+            }
+            results[index] = result;
+        });
+        int result = Integer.MAX_VALUE;
+        for (int value : results) {
+            result = Math.min(result, value);
+        }
+        return result;
+    }
+
+    public static int parallelMax(int[] a) {
+        return parallelMax(a, 0, a.length);
+    }
+
+    /**
+     * Returns the largest element of the range, or {@link Integer#MIN_VALUE} if it is empty.
+     */
+    public static int parallelMax(int[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        int[] results = new int[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            int result = Integer.MIN_VALUE;
+            for (int i = from; i < to; i ++) {
+                result = Math.max(result, a[i]);
+            }
+            results[index] = result;
+        });
+        int result = Integer.MIN_VALUE;
+        for (int value : results) {
+            result = Math.max(result, value);
+        }
+        return result;
+    }
+
+    public static long parallelMin(long[] a) {
+        return parallelMin(a, 0, a.length);
+    }
+
+    /**
+     * Returns the smallest element of the range, or {@link Long#MAX_VALUE} if it is empty.
+     */
+    public static long parallelMin(long[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        long[] results = new long[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            long result = Long.MAX_VALUE;
+            for (int i = from; i < to; i ++) {
+                result = Math.min(result, a[i]);
+            }
+            results[index] = result;
+        });
+        long result = Long.MAX_VALUE;
+        for (long value : results) {
+            result = Math.min(result, value);
+        }
+        return result;
+    }
+
+    public static long parallelMax(long[] a) {
+        return parallelMax(a, 0, a.length);
+    }
+
+    /**
+     * Returns the largest element of the range, or {@link Long#MIN_VALUE} if it is empty.
+     */
+    public static long parallelMax(long[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        long[] results = new long[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            long result = Long.MIN_VALUE;
+            for (int i = from; i < to; i ++) {
+                result = Math.max(result, a[i]);
+            }
+            results[index] = result;
+        });
+        long result = Long.MIN_VALUE;
+        for (long value : results) {
+            result = Math.max(result, value);
+        }
+        return result;
+    }
+
+    public static float parallelMin(float[] a) {
+        return parallelMin(a, 0, a.length);
+    }
+
+    /**
+     * Returns the smallest element of the range as by {@link Math#min(float, float)}, so NaN
+     * if any element is NaN, or {@link Float#POSITIVE_INFINITY} if the range is empty.
+     */
+    public static float parallelMin(float[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        float[] results = new float[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            float result = Float.POSITIVE_INFINITY;
+            for (int i = from; i < to; i ++) {
+                result = Math.min(result, a[i]);
+            }
+            results[index] = result;
+        });
+        float result = Float.POSITIVE_INFINITY;
+        for (float value : results) {
+            result = Math.min(result, value);
+        }
+        return result;
+    }
+
+    public static float parallelMax(float[] a) {
+        return parallelMax(a, 0, a.length);
+    }
+
+    /**
+     * Returns the largest element of the range as by {@link Math#max(float, float)}, so NaN
+     * if any element is NaN, or {@link Float#NEGATIVE_INFINITY} if the range is empty.
+     */
+    public static float parallelMax(float[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        float[] results = new float[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            float result = Float.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i ++) {
+                result = Math.max(result, a[i]);
+            }
+            results[index] = result;
+        });
+        float result = Float.NEGATIVE_INFINITY;
+        for (float value : results) {
+            result = Math.max(result, value);
+        }
+        return result;
+    }
+
+    public static double parallelMin(double[] a) {
+        return parallelMin(a, 0, a.length);
+    }
+
+    /**
+     * Returns the smallest element of the range as by {@link Math#min(double, double)}, so NaN
+     * if any element is NaN, or {@link Double#POSITIVE_INFINITY} if the range is empty.
+     */
+    public static double parallelMin(double[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        double[] results = new double[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            double result = Double.POSITIVE_INFINITY;
+            for (int i = from; i < to; i ++) {
+                result = Math.min(result, a[i]);
+            }
+            results[index] = result;
+        });
+        double result = Double.POSITIVE_INFINITY;
+        for (double value : results) {
+            result = Math.min(result, value);
+        }
+        return result;
+    }
+
+    public static double parallelMax(double[] a) {
+        return parallelMax(a, 0, a.length);
+    }
+
+    /**
+     * Returns the largest element of the range as by {@link Math#max(double, double)}, so NaN
+     * if any element is NaN, or {@link Double#NEGATIVE_INFINITY} if the range is empty.
+     */
+    public static double parallelMax(double[] a, int fromIndex, int toIndex) {
+        rangeCheck(a, fromIndex, toIndex);
+        int chunks = ParallelArrays.chunkCount(toIndex - fromIndex);
+        double[] results = new double[chunks];
+        ParallelArrays.invoke(fromIndex, toIndex, chunks, (index, from, to) -> {
+            double result = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i ++) {
+                result = Math.max(result, a[i]);
+            }
+            results[index] = result;
+        });
+        double result = Double.NEGATIVE_INFINITY;
+        for (double value : results) {
+            result = Math.max(result, value);
+        }
+        return result;
+    }
+
     public static void rangeCheck(boolean[] array, int fromIndex, int toIndex) {
         rangeCheck(array.length, fromIndex, toIndex);
     }
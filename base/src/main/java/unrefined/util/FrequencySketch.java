@@ -0,0 +1,97 @@
+package unrefined.util;
+
+/**
+ * A probabilistic estimate of how often keys were accessed recently, used by the
+ * W-TinyLFU admission of {@link LruCache}. It is a count-min sketch of four 4-bit counters
+ * per key, all packed into a single <code>long</code> of the table, so recording or estimating
+ * a frequency touches one cache line. Once the number of recorded accesses reaches ten times
+ * the width of the table, every counter is halved so that stale popularity fades away.
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = new long[] {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * @param maximum the expected maximum number of distinct keys held by the cache
+     */
+    FrequencySketch(int maximum) {
+        int width = Math.min(Math.max(maximum, 8), 1 << 26);
+        width = Integer.highestOneBit(width - 1) << 1;
+        table = new long[width];
+        tableMask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    /**
+     * Returns the estimated number of recent accesses of the key, at most 15.
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i ++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access of the key, halving all counters periodically.
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i ++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++ size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xFL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i ++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (odd >>> 2)) >>> 1;
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEEDS[i]) * SEEDS[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+}
@@ -0,0 +1,413 @@
+package unrefined.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * <code>IntObjectHashMap</code> maps integers to Objects.  Like {@link SparseArray}, it avoids
+ * auto-boxing keys and its data structure doesn't rely on an extra entry object
+ * for each mapping, but it finds keys through an open-addressing hash table instead of
+ * a binary search, so lookups, adds and removes take constant time on average.
+ * It is intended for containers holding large numbers of items.
+ *
+ * <p>The mappings are kept densely packed in a pair of key and value arrays; the hash table
+ * only stores positions into those arrays, using linear probing. Removing a mapping moves the
+ * last mapping into the vacated position, so no deleted markers are left behind.</p>
+ *
+ * <p>It is possible to iterate over the items in this container using
+ * {@link #keyAt(int)} and {@link #valueAt(int)}. Unlike the sparse arrays, the keys are
+ * not kept in ascending order, and removing a mapping changes the index of the
+ * mapping that was last.</p>
+ */
+public class IntObjectHashMap<E> implements Cloneable, Iterable<E>, RandomAccess {
+
+    private int[] keys;
+    private Object[] values;
+    private int[] table; // index + 1 into keys/values, 0 means the slot is empty
+    private int size;
+
+    /**
+     * Creates a new IntObjectHashMap containing no mappings.
+     */
+    public IntObjectHashMap() {
+        this(10);
+    }
+
+    /**
+     * Creates a new IntObjectHashMap containing no mappings that will not
+     * require any additional memory allocation to store the specified
+     * number of mappings.  If you supply an initial capacity of 0, the
+     * map will be initialized with a light-weight representation
+     * not requiring any additional array allocations.
+     */
+    public IntObjectHashMap(int initialCapacity) {
+        if (initialCapacity == 0) {
+            keys = EmptyArray.INT;
+            values = EmptyArray.OBJECT;
+            table = EmptyArray.INT;
+        } else {
+            keys = new int[initialCapacity];
+            values = new Object[initialCapacity];
+            table = new int[FastArray.hashTableSize(initialCapacity)];
+        }
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public IntObjectHashMap<E> clone() {
+        IntObjectHashMap<E> clone;
+        try {
+            clone = (IntObjectHashMap<E>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            clone = new IntObjectHashMap<>();
+        }
+        clone.keys = keys.clone();
+        clone.values = values.clone();
+        clone.table = table.clone();
+        return clone;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the table slot holding the specified key, or the bitwise complement
+     * of the empty slot where it would be inserted.
+     */
+    private int slotOf(int key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        int index;
+        while ((index = table[slot]) != 0) {
+            if (keys[index - 1] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Empties the specified table slot, shifting back the following entries of the
+     * same probe run so that lookups never need deleted markers.
+     */
+    private void clearSlot(int slot) {
+        int mask = table.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        int index;
+        while ((index = table[next]) != 0) {
+            int home = hash(keys[index - 1]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = index;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    private void grow(int need) {
+        int n = Math.max(need, keys.length < 6 ? 12 : keys.length + (keys.length >> 1));
+
+        keys = Arrays.copyOf(keys, n);
+        values = Arrays.copyOf(values, n);
+
+        int tableSize = FastArray.hashTableSize(n);
+        if (tableSize > table.length) {
+            table = new int[tableSize];
+            int mask = tableSize - 1;
+            for (int i = 0; i < size; i ++) {
+                int slot = hash(keys[i]) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the key exists in the map. This is equivalent to
+     * {@link #indexOfKey(int)} >= 0.
+     *
+     * @param key Potential key in the mapping
+     * @return true if the key is defined in the mapping
+     */
+    public boolean contains(int key) {
+        return indexOfKey(key) >= 0;
+    }
+
+    /**
+     * Gets the Object mapped from the specified key, or <code>null</code>
+     * if no such mapping has been made.
+     */
+    public E get(int key) {
+        return get(key, null);
+    }
+
+    /**
+     * Gets the Object mapped from the specified key, or the specified Object
+     * if no such mapping has been made.
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int key, E valueIfKeyNotFound) {
+        int i = indexOfKey(key);
+
+        if (i < 0) {
+            return valueIfKeyNotFound;
+        } else {
+            return (E) values[i];
+        }
+    }
+
+    /**
+     * Removes the mapping from the specified key, if there was any.
+     */
+    public void remove(int key) {
+        if (size == 0) return;
+
+        int slot = slotOf(key);
+
+        if (slot >= 0) {
+            int index = table[slot] - 1;
+            clearSlot(slot);
+            moveLastTo(index);
+        }
+    }
+
+    /**
+     * Removes the mapping at the given index. The mapping that was last,
+     * if any, takes its place.
+     *
+     * <p>For indices outside of the range <code>0...size()-1</code>,
+     * an {@link ArrayIndexOutOfBoundsException} is thrown.</p>
+     */
+    public void removeAt(int index) {
+        if (index >= size) {
+            // The array might be slightly bigger than size, in which case, indexing won't fail.
+            // Check if exception should be thrown outside of the critical path.
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        clearSlot(slotOf(keys[index]));
+        moveLastTo(index);
+    }
+
+    private void moveLastTo(int index) {
+        int last = size - 1;
+        if (index != last) {
+            int slot = slotOf(keys[last]);
+            keys[index] = keys[last];
+            values[index] = values[last];
+            table[slot] = index + 1;
+        }
+        values[last] = null;
+        size = last;
+    }
+
+    /**
+     * Adds a mapping from the specified key to the specified value,
+     * replacing the previous mapping from the specified key if there
+     * was one.
+     */
+    public void put(int key, E value) {
+        if (size >= keys.length) {
+            int i = size == 0 ? -1 : indexOfKey(key);
+            if (i >= 0) {
+                values[i] = value;
+                return;
+            }
+            grow(size + 1);
+        }
+
+        int slot = slotOf(key);
+
+        if (slot >= 0) {
+            values[table[slot] - 1] = value;
+        } else {
+            keys[size] = key;
+            values[size] = value;
+            size ++;
+            table[~slot] = size;
+        }
+    }
+
+    /**
+     * Returns the number of key-value mappings that this IntObjectHashMap
+     * currently stores.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Given an index in the range <code>0...size()-1</code>, returns
+     * the key from the <code>index</code>th key-value mapping that this
+     * IntObjectHashMap stores.
+     *
+     * <p>For indices outside of the range <code>0...size()-1</code>,
+     * an {@link ArrayIndexOutOfBoundsException} is thrown.</p>
+     */
+    public int keyAt(int index) {
+        if (index >= size) {
+            // The array might be slightly bigger than size, in which case, indexing won't fail.
+            // Check if exception should be thrown outside of the critical path.
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return keys[index];
+    }
+
+    /**
+     * Given an index in the range <code>0...size()-1</code>, returns
+     * the value from the <code>index</code>th key-value mapping that this
+     * IntObjectHashMap stores.
+     *
+     * <p>For indices outside of the range <code>0...size()-1</code>,
+     * an {@link ArrayIndexOutOfBoundsException} is thrown.</p>
+     */
+    @SuppressWarnings("unchecked")
+    public E valueAt(int index) {
+        if (index >= size) {
+            // The array might be slightly bigger than size, in which case, indexing won't fail.
+            // Check if exception should be thrown outside of the critical path.
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return (E) values[index];
+    }
+
+    /**
+     * Given an index in the range <code>0...size()-1</code>, sets a new
+     * value for the <code>index</code>th key-value mapping that this
+     * IntObjectHashMap stores.
+     *
+     * <p>For indices outside of the range <code>0...size()-1</code>,
+     * an {@link ArrayIndexOutOfBoundsException} is thrown.</p>
+     */
+    public void setValueAt(int index, E value) {
+        if (index >= size) {
+            // The array might be slightly bigger than size, in which case, indexing won't fail.
+            // Check if exception should be thrown outside of the critical path.
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        values[index] = value;
+    }
+
+    /**
+     * Returns the index for which {@link #keyAt} would return the
+     * specified key, or a negative number if the specified
+     * key is not mapped.
+     */
+    public int indexOfKey(int key) {
+        if (size == 0) return -1;
+
+        int slot = slotOf(key);
+        return slot < 0 ? -1 : table[slot] - 1;
+    }
+
+    /**
+     * Returns an index for which {@link #valueAt} would return the
+     * specified key, or a negative number if no keys map to the
+     * specified value.
+     * Beware that this is a linear search, unlike lookups by key,
+     * and that multiple keys can map to the same value and this will
+     * find only one of them.
+     * <p>Note also that unlike most collections' {@code indexOf} methods,
+     * this method compares values using {@code ==} rather than {@code equals}.
+     */
+    public int indexOfValue(E value) {
+        for (int i = 0; i < size; i ++) {
+            if (values[i] == value) return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Removes all key-value mappings from this IntObjectHashMap.
+     */
+    public void clear() {
+        if (size != 0) {
+            Arrays.fill(table, 0);
+            Arrays.fill(values, 0, size, null);
+            size = 0;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IntObjectHashMap)) return false;
+
+        IntObjectHashMap<?> that = (IntObjectHashMap<?>) o;
+
+        if (size != that.size) return false;
+        for (int i = 0; i < size; i ++) {
+            int index = that.indexOfKey(keys[i]);
+            if (index < 0) return false;
+            if (!Objects.equals(values[i], that.values[index])) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 0;
+        for (int i = 0; i < size; i ++) {
+            result += keys[i] ^ Objects.hashCode(values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This implementation composes a string by iterating over its mappings. If
+     * this map contains itself as a value, the string "(this Map)"
+     * will appear in its place.
+     */
+    @Override
+    public String toString() {
+        if (size() <= 0) {
+            return "{}";
+        }
+
+        StringBuilder buffer = new StringBuilder(size * 28);
+        buffer.append('{');
+        for (int i = 0; i < size; i ++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            int key = keyAt(i);
+            buffer.append(key);
+            buffer.append('=');
+            Object value = valueAt(i);
+            if (value != this) {
+                buffer.append(value);
+            } else {
+                buffer.append("(this Map)");
+            }
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index = -1;
+            @Override
+            public boolean hasNext() {
+                return index + 1 < size();
+            }
+            @Override
+            public E next() {
+                index ++;
+                return valueAt(index);
+            }
+        };
+    }
+
+}
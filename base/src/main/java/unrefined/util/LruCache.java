@@ -16,8 +16,14 @@
 
 package unrefined.util;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A cache that holds strong references to a limited number of values. Each time
@@ -43,6 +49,18 @@ import java.util.Map;
  *       }
  *   }}</pre>
  *
+ * <p>Plain LRU lets a one-off scan over many keys flush the entries that are used
+ * all the time. A cache created with admission enabled puts new entries into a small
+ * admission window first (1% of the maximum size); an entry leaving the window only
+ * enters the main cache if a frequency sketch of recent accesses rates it higher than
+ * the least recently used entry it would evict (W-TinyLFU). Otherwise the window entry
+ * is evicted itself.
+ *
+ * <p>Entries can also expire a fixed time after they were last written, last accessed,
+ * or both. Expired entries are found through a hierarchical timer wheel rather than by
+ * scanning the cache, and are evicted as {@link #get} and {@link #put} advance it.
+ * An expired entry is never returned, even if the wheel has not evicted it yet.
+ *
  * <p>This class is thread-safe. Perform multiple cache operations atomically by
  * synchronizing on the cache: <pre>   {@code
  *   synchronized (cache) {
@@ -59,8 +77,21 @@ public class LruCache<K, V> {
 
     private final LinkedHashMap<K, V> map;
 
+    /** Admission window and frequency sketch, null unless admission is enabled. */
+    private final LinkedHashMap<K, V> window;
+    private final FrequencySketch sketch;
+
+    /** Expiration timers by key, null unless entries expire. */
+    private final HashMap<K, TimerWheel.Node<K>> timers;
+    private final TimerWheel<K> timerWheel;
+    private final List<TimerWheel.Node<K>> expiredTimers;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final long originNanos;
+
     /** Size of this cache in units. Not necessarily the number of elements. */
     private int size;
+    private int windowSize;
     private int maxSize;
 
     private int putCount;
@@ -75,11 +106,54 @@ public class LruCache<K, V> {
      *     this is the maximum sum of the sizes of the entries in this cache.
      */
     public LruCache(int maxSize) {
+        this(maxSize, false, 0, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param maxSize for caches that do not override {@link #sizeOf}, this is
+     *     the maximum number of entries in the cache. For all other caches,
+     *     this is the maximum sum of the sizes of the entries in this cache.
+     * @param admission whether new entries have to pass the W-TinyLFU admission
+     *     to enter the main cache.
+     * @param expireAfterWrite how long after it was last written an entry expires,
+     *     or 0 if entries do not expire after write.
+     * @param expireAfterAccess how long after it was last read or written an entry
+     *     expires, or 0 if entries do not expire after access.
+     * @param unit the time unit of {@code expireAfterWrite} and {@code expireAfterAccess}.
+     */
+    public LruCache(int maxSize, boolean admission, long expireAfterWrite, long expireAfterAccess, TimeUnit unit) {
         if (maxSize <= 0) {
             throw new IllegalArgumentException("maxSize <= 0");
         }
+        if (expireAfterWrite < 0) {
+            throw new IllegalArgumentException("expireAfterWrite < 0");
+        }
+        if (expireAfterAccess < 0) {
+            throw new IllegalArgumentException("expireAfterAccess < 0");
+        }
         this.maxSize = maxSize;
         this.map = new LinkedHashMap<>(0, 0.75f, true);
+        if (admission) {
+            this.window = new LinkedHashMap<>(0, 0.75f, true);
+            this.sketch = new FrequencySketch(maxSize);
+        }
+        else {
+            this.window = null;
+            this.sketch = null;
+        }
+        this.expireAfterWriteNanos = unit.toNanos(expireAfterWrite);
+        this.expireAfterAccessNanos = unit.toNanos(expireAfterAccess);
+        this.originNanos = System.nanoTime();
+        if (expireAfterWriteNanos > 0 || expireAfterAccessNanos > 0) {
+            this.timers = new HashMap<>();
+            this.timerWheel = new TimerWheel<>(0);
+            this.expiredTimers = new ArrayList<>();
+        }
+        else {
+            this.timers = null;
+            this.timerWheel = null;
+            this.expiredTimers = null;
+        }
     }
 
     /**
@@ -110,13 +184,30 @@ public class LruCache<K, V> {
         }
 
         V mapValue;
+        List<Map.Entry<K, V>> expired;
         synchronized (this) {
-            mapValue = map.get(key);
-            if (mapValue != null) {
-                hitCount++;
-                return mapValue;
+            if (sketch != null) sketch.increment(key);
+            long now = timers == null ? 0 : nanoTime();
+            expired = expireLocked(now);
+            mapValue = window != null && window.containsKey(key) ? window.get(key) : map.get(key);
+            if (mapValue != null && timers != null) {
+                TimerWheel.Node<K> timer = timers.get(key);
+                if (timer.time <= now) {
+                    // Not evicted by the timer wheel yet
+                    expired = expire(expired, key, mapValue);
+                    mapValue = null;
+                }
+                else if (expireAfterAccessNanos > 0) {
+                    schedule(timer, now);
+                }
             }
-            missCount++;
+            if (mapValue != null) hitCount++;
+            else missCount++;
+        }
+
+        notifyExpired(expired);
+        if (mapValue != null) {
+            return mapValue;
         }
 
         /*
@@ -133,14 +224,12 @@ public class LruCache<K, V> {
 
         synchronized (this) {
             createCount++;
-            mapValue = map.put(key, createdValue);
+            mapValue = window != null && window.containsKey(key) ? window.get(key) : map.get(key);
 
-            if (mapValue != null) {
-                // There was a conflict so undo that last put
-                map.put(key, mapValue);
-            } else {
-                size += safeSizeOf(key, createdValue);
+            if (mapValue == null) {
+                putLocked(key, createdValue);
             }
+            // Otherwise there was a conflict so keep the existing value
         }
 
         if (mapValue != null) {
@@ -152,6 +241,46 @@ public class LruCache<K, V> {
         }
     }
 
+    /**
+     * Returns the value for {@code key} if it is cached and not expired. Unlike
+     * {@link #get}, this does not call {@link #create}, count a hit or a miss,
+     * or record the access for admission. The value is moved to the head of
+     * the queue.
+     */
+    public synchronized final V getIfPresent(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V mapValue = window != null && window.containsKey(key) ? window.get(key) : map.get(key);
+        if (mapValue != null && timers != null) {
+            TimerWheel.Node<K> timer = timers.get(key);
+            long now = nanoTime();
+            if (timer.time <= now) {
+                return null; // Not evicted by the timer wheel yet
+            }
+            else if (expireAfterAccessNanos > 0) {
+                schedule(timer, now);
+            }
+        }
+        return mapValue;
+    }
+
+    /**
+     * Returns true if {@code key} has a value in the cache that is not expired.
+     * This does not move the entry in the queue nor count a hit or a miss.
+     */
+    public synchronized final boolean containsKey(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        if (!map.containsKey(key) && (window == null || !window.containsKey(key))) {
+            return false;
+        }
+        return timers == null || timers.get(key).time > nanoTime();
+    }
+
     /**
      * Caches {@code value} for {@code key}. The value is moved to the head of
      * the queue.
@@ -167,15 +296,15 @@ public class LruCache<K, V> {
         }
 
         V previous;
+        List<Map.Entry<K, V>> expired;
         synchronized (this) {
             putCount++;
-            size += safeSizeOf(key, value);
-            previous = map.put(key, value);
-            if (previous != null) {
-                size -= safeSizeOf(key, previous);
-            }
+            if (sketch != null) sketch.increment(key);
+            expired = expireLocked(timers == null ? 0 : nanoTime());
+            previous = putLocked(key, value);
         }
 
+        notifyExpired(expired);
         if (previous != null) {
             entryRemoved(false, key, previous, value);
         }
@@ -196,7 +325,7 @@ public class LruCache<K, V> {
             K key;
             V value;
             synchronized (this) {
-                if (size < 0 || (map.isEmpty() && size != 0)) {
+                if (size < 0 || (map.isEmpty() && (window == null || window.isEmpty()) && size != 0)) {
                     throw new IllegalStateException(getClass().getName()
                             + ".sizeOf() is reporting inconsistent results!");
                 }
@@ -205,15 +334,14 @@ public class LruCache<K, V> {
                     break;
                 }
 
-                Map.Entry<K, V> toEvict = map.entrySet().iterator().next();
+                Map.Entry<K, V> toEvict = window == null ? eldest(map) : selectVictim(maxSize);
                 if (toEvict == null) {
                     break;
                 }
 
                 key = toEvict.getKey();
                 value = toEvict.getValue();
-                map.remove(key);
-                size -= safeSizeOf(key, value);
+                removeLocked(key);
                 evictionCount++;
             }
 
@@ -233,10 +361,7 @@ public class LruCache<K, V> {
 
         V previous;
         synchronized (this) {
-            previous = map.remove(key);
-            if (previous != null) {
-                size -= safeSizeOf(key, previous);
-            }
+            previous = removeLocked(key);
         }
 
         if (previous != null) {
@@ -246,6 +371,133 @@ public class LruCache<K, V> {
         return previous;
     }
 
+    // Must hold the lock
+    private V putLocked(K key, V value) {
+        int valueSize = safeSizeOf(key, value);
+        V previous;
+        if (window != null && (window.containsKey(key) || !map.containsKey(key))) {
+            previous = window.put(key, value);
+            windowSize += valueSize;
+            if (previous != null) windowSize -= safeSizeOf(key, previous);
+        }
+        else previous = map.put(key, value);
+        size += valueSize;
+        if (previous != null) {
+            size -= safeSizeOf(key, previous);
+        }
+
+        if (timers != null) {
+            long now = nanoTime();
+            TimerWheel.Node<K> timer = timers.get(key);
+            if (timer == null) {
+                timer = new TimerWheel.Node<>(key);
+                timers.put(key, timer);
+            }
+            timer.writeTime = now;
+            schedule(timer, now);
+        }
+
+        return previous;
+    }
+
+    // Must hold the lock
+    private V removeLocked(K key) {
+        V previous = window == null ? null : window.remove(key);
+        if (previous != null) {
+            windowSize -= safeSizeOf(key, previous);
+        }
+        else previous = map.remove(key);
+
+        if (previous != null) {
+            size -= safeSizeOf(key, previous);
+            if (timers != null) {
+                timerWheel.unlink(timers.remove(key));
+            }
+        }
+        return previous;
+    }
+
+    private static <K, V> Map.Entry<K, V> eldest(LinkedHashMap<K, V> map) {
+        Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Moves entries that overflow the admission window into the main cache while it has
+     * room, and then picks the entry to evict: if the window still overflows, the frequency
+     * sketch decides between its eldest entry and the eldest entry of the main cache.
+     * Must hold the lock.
+     */
+    private Map.Entry<K, V> selectVictim(int maxSize) {
+        int windowMaxSize = maxSize <= 0 ? 0 : Math.max(1, maxSize / 100);
+        while (windowSize > windowMaxSize) {
+            Map.Entry<K, V> candidate = eldest(window);
+            K key = candidate.getKey();
+            V value = candidate.getValue();
+            int candidateSize = safeSizeOf(key, value);
+            if (!map.isEmpty() && size - windowSize + candidateSize > maxSize - windowMaxSize) {
+                Map.Entry<K, V> victim = eldest(map);
+                return sketch.frequency(key) > sketch.frequency(victim.getKey()) ? victim : candidate;
+            }
+            window.remove(key);
+            windowSize -= candidateSize;
+            map.put(key, value);
+        }
+
+        Map.Entry<K, V> victim = eldest(map);
+        return victim == null ? eldest(window) : victim;
+    }
+
+    private long nanoTime() {
+        return System.nanoTime() - originNanos;
+    }
+
+    // Must hold the lock
+    private void schedule(TimerWheel.Node<K> timer, long now) {
+        long time = Long.MAX_VALUE;
+        if (expireAfterWriteNanos > 0) time = timer.writeTime + expireAfterWriteNanos;
+        if (expireAfterAccessNanos > 0) time = Math.min(time, now + expireAfterAccessNanos);
+        timer.time = time;
+        timerWheel.schedule(timer);
+    }
+
+    /**
+     * Advances the timer wheel and removes the entries that expired by then.
+     *
+     * Must hold the lock.
+     *
+     * @return the removed entries, or null if there were none
+     */
+    private List<Map.Entry<K, V>> expireLocked(long now) {
+        if (timers == null) return null;
+        timerWheel.advance(now, expiredTimers);
+        if (expiredTimers.isEmpty()) return null;
+        List<Map.Entry<K, V>> expired = null;
+        for (TimerWheel.Node<K> timer : expiredTimers) {
+            V value = window != null && window.containsKey(timer.key) ? window.get(timer.key) : map.get(timer.key);
+            expired = expire(expired, timer.key, value);
+        }
+        expiredTimers.clear();
+        return expired;
+    }
+
+    // Must hold the lock
+    private List<Map.Entry<K, V>> expire(List<Map.Entry<K, V>> expired, K key, V value) {
+        removeLocked(key);
+        evictionCount++;
+        if (expired == null) expired = new ArrayList<>();
+        expired.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+        return expired;
+    }
+
+    private void notifyExpired(List<Map.Entry<K, V>> expired) {
+        if (expired != null) {
+            for (Map.Entry<K, V> entry : expired) {
+                entryRemoved(true, entry.getKey(), entry.getValue(), null);
+            }
+        }
+    }
+
     /**
      * Called for entries that have been evicted or removed. This method is
      * invoked when a value is evicted to make space, removed by a call to
@@ -255,8 +507,8 @@ public class LruCache<K, V> {
      * <p>The method is called without synchronization: other threads may
      * access the cache while this method is executing.
      *
-     * @param evicted true if the entry is being removed to make space, false
-     *     if the removal was caused by a {@link #put} or {@link #remove}.
+     * @param evicted true if the entry is being removed to make space or because
+     *     it expired, false if the removal was caused by a {@link #put} or {@link #remove}.
      * @param newValue the new value for {@code key}, if it exists. If non-null,
      *     this removal was caused by a {@link #put} or a {@link #get}. Otherwise, it was caused by
      *     an eviction or a {@link #remove}.
@@ -368,7 +620,9 @@ public class LruCache<K, V> {
      * recently accessed to most recently accessed.
      */
     public synchronized final Map<K, V> snapshot() {
-        return new LinkedHashMap<>(map);
+        LinkedHashMap<K, V> snapshot = new LinkedHashMap<>(map);
+        if (window != null) snapshot.putAll(window);
+        return snapshot;
     }
 
     @Override
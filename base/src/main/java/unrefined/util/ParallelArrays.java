@@ -0,0 +1,369 @@
+package unrefined.util;
+
+import unrefined.util.function.FloatBiOperator;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The implementation of the sorting, prefix and reduction operations of {@link FastArray}.
+ * Parallel operations split the range into chunks run by the common {@link ForkJoinPool},
+ * and fall back to the calling thread for short ranges or on a single core.
+ */
+final class ParallelArrays {
+
+    private ParallelArrays() {
+        throw new NotInstantiableError(ParallelArrays.class);
+    }
+
+    /**
+     * Ranges shorter than this are not split, as with {@link Arrays#parallelSort}.
+     */
+    private static final int MIN_GRAIN = 1 << 13;
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    interface Chunk {
+        void run(int index, int from, int to);
+    }
+
+    static int chunkCount(int length) {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (parallelism <= 1 || length <= MIN_GRAIN) return 1;
+        return Math.max(1, Math.min(parallelism << 2, length / MIN_GRAIN));
+    }
+
+    /**
+     * Runs the chunk action over <code>chunks</code> even slices of the range, in parallel,
+     * and returns when all of them are done.
+     */
+    static void invoke(int from, int to, int chunks, Chunk chunk) {
+        if (chunks <= 1) {
+            chunk.run(0, from, to);
+            return;
+        }
+        long length = to - from;
+        RecursiveAction[] tasks = new RecursiveAction[chunks];
+        for (int i = 0; i < chunks; i ++) {
+            final int index = i;
+            final int lo = from + (int) (length * i / chunks);
+            final int hi = from + (int) (length * (i + 1) / chunks);
+            tasks[i] = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    chunk.run(index, lo, hi);
+                }
+            };
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    // ---------------------------------------------------------------- keyed merge sort
+
+    private static final class FloatSorter extends RecursiveAction {
+        private static final long serialVersionUID = 3902187316593621947L;
+        private final float[] keys, keyBuffer;
+        private final int[] values, valueBuffer;
+        private final int base, from, to;
+        FloatSorter(float[] keys, int[] values, float[] keyBuffer, int[] valueBuffer, int base, int from, int to) {
+            this.keys = keys;
+            this.values = values;
+            this.keyBuffer = keyBuffer;
+            this.valueBuffer = valueBuffer;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_GRAIN) {
+                mergeSort(keys, values, keyBuffer, valueBuffer, base, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new FloatSorter(keys, values, keyBuffer, valueBuffer, base, from, mid),
+                    new FloatSorter(keys, values, keyBuffer, valueBuffer, base, mid, to));
+            merge(keys, values, keyBuffer, valueBuffer, base, from, mid, to);
+        }
+    }
+
+    static void sort(float[] keys, int[] values, int from, int to) {
+        int length = to - from;
+        if (length <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, values, from, to);
+            return;
+        }
+        float[] keyBuffer = new float[length];
+        int[] valueBuffer = new int[length];
+        if (chunkCount(length) > 1) {
+            ForkJoinPool.commonPool().invoke(new FloatSorter(keys, values, keyBuffer, valueBuffer, from, from, to));
+        }
+        else mergeSort(keys, values, keyBuffer, valueBuffer, from, from, to);
+    }
+
+    private static void mergeSort(float[] keys, int[] values, float[] keyBuffer, int[] valueBuffer,
+                                  int base, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, values, from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(keys, values, keyBuffer, valueBuffer, base, from, mid);
+        mergeSort(keys, values, keyBuffer, valueBuffer, base, mid, to);
+        merge(keys, values, keyBuffer, valueBuffer, base, from, mid, to);
+    }
+
+    private static void merge(float[] keys, int[] values, float[] keyBuffer, int[] valueBuffer,
+                              int base, int from, int mid, int to) {
+        if (Float.compare(keys[mid - 1], keys[mid]) <= 0) return; // Already in order
+        int offset = from - base;
+        System.arraycopy(keys, from, keyBuffer, offset, to - from);
+        System.arraycopy(values, from, valueBuffer, offset, to - from);
+        int i = offset, iEnd = mid - base, j = iEnd, jEnd = to - base;
+        for (int k = from; k < to; k ++) {
+            if (j >= jEnd || (i < iEnd && Float.compare(keyBuffer[i], keyBuffer[j]) <= 0)) {
+                keys[k] = keyBuffer[i];
+                values[k] = valueBuffer[i ++];
+            }
+            else {
+                keys[k] = keyBuffer[j];
+                values[k] = valueBuffer[j ++];
+            }
+        }
+    }
+
+    private static void insertionSort(float[] keys, int[] values, int from, int to) {
+        for (int i = from + 1; i < to; i ++) {
+            float key = keys[i];
+            int value = values[i];
+            int j = i - 1;
+            while (j >= from && Float.compare(keys[j], key) > 0) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j --;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private static final class DoubleSorter extends RecursiveAction {
+        private static final long serialVersionUID = -6215934570388721145L;
+        private final double[] keys, keyBuffer;
+        private final int[] values, valueBuffer;
+        private final int base, from, to;
+        DoubleSorter(double[] keys, int[] values, double[] keyBuffer, int[] valueBuffer, int base, int from, int to) {
+            this.keys = keys;
+            this.values = values;
+            this.keyBuffer = keyBuffer;
+            this.valueBuffer = valueBuffer;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_GRAIN) {
+                mergeSort(keys, values, keyBuffer, valueBuffer, base, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new DoubleSorter(keys, values, keyBuffer, valueBuffer, base, from, mid),
+                    new DoubleSorter(keys, values, keyBuffer, valueBuffer, base, mid, to));
+            merge(keys, values, keyBuffer, valueBuffer, base, from, mid, to);
+        }
+    }
+
+    static void sort(double[] keys, int[] values, int from, int to) {
+        int length = to - from;
+        if (length <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, values, from, to);
+            return;
+        }
+        double[] keyBuffer = new double[length];
+        int[] valueBuffer = new int[length];
+        if (chunkCount(length) > 1) {
+            ForkJoinPool.commonPool().invoke(new DoubleSorter(keys, values, keyBuffer, valueBuffer, from, from, to));
+        }
+        else mergeSort(keys, values, keyBuffer, valueBuffer, from, from, to);
+    }
+
+    private static void mergeSort(double[] keys, int[] values, double[] keyBuffer, int[] valueBuffer,
+                                  int base, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, values, from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(keys, values, keyBuffer, valueBuffer, base, from, mid);
+        mergeSort(keys, values, keyBuffer, valueBuffer, base, mid, to);
+        merge(keys, values, keyBuffer, valueBuffer, base, from, mid, to);
+    }
+
+    private static void merge(double[] keys, int[] values, double[] keyBuffer, int[] valueBuffer,
+                              int base, int from, int mid, int to) {
+        if (Double.compare(keys[mid - 1], keys[mid]) <= 0) return; // Already in order
+        int offset = from - base;
+        System.arraycopy(keys, from, keyBuffer, offset, to - from);
+        System.arraycopy(values, from, valueBuffer, offset, to - from);
+        int i = offset, iEnd = mid - base, j = iEnd, jEnd = to - base;
+        for (int k = from; k < to; k ++) {
+            if (j >= jEnd || (i < iEnd && Double.compare(keyBuffer[i], keyBuffer[j]) <= 0)) {
+                keys[k] = keyBuffer[i];
+                values[k] = valueBuffer[i ++];
+            }
+            else {
+                keys[k] = keyBuffer[j];
+                values[k] = valueBuffer[j ++];
+            }
+        }
+    }
+
+    private static void insertionSort(double[] keys, int[] values, int from, int to) {
+        for (int i = from + 1; i < to; i ++) {
+            double key = keys[i];
+            int value = values[i];
+            int j = i - 1;
+            while (j >= from && Double.compare(keys[j], key) > 0) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j --;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    // ---------------------------------------------------------------- radix sort
+
+    /**
+     * Sorts the range with a least significant digit radix sort of 8 bit digits,
+     * skipping the digits every element shares.
+     */
+    static void radixSort(int[] a, int from, int to) {
+        int length = to - from;
+        if (length <= INSERTION_SORT_THRESHOLD) {
+            Arrays.sort(a, from, to);
+            return;
+        }
+        int[] src = a, dst = new int[length];
+        int srcOffset = from, dstOffset = 0;
+        int[] count = new int[256];
+        for (int shift = 0; shift < 32; shift += 8) {
+            Arrays.fill(count, 0);
+            for (int i = srcOffset, end = srcOffset + length; i < end; i ++) {
+                count[((src[i] ^ Integer.MIN_VALUE) >>> shift) & 0xFF] ++;
+            }
+            if (count[((src[srcOffset] ^ Integer.MIN_VALUE) >>> shift) & 0xFF] == length) continue;
+            for (int i = 0, sum = dstOffset; i < 256; i ++) {
+                int c = count[i];
+                count[i] = sum;
+                sum += c;
+            }
+            for (int i = srcOffset, end = srcOffset + length; i < end; i ++) {
+                dst[count[((src[i] ^ Integer.MIN_VALUE) >>> shift) & 0xFF] ++] = src[i];
+            }
+            int[] array = src; src = dst; dst = array;
+            int offset = srcOffset; srcOffset = dstOffset; dstOffset = offset;
+        }
+        if (src != a) System.arraycopy(src, srcOffset, a, from, length);
+    }
+
+    /**
+     * Sorts the range of keys with a least significant digit radix sort of 8 bit digits,
+     * permuting the values in the same way if they are not null. The sort is stable.
+     */
+    static void radixSort(long[] keys, int[] values, int from, int to) {
+        int length = to - from;
+        if (length < 2) return;
+        long[] src = keys, dst = new long[length];
+        int[] srcValues = values, dstValues = values == null ? null : new int[length];
+        int srcOffset = from, dstOffset = 0;
+        int[] count = new int[256];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(count, 0);
+            for (int i = srcOffset, end = srcOffset + length; i < end; i ++) {
+                count[(int) ((src[i] ^ Long.MIN_VALUE) >>> shift) & 0xFF] ++;
+            }
+            if (count[(int) ((src[srcOffset] ^ Long.MIN_VALUE) >>> shift) & 0xFF] == length) continue;
+            for (int i = 0, sum = dstOffset; i < 256; i ++) {
+                int c = count[i];
+                count[i] = sum;
+                sum += c;
+            }
+            for (int i = srcOffset, end = srcOffset + length; i < end; i ++) {
+                int index = count[(int) ((src[i] ^ Long.MIN_VALUE) >>> shift) & 0xFF] ++;
+                dst[index] = src[i];
+                if (values != null) dstValues[index] = srcValues[i];
+            }
+            long[] array = src; src = dst; dst = array;
+            int[] valueArray = srcValues; srcValues = dstValues; dstValues = valueArray;
+            int offset = srcOffset; srcOffset = dstOffset; dstOffset = offset;
+        }
+        if (src != keys) {
+            System.arraycopy(src, srcOffset, keys, from, length);
+            if (values != null) System.arraycopy(srcValues, srcOffset, values, from, length);
+        }
+    }
+
+    /**
+     * Maps a float to an int whose signed order is the order of {@link Float#compare}.
+     */
+    static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+
+    /**
+     * Maps a double to a long whose signed order is the order of {@link Double#compare}.
+     */
+    static long sortableBits(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & 0x7FFFFFFFFFFFFFFFL);
+    }
+
+    /**
+     * Returns the indices of the range in the order of their keys, which are consumed.
+     */
+    static int[] argsort(long[] keys, int from, int to) {
+        int[] indices = new int[keys.length];
+        for (int i = from; i < to; i ++) {
+            indices[i] = i;
+        }
+        radixSort(keys, indices, from, to);
+        return Arrays.copyOfRange(indices, from, to);
+    }
+
+    // ---------------------------------------------------------------- prefix
+
+    static void prefix(float[] a, int from, int to, FloatBiOperator op) {
+        int chunks = chunkCount(to - from);
+        final int[] ends = new int[chunks];
+        invoke(from, to, chunks, (index, lo, hi) -> {
+            for (int i = lo + 1; i < hi; i ++) {
+                a[i] = op.apply(a[i - 1], a[i]);
+            }
+            ends[index] = hi;
+        });
+        if (chunks <= 1) return;
+        // Combine the totals of the chunks, then fold the total of the preceding chunks into each
+        final float[] carries = new float[chunks];
+        carries[0] = a[ends[0] - 1];
+        for (int i = 1; i < chunks; i ++) {
+            carries[i] = op.apply(carries[i - 1], a[ends[i] - 1]);
+        }
+        invoke(from, to, chunks, (index, lo, hi) -> {
+            if (index == 0) return;
+            float carry = carries[index - 1];
+            for (int i = lo; i < hi; i ++) {
+                a[i] = op.apply(carry, a[i]);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,253 @@
+package unrefined.util;
+
+import unrefined.util.concurrent.Producer;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of reusable objects. {@link #obtain} returns a pooled instance, or a new one from
+ * the factory if the pool is empty; {@link #recycle} resets an instance and keeps it for the next
+ * {@link #obtain}, or drops it for the garbage collector if the pool is full.
+ *
+ * <p>Two variants are provided. {@link #ofThreadLocal} keeps a separate stack per thread, which
+ * needs no synchronization at all but only reuses instances recycled by the same thread that
+ * obtains them. {@link #ofShared} keeps a single array of slots that all threads exchange
+ * instances through with lock-free compare-and-set, so it suits objects obtained on one thread
+ * and recycled on another.</p>
+ *
+ * <p>Both variants are thread-safe. An instance must not be used after it has been recycled, and
+ * must not be recycled twice.</p>
+ *
+ * <pre>{@code
+ * Pool<Text.Metrics> pool = Pool.ofThreadLocal(Text.Metrics::new, 16);
+ * Text.Metrics metrics = pool.obtain();
+ * try {
+ *     graphics.measureText(text, metrics);
+ *     ...
+ * }
+ * finally {
+ *     pool.recycle(metrics);
+ * }
+ * }</pre>
+ *
+ * @param <T> the type of the pooled objects
+ */
+public abstract class Pool<T extends Resettable> {
+
+    /**
+     * Creates a pool keeping up to {@code capacity} instances for each thread.
+     */
+    public static <T extends Resettable> Pool<T> ofThreadLocal(Producer<? extends T> factory, int capacity) {
+        return new ThreadLocalPool<>(factory, capacity);
+    }
+
+    /**
+     * Creates a pool keeping up to {@code capacity} instances shared between all threads.
+     */
+    public static <T extends Resettable> Pool<T> ofShared(Producer<? extends T> factory, int capacity) {
+        return new SharedPool<>(factory, capacity);
+    }
+
+    private final Producer<? extends T> factory;
+    private final int capacity;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder dropCount = new LongAdder();
+
+    Pool(Producer<? extends T> factory, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity <= 0");
+        this.factory = Objects.requireNonNull(factory);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns a pooled instance, or a new instance from the factory if none is available.
+     */
+    public final T obtain() {
+        T instance = poll();
+        if (instance != null) {
+            hitCount.increment();
+            return instance;
+        }
+        missCount.increment();
+        return Objects.requireNonNull(factory.get(), "factory returned null");
+    }
+
+    /**
+     * Resets the instance and returns it to the pool.
+     *
+     * @return true if the instance was kept, false if the pool was full and it was dropped
+     */
+    public final boolean recycle(T instance) {
+        instance.reset();
+        if (offer(instance)) return true;
+        dropCount.increment();
+        return false;
+    }
+
+    abstract T poll();
+    abstract boolean offer(T instance);
+
+    /**
+     * Drops the pooled instances. For the thread-local variant, only those of the calling thread.
+     */
+    public abstract void clear();
+
+    /**
+     * Returns the number of pooled instances. For the thread-local variant, only those of the calling
+     * thread. For the shared variant, the count is a snapshot that may be stale by the time it returns.
+     */
+    public abstract int size();
+
+    /**
+     * Returns the maximum number of pooled instances, per thread for the thread-local variant.
+     */
+    public final int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of times {@link #obtain} returned a pooled instance.
+     */
+    public final long hitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of times {@link #obtain} had to create a new instance.
+     */
+    public final long missCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of times {@link #recycle} dropped an instance because the pool was full.
+     */
+    public final long dropCount() {
+        return dropCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        long hits = hitCount.sum();
+        long accesses = hits + missCount.sum();
+        int hitPercent = accesses != 0 ? (int) (100 * hits / accesses) : 0;
+        return String.format("%s[capacity=%d,hits=%d,misses=%d,drops=%d,hitRate=%d%%]",
+                getClass().getSimpleName(), capacity, hits, missCount.sum(), dropCount.sum(), hitPercent);
+    }
+
+    private static final class ThreadLocalPool<T extends Resettable> extends Pool<T> {
+
+        private static final class Stack {
+            private final Object[] elements;
+            private int size;
+            Stack(int capacity) {
+                elements = new Object[capacity];
+            }
+        }
+
+        private final ThreadLocal<Stack> stacks;
+
+        ThreadLocalPool(Producer<? extends T> factory, int capacity) {
+            super(factory, capacity);
+            stacks = new ProducerThreadLocal<>(() -> new Stack(capacity));
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        T poll() {
+            Stack stack = stacks.get();
+            if (stack.size == 0) return null;
+            int index = -- stack.size;
+            Object instance = stack.elements[index];
+            stack.elements[index] = null;
+            return (T) instance;
+        }
+
+        @Override
+        boolean offer(T instance) {
+            Stack stack = stacks.get();
+            if (stack.size == stack.elements.length) return false;
+            stack.elements[stack.size ++] = instance;
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            Stack stack = stacks.get();
+            while (stack.size > 0) {
+                stack.elements[-- stack.size] = null;
+            }
+        }
+
+        @Override
+        public int size() {
+            return stacks.get().size;
+        }
+
+    }
+
+    private static final class SharedPool<T extends Resettable> extends Pool<T> {
+
+        private final AtomicReferenceArray<T> slots;
+
+        SharedPool(Producer<? extends T> factory, int capacity) {
+            super(factory, capacity);
+            slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        /*
+         * Threads start probing at a slot derived from their id, so that threads obtaining and
+         * recycling at the same time mostly touch different slots.
+         */
+        private int probeStart() {
+            return (int) (((Thread.currentThread().getId() * 0x9E3779B9L) >>> 1) % slots.length());
+        }
+
+        @Override
+        T poll() {
+            int length = slots.length();
+            int index = probeStart();
+            for (int i = 0; i < length; i ++) {
+                if (slots.get(index) != null) {
+                    T instance = slots.getAndSet(index, null);
+                    if (instance != null) return instance;
+                }
+                if (++ index == length) index = 0;
+            }
+            return null;
+        }
+
+        @Override
+        boolean offer(T instance) {
+            int length = slots.length();
+            int index = probeStart();
+            for (int i = 0; i < length; i ++) {
+                if (slots.get(index) == null && slots.compareAndSet(index, null, instance)) return true;
+                if (++ index == length) index = 0;
+            }
+            return false;
+        }
+
+        @Override
+        public void clear() {
+            for (int i = 0; i < slots.length(); i ++) {
+                slots.set(i, null);
+            }
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (int i = 0; i < slots.length(); i ++) {
+                if (slots.get(i) != null) size ++;
+            }
+            return size;
+        }
+
+    }
+
+}
@@ -16,16 +16,31 @@
  */
 package unrefined.util;
 
+import unrefined.context.Environment;
 import unrefined.util.event.Event;
 import unrefined.util.event.EventSlot;
+import unrefined.util.signal.Dispatcher;
 import unrefined.util.signal.Signal;
 import unrefined.util.signal.SignalSlot;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * A timer emitting {@link #onPerform()} after a delay, then at a fixed rate if it repeats.
+ *
+ * <p>All timers share a hashed hierarchical timing wheel running on one daemon thread, so starting
+ * and stopping a timer is O(1) however many timers are running. The wheel ticks every millisecond
+ * by default, see the <code>unrefined.util.timer.tick</code> property (in microseconds), and timers
+ * expire up to one tick late. Repeating timers are rescheduled from their previous deadline, so
+ * they do not drift.</p>
+ *
+ * <p>By default {@link #onPerform()} is emitted on the wheel thread, where a slow slot delays every
+ * other timer. Set an {@link Executor} with {@link #setExecutor}, or connect the slots with a
+ * {@link Dispatcher}, to run them elsewhere. A coalescing timer skips expirations while the
+ * previous emission is still running, and skips the periods it missed if it fell behind.</p>
+ */
 public class ScheduledTimer {
 
     public static Builder build() {
@@ -57,10 +72,18 @@ public class ScheduledTimer {
             timer.setTimeUnit(timeUnit);
             return this;
         }
+        public Builder executor(Executor executor) {
+            timer.setExecutor(executor);
+            return this;
+        }
         public Builder onPerform(SignalSlot<EventSlot<PerformEvent>> consumer) {
             consumer.accept(timer.onPerform());
             return this;
         }
+        public Builder onPerform(EventSlot<PerformEvent> slot, Dispatcher dispatcher) {
+            timer.onPerform().connect(slot, dispatcher);
+            return this;
+        }
         public ScheduledTimer start() {
             timer.start();
             return timer;
@@ -75,14 +98,13 @@ public class ScheduledTimer {
     private boolean repeat;
     private boolean coalesce;
     private TimeUnit timeUnit;
+    private volatile Executor executor;
 
-    private ScheduledFuture<?> scheduledFuture;
+    private TimerScheduler.Timeout timeout;
+    private final AtomicBoolean performing = new AtomicBoolean();
 
-    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
-        Thread thread = new Thread(runnable, "ScheduledTimer");
-        thread.setDaemon(true);
-        return thread;
-    });
+    private static final TimerScheduler SCHEDULER = new TimerScheduler("ScheduledTimer",
+            TimeUnit.MICROSECONDS.toNanos(Math.max(1, Environment.properties().parseIntProperty("unrefined.util.timer.tick", 1000))));
 
     public ScheduledTimer() {
         this(0);
@@ -159,30 +181,53 @@ public class ScheduledTimer {
         this.timeUnit = timeUnit == null ? TimeUnit.MILLISECONDS : timeUnit;
     }
 
-    public void start() {
-        if (isStarted()) scheduledFuture.cancel(false);
-        scheduledFuture = EXECUTOR.scheduleAtFixedRate(new Runnable() {
-            private int queuedCounter = 0;
-            @Override
-            public void run() {
-                if (!coalesce || queuedCounter <= 0) {
-                    queuedCounter ++;
-                    onPerform().emit(new PerformEvent(ScheduledTimer.this, System.currentTimeMillis()));
-                    if (repeat) queuedCounter --;
-                    else stop();
-                }
+    /**
+     * Sets the executor {@link #onPerform()} is emitted on, or null to emit it on the timer thread.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public synchronized void start() {
+        if (repeat && period == 0) throw new IllegalArgumentException("Non-positive period: " + period);
+        if (isStarted()) timeout.cancel();
+        timeout = SCHEDULER.schedule(this::expire, timeUnit.toNanos(delay), repeat ? timeUnit.toNanos(period) : 0, coalesce);
+    }
+
+    private void expire(TimerScheduler.Timeout timeout, long deadline) {
+        if (timeout.isExpired()) {
+            synchronized (this) {
+                if (this.timeout == timeout) this.timeout = null;
+            }
+        }
+        if (coalesce && !performing.compareAndSet(false, true)) return;
+        long scheduledTime = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - deadline);
+        Runnable perform = () -> {
+            try {
+                onPerform().emit(new PerformEvent(ScheduledTimer.this, scheduledTime));
+            }
+            finally {
+                performing.set(false);
             }
-        }, delay, period, timeUnit);
+        };
+        Executor executor = this.executor;
+        if (executor == null) perform.run();
+        else executor.execute(perform);
     }
 
-    public void stop() {
-        if (scheduledFuture != null && scheduledFuture.cancel(false)) {
-            scheduledFuture = null;
+    public synchronized void stop() {
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
         }
     }
 
-    public boolean isStarted() {
-        return scheduledFuture != null;
+    public synchronized boolean isStarted() {
+        return timeout != null;
     }
 
     public static final class PerformEvent extends Event<ScheduledTimer> {
@@ -0,0 +1,801 @@
+package unrefined.util;
+
+import java.util.Arrays;
+
+/**
+ * SparseBitmap is a compressed set of non-negative ints, meant for large, sparse id sets where
+ * a {@link BitArray} spanning the highest id would waste memory. It is organized like a
+ * roaring bitmap: values are grouped into chunks of 65536 by their high 16 bits, and each
+ * non-empty chunk is stored in the smaller of two containers, a sorted array of the low 16 bits
+ * while it holds at most 4096 values, or a 65536-bit bitmap once it holds more. Lookups binary
+ * search the chunk keys and then the container; bulk operations work chunk by chunk, a word at a
+ * time for bitmap containers.
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class SparseBitmap implements Cloneable {
+
+    /**
+     * The largest number of values stored in an array container, 4096 chars take as much
+     * memory as a bitmap container.
+     */
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    /**
+     * Creates a new empty SparseBitmap.
+     */
+    public SparseBitmap() {
+        this(4);
+    }
+
+    /**
+     * Creates a new empty SparseBitmap with room for the specified number of chunks
+     * (ranges of 65536 values) without growing.
+     */
+    public SparseBitmap(int initialCapacity) {
+        if (initialCapacity < 0) throw new IllegalArgumentException("initialCapacity < 0");
+        keys = new char[initialCapacity];
+        containers = new Container[initialCapacity];
+        size = 0;
+    }
+
+    @Override
+    public SparseBitmap clone() {
+        SparseBitmap clone;
+        try {
+            clone = (SparseBitmap) super.clone();
+        }
+        catch (CloneNotSupportedException e) {
+            clone = new SparseBitmap(0);
+            clone.size = size;
+        }
+        clone.keys = keys.clone();
+        clone.containers = containers.clone();
+        for (int i = 0; i < size; i ++) {
+            clone.containers[i] = containers[i].clone();
+        }
+        return clone;
+    }
+
+    private static char highBits(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char lowBits(int value) {
+        return (char) value;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) throw new IndexOutOfBoundsException("value < 0: " + value);
+    }
+
+    private int indexOfKey(char key) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char midVal = keys[mid];
+            if (midVal < key) lo = mid + 1;
+            else if (midVal > key) hi = mid - 1;
+            else return mid;
+        }
+        return ~lo;
+    }
+
+    private void insertAt(int index, char key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(size << 1, 4);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size ++;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[-- size] = null;
+    }
+
+    /**
+     * Adds the specified value, returning true if it was not already present.
+     */
+    public boolean add(int value) {
+        checkValue(value);
+        char key = highBits(value);
+        int index = indexOfKey(key);
+        if (index < 0) {
+            ArrayContainer container = new ArrayContainer(4);
+            container.add(lowBits(value));
+            insertAt(~index, key, container);
+            return true;
+        }
+        Container container = containers[index];
+        int cardinality = container.cardinality();
+        containers[index] = container = container.add(lowBits(value));
+        return container.cardinality() != cardinality;
+    }
+
+    /**
+     * Adds the values from <code>fromValue</code> (inclusive) to <code>toValue</code> (exclusive).
+     */
+    public void add(int fromValue, int toValue) {
+        checkValue(fromValue);
+        if (fromValue > toValue) {
+            throw new IndexOutOfBoundsException("fromValue(" + fromValue + ") > toValue(" + toValue + ")");
+        }
+        if (fromValue == toValue) return;
+        int last = toValue - 1;
+        for (int key = highBits(fromValue); key <= highBits(last); key ++) {
+            int from = key == highBits(fromValue) ? lowBits(fromValue) : 0;
+            int to = key == highBits(last) ? lowBits(last) + 1 : 65536;
+            BitmapContainer range = new BitmapContainer();
+            range.addRange(from, to);
+            int index = indexOfKey((char) key);
+            if (index < 0) insertAt(~index, (char) key, range.normalize());
+            else containers[index] = containers[index].or(range);
+        }
+    }
+
+    /**
+     * Removes the specified value, returning true if it was present.
+     */
+    public boolean remove(int value) {
+        if (value < 0) return false;
+        int index = indexOfKey(highBits(value));
+        if (index < 0) return false;
+        Container container = containers[index];
+        int cardinality = container.cardinality();
+        container = container.remove(lowBits(value));
+        if (container.cardinality() == cardinality) return false;
+        if (container.cardinality() == 0) removeAt(index);
+        else containers[index] = container;
+        return true;
+    }
+
+    /**
+     * Returns true if the specified value is present.
+     */
+    public boolean contains(int value) {
+        if (value < 0) return false;
+        int index = indexOfKey(highBits(value));
+        return index >= 0 && containers[index].contains(lowBits(value));
+    }
+
+    /**
+     * Removes all values.
+     */
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Returns true if no value is present.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of values present.
+     */
+    public int cardinality() {
+        int sum = 0;
+        for (int i = 0; i < size; i ++) {
+            sum += containers[i].cardinality();
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the smallest value present that is greater than or equal to the specified one,
+     * or -1 if there is none.
+     */
+    public int nextSetBit(int fromValue) {
+        if (fromValue < 0) throw new IndexOutOfBoundsException("fromValue < 0: " + fromValue);
+        char key = highBits(fromValue);
+        int index = indexOfKey(key);
+        if (index >= 0) {
+            int low = containers[index].nextValue(lowBits(fromValue));
+            if (low >= 0) return (key << 16) | low;
+            index ++;
+        }
+        else index = ~index;
+        if (index >= size) return -1;
+        return (keys[index] << 16) | containers[index].nextValue(0);
+    }
+
+    /**
+     * Returns the largest value present, or -1 if there is none.
+     */
+    public int last() {
+        if (size == 0) return -1;
+        return (keys[size - 1] << 16) | containers[size - 1].lastValue();
+    }
+
+    /**
+     * Keeps only the values that are also present in the specified bitmap.
+     */
+    public void and(SparseBitmap other) {
+        if (this == other) return;
+        int count = 0;
+        for (int i = 0, j = 0; i < size && j < other.size; ) {
+            char key = keys[i];
+            char otherKey = other.keys[j];
+            if (key < otherKey) i ++;
+            else if (key > otherKey) j ++;
+            else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    keys[count] = key;
+                    containers[count ++] = container;
+                }
+                i ++;
+                j ++;
+            }
+        }
+        Arrays.fill(containers, count, size, null);
+        size = count;
+    }
+
+    /**
+     * Adds the values present in the specified bitmap.
+     */
+    public void or(SparseBitmap other) {
+        if (this == other) return;
+        merge(other, OR);
+    }
+
+    /**
+     * Toggles the values present in the specified bitmap.
+     */
+    public void xor(SparseBitmap other) {
+        if (this == other) {
+            clear();
+            return;
+        }
+        merge(other, XOR);
+    }
+
+    /**
+     * Removes the values present in the specified bitmap.
+     */
+    public void andNot(SparseBitmap other) {
+        if (this == other) {
+            clear();
+            return;
+        }
+        int count = 0;
+        for (int i = 0, j = 0; i < size; i ++) {
+            char key = keys[i];
+            while (j < other.size && other.keys[j] < key) j ++;
+            Container container = containers[i];
+            if (j < other.size && other.keys[j] == key) container = container.andNot(other.containers[j]);
+            if (container.cardinality() > 0) {
+                keys[count] = key;
+                containers[count ++] = container;
+            }
+        }
+        Arrays.fill(containers, count, size, null);
+        size = count;
+    }
+
+    private static final int OR = 0;
+    private static final int XOR = 1;
+
+    private void merge(SparseBitmap other, int op) {
+        int capacity = size + other.size;
+        char[] newKeys = new char[capacity];
+        Container[] newContainers = new Container[capacity];
+        int count = 0;
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                newKeys[count] = keys[i];
+                newContainers[count ++] = containers[i ++];
+            }
+            else if (i == size || keys[i] > other.keys[j]) {
+                newKeys[count] = other.keys[j];
+                newContainers[count ++] = other.containers[j ++].clone();
+            }
+            else {
+                Container container = op == OR ? containers[i].or(other.containers[j]) : containers[i].xor(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    newKeys[count] = keys[i];
+                    newContainers[count ++] = container;
+                }
+                i ++;
+                j ++;
+            }
+        }
+        keys = newKeys;
+        containers = newContainers;
+        size = count;
+    }
+
+    /**
+     * Returns the values present in ascending order.
+     */
+    public int[] toArray() {
+        int[] result = new int[cardinality()];
+        int offset = 0;
+        for (int i = 0; i < size; i ++) {
+            offset = containers[i].copyTo(keys[i] << 16, result, offset);
+        }
+        return result;
+    }
+
+    /**
+     * Releases the unused capacity of the chunk table and array containers.
+     */
+    public void trimToSize() {
+        if (size != keys.length) {
+            keys = Arrays.copyOf(keys, size);
+            containers = Arrays.copyOf(containers, size);
+        }
+        for (int i = 0; i < size; i ++) {
+            containers[i].trimToSize();
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SparseBitmap)) return false;
+
+        SparseBitmap that = (SparseBitmap) o;
+        if (size != that.size) return false;
+
+        for (int i = 0; i < size; i ++) {
+            if (keys[i] != that.keys[i]) return false;
+            if (!containers[i].equals(that.containers[i])) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = size;
+        for (int i = 0; i < size; i ++) {
+            result = 31 * result + keys[i];
+            result = 31 * result + containers[i].hashCode();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        if (size == 0) return "{}";
+
+        StringBuilder buffer = new StringBuilder();
+        buffer.append('{');
+        for (int i = nextSetBit(0); i >= 0; i = i == Integer.MAX_VALUE ? -1 : nextSetBit(i + 1)) {
+            if (buffer.length() > 1) buffer.append(", ");
+            buffer.append(i);
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    /**
+     * Holds the low 16 bits of the values of one chunk. Mutators, including the bulk operations,
+     * may modify this container and return the container holding the result, which may be this
+     * one or a converted one. The other operand is never modified.
+     */
+    private static abstract class Container implements Cloneable {
+
+        abstract int cardinality();
+        abstract boolean contains(char value);
+        abstract Container add(char value);
+        abstract Container remove(char value);
+        abstract int nextValue(int fromValue);
+        abstract int lastValue();
+        abstract int copyTo(int high, int[] dest, int offset);
+        abstract void trimToSize();
+        abstract BitmapContainer toBitmap();
+
+        Container and(Container other) {
+            if (this instanceof ArrayContainer) return ((ArrayContainer) this).filter(other, true);
+            else if (other instanceof ArrayContainer) return ((ArrayContainer) other).filter(this, true);
+            BitmapContainer result = (BitmapContainer) this;
+            result.andInPlace((BitmapContainer) other);
+            return result.normalize();
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer) return ((ArrayContainer) this).filter(other, false);
+            BitmapContainer result = (BitmapContainer) this;
+            result.andNotInPlace(other);
+            return result.normalize();
+        }
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                    && cardinality() + other.cardinality() <= ARRAY_MAX_SIZE) {
+                return ArrayContainer.merge((ArrayContainer) this, (ArrayContainer) other, false);
+            }
+            BitmapContainer result = toBitmap();
+            result.orInPlace(other);
+            return result.normalize();
+        }
+
+        Container xor(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                    && cardinality() + other.cardinality() <= ARRAY_MAX_SIZE) {
+                return ArrayContainer.merge((ArrayContainer) this, (ArrayContainer) other, true);
+            }
+            BitmapContainer result = toBitmap();
+            result.xorInPlace(other);
+            return result.normalize();
+        }
+
+        @Override
+        public abstract Container clone();
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Container)) return false;
+            Container that = (Container) o;
+            if (cardinality() != that.cardinality()) return false;
+            // Containers are normalized, so equal sets always use the same representation
+            if (getClass() != that.getClass()) return false;
+            if (this instanceof ArrayContainer) {
+                ArrayContainer a = (ArrayContainer) this, b = (ArrayContainer) that;
+                for (int i = 0; i < a.size; i ++) {
+                    if (a.values[i] != b.values[i]) return false;
+                }
+                return true;
+            }
+            else return Arrays.equals(((BitmapContainer) this).words, ((BitmapContainer) that).words);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = cardinality();
+            for (int value = nextValue(0); value >= 0; value = value == 65535 ? -1 : nextValue(value + 1)) {
+                result = 31 * result + value;
+            }
+            return result;
+        }
+
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int size;
+
+        ArrayContainer(int capacity) {
+            values = new char[capacity];
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        private int indexOf(char value) {
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char midVal = values[mid];
+                if (midVal < value) lo = mid + 1;
+                else if (midVal > value) hi = mid - 1;
+                else return mid;
+            }
+            return ~lo;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return indexOf(value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = indexOf(value);
+            if (index >= 0) return this;
+            if (size == ARRAY_MAX_SIZE) return toBitmap().add(value);
+            index = ~index;
+            if (size == values.length) values = Arrays.copyOf(values, Math.min(Math.max(size << 1, 4), ARRAY_MAX_SIZE));
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size ++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = indexOf(value);
+            if (index < 0) return this;
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size --;
+            return this;
+        }
+
+        @Override
+        int nextValue(int fromValue) {
+            int index = indexOf((char) fromValue);
+            if (index < 0) index = ~index;
+            return index < size ? values[index] : -1;
+        }
+
+        @Override
+        int lastValue() {
+            return values[size - 1];
+        }
+
+        @Override
+        int copyTo(int high, int[] dest, int offset) {
+            for (int i = 0; i < size; i ++) {
+                dest[offset ++] = high | values[i];
+            }
+            return offset;
+        }
+
+        @Override
+        void trimToSize() {
+            if (size != values.length) values = Arrays.copyOf(values, size);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < size; i ++) {
+                char value = values[i];
+                bitmap.words[value >>> 6] |= 1L << value;
+            }
+            bitmap.cardinality = size;
+            return bitmap;
+        }
+
+        /**
+         * Keeps the values that are (retain) or are not (!retain) present in the other container.
+         */
+        ArrayContainer filter(Container other, boolean retain) {
+            char[] result = new char[size];
+            int count = 0;
+            for (int i = 0; i < size; i ++) {
+                if (other.contains(values[i]) == retain) result[count ++] = values[i];
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        static ArrayContainer merge(ArrayContainer a, ArrayContainer b, boolean exclusive) {
+            char[] result = new char[a.size + b.size];
+            int count = 0;
+            int i = 0, j = 0;
+            while (i < a.size && j < b.size) {
+                char x = a.values[i], y = b.values[j];
+                if (x < y) {
+                    result[count ++] = x;
+                    i ++;
+                }
+                else if (x > y) {
+                    result[count ++] = y;
+                    j ++;
+                }
+                else {
+                    if (!exclusive) result[count ++] = x;
+                    i ++;
+                    j ++;
+                }
+            }
+            while (i < a.size) result[count ++] = a.values[i ++];
+            while (j < b.size) result[count ++] = b.values[j ++];
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        public ArrayContainer clone() {
+            return new ArrayContainer(Arrays.copyOf(values, size), size);
+        }
+
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private long[] words = new long[BITMAP_WORDS];
+        private int cardinality;
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long word = words[value >>> 6];
+            long newWord = word | (1L << value);
+            if (word != newWord) {
+                words[value >>> 6] = newWord;
+                cardinality ++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long word = words[value >>> 6];
+            long newWord = word & ~(1L << value);
+            if (word != newWord) {
+                words[value >>> 6] = newWord;
+                cardinality --;
+                if (cardinality <= ARRAY_MAX_SIZE) return toArray();
+            }
+            return this;
+        }
+
+        void addRange(int from, int to) {
+            int startWord = from >>> 6;
+            int endWord = (to - 1) >>> 6;
+            long firstWordMask = -1L << from;
+            long lastWordMask = -1L >>> -to;
+            if (startWord == endWord) words[startWord] |= (firstWordMask & lastWordMask);
+            else {
+                words[startWord] |= firstWordMask;
+                for (int i = startWord + 1; i < endWord; i ++) {
+                    words[i] = -1L;
+                }
+                words[endWord] |= lastWordMask;
+            }
+            recalculateCardinality();
+        }
+
+        void andInPlace(BitmapContainer other) {
+            for (int i = 0; i < BITMAP_WORDS; i ++) {
+                words[i] &= other.words[i];
+            }
+            recalculateCardinality();
+        }
+
+        void andNotInPlace(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.size; i ++) {
+                    char value = array.values[i];
+                    words[value >>> 6] &= ~(1L << value);
+                }
+            }
+            else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i ++) {
+                    words[i] &= ~otherWords[i];
+                }
+            }
+            recalculateCardinality();
+        }
+
+        void orInPlace(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.size; i ++) {
+                    char value = array.values[i];
+                    words[value >>> 6] |= 1L << value;
+                }
+            }
+            else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i ++) {
+                    words[i] |= otherWords[i];
+                }
+            }
+            recalculateCardinality();
+        }
+
+        void xorInPlace(Container other) {
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.size; i ++) {
+                    char value = array.values[i];
+                    words[value >>> 6] ^= 1L << value;
+                }
+            }
+            else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i ++) {
+                    words[i] ^= otherWords[i];
+                }
+            }
+            recalculateCardinality();
+        }
+
+        private void recalculateCardinality() {
+            int sum = 0;
+            for (int i = 0; i < BITMAP_WORDS; i ++) {
+                sum += Long.bitCount(words[i]);
+            }
+            cardinality = sum;
+        }
+
+        Container normalize() {
+            return cardinality <= ARRAY_MAX_SIZE ? toArray() : this;
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i ++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count ++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+
+        @Override
+        int nextValue(int fromValue) {
+            int u = fromValue >>> 6;
+            long word = words[u] & (-1L << fromValue);
+            while (true) {
+                if (word != 0) return (u << 6) + Long.numberOfTrailingZeros(word);
+                if (++ u == BITMAP_WORDS) return -1;
+                word = words[u];
+            }
+        }
+
+        @Override
+        int lastValue() {
+            for (int u = BITMAP_WORDS - 1; u >= 0; u --) {
+                if (words[u] != 0) return (u << 6) + 63 - Long.numberOfLeadingZeros(words[u]);
+            }
+            return -1;
+        }
+
+        @Override
+        int copyTo(int high, int[] dest, int offset) {
+            for (int i = 0; i < BITMAP_WORDS; i ++) {
+                long word = words[i];
+                while (word != 0) {
+                    dest[offset ++] = high | ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        void trimToSize() {
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return this;
+        }
+
+        @Override
+        public BitmapContainer clone() {
+            BitmapContainer clone = new BitmapContainer();
+            System.arraycopy(words, 0, clone.words, 0, BITMAP_WORDS);
+            clone.cardinality = cardinality;
+            return clone;
+        }
+
+    }
+
+}
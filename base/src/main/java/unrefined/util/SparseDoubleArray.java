@@ -16,6 +16,7 @@
 
 package unrefined.util;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.RandomAccess;
 
@@ -299,6 +300,131 @@ public class SparseDoubleArray implements Cloneable, Iterable<Double>, RandomAcc
         size = pos + 1;
     }
 
+    /**
+     * Adds mappings from the specified keys to the specified values as a batch,
+     * replacing the previous mappings from keys that were already present.
+     * The keys need not be sorted; they are sorted once and then merged with the existing
+     * mappings in linear time, instead of shifting the arrays on every insertion like
+     * repeated calls to {@link #put} do. If a key occurs more than once, its last
+     * occurrence wins.
+     */
+    public void putAll(int[] keys, double[] values) {
+        putAll(keys, values, 0, keys.length);
+    }
+
+    /**
+     * Adds <code>length</code> mappings starting at <code>offset</code> from the specified keys
+     * to the specified values as a batch, like {@link #putAll(int[], double[])}.
+     */
+    public void putAll(int[] keys, double[] values, int offset, int length) {
+        FastArray.rangeCheck(keys.length, offset, offset + length);
+        FastArray.rangeCheck(values.length, offset, offset + length);
+        if (length == 0) return;
+
+        // Sorts the key/position pairs, the position keeps equal keys in input order
+        long[] order = new long[length];
+        for (int i = 0; i < length; i ++) {
+            order[i] = ((long) keys[offset + i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int[] sortedKeys = new int[length];
+        double[] sortedValues = new double[length];
+        int n = 0;
+        for (int i = 0; i < length; i ++) {
+            int key = (int) (order[i] >> 32);
+            if (n > 0 && sortedKeys[n - 1] == key) n --;
+            sortedKeys[n] = key;
+            sortedValues[n] = values[offset + (int) order[i]];
+            n ++;
+        }
+
+        merge(sortedKeys, sortedValues, n);
+    }
+
+    /**
+     * Adds all mappings of the specified SparseDoubleArray to this one, replacing the
+     * previous mappings from keys that were already present. Since both are
+     * sorted by key, this takes linear time.
+     */
+    public void merge(SparseDoubleArray other) {
+        if (other == this) return;
+        merge(other.keys, other.values, other.size);
+    }
+
+    private void merge(int[] srcKeys, double[] srcValues, int srcSize) {
+        if (srcSize == 0) return;
+
+        int n = size + srcSize;
+        if (n > keys.length) {
+            int capacity = FastArray.sparseIntArraySize(n);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        // Merges from the back so that no existing mapping is overwritten before it is moved
+        int i = size - 1;
+        int j = srcSize - 1;
+        int w = n - 1;
+        while (j >= 0) {
+            if (i >= 0 && keys[i] > srcKeys[j]) {
+                keys[w] = keys[i];
+                values[w] = values[i];
+                i --;
+            } else {
+                if (i >= 0 && keys[i] == srcKeys[j]) i --;
+                keys[w] = srcKeys[j];
+                values[w] = srcValues[j];
+                j --;
+            }
+            w --;
+        }
+
+        // Closes the gap left by replaced keys
+        if (w > i) {
+            System.arraycopy(keys, w + 1, keys, i + 1, n - 1 - w);
+            System.arraycopy(values, w + 1, values, i + 1, n - 1 - w);
+        }
+        size = n - (w - i);
+    }
+
+    /**
+     * Removes all mappings whose keys lie between <code>fromKey</code>, inclusive,
+     * and <code>toKey</code>, exclusive.
+     */
+    public void removeRange(int fromKey, int toKey) {
+        if (fromKey > toKey) {
+            throw new IllegalArgumentException("fromKey(" + fromKey + ") > toKey(" + toKey + ")");
+        }
+
+        int from = FastArray.binarySearchUnchecked(keys, 0, size, fromKey);
+        if (from < 0) from = ~from;
+        int to = FastArray.binarySearchUnchecked(keys, from, size, toKey);
+        if (to < 0) to = ~to;
+
+        if (from < to) {
+            System.arraycopy(keys, to, keys, from, size - to);
+            System.arraycopy(values, to, values, from, size - to);
+            size -= to - from;
+        }
+    }
+
+    /**
+     * Returns the index for which {@link #keyAt} would return the smallest key
+     * between <code>fromKey</code>, inclusive, and <code>toKey</code>, exclusive,
+     * or a negative number if no such key is mapped. The mappings of the range then
+     * follow at ascending indices while <code>keyAt(index) &lt; toKey</code>.
+     *
+     * <p>The negative number is the bitwise complement of the index where
+     * the range would begin.</p>
+     */
+    public int indexOfKeyRange(int fromKey, int toKey) {
+        int i = FastArray.binarySearchUnchecked(keys, 0, size, fromKey);
+        if (i < 0) i = ~i;
+        if (i >= size || keys[i] >= toKey) return ~i;
+        return i;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,400 @@
+package unrefined.util;
+
+import unrefined.io.BinaryInputStream;
+import unrefined.io.BinaryOutputStream;
+import unrefined.io.Portable;
+import unrefined.media.graphics.Bitmap;
+import unrefined.util.concurrent.Producer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A two-tier cache that fronts a {@link DiskLruCache} with an in-memory
+ * {@link LruCache} of decoded values. Values are converted from and to the
+ * bytes stored on disk by a {@link Codec}.
+ *
+ * <p>A {@link #get} first looks up the memory cache. On a miss, the value is
+ * decoded from the disk cache and promoted to the memory cache, or, if the
+ * disk cache misses too, computed by {@link #create} and stored in both.
+ * Loading is single-flight: concurrent misses for the same key wait for one
+ * thread to load the value, so each value is decoded or created once.
+ *
+ * <p>Keys must match the regex <strong>[a-z0-9_-]{1,64}</strong>, as required
+ * by {@link DiskLruCache}. Values are stored at index 0 of the disk entries.
+ * This class is thread-safe.
+ */
+public class TieredCache<V> implements Closeable {
+
+    /**
+     * Converts the values of a {@link TieredCache} from and to bytes.
+     */
+    public interface Codec<V> {
+
+        V decode(InputStream in) throws IOException;
+        void encode(V value, OutputStream out) throws IOException;
+
+        /**
+         * Returns the size of the decoded value in the units of the memory
+         * cache's max size. The default implementation returns 1, so that the
+         * max size is the maximum number of values held in memory.
+         */
+        default int sizeOf(V value) {
+            return 1;
+        }
+
+    }
+
+    /**
+     * Returns a codec storing bitmaps in the specified image format. The memory
+     * cache size is measured in bytes of pixels.
+     *
+     * @see Bitmap#getWriterFormats()
+     */
+    public static Codec<Bitmap> bitmapCodec(String format, float quality, int type) {
+        Objects.requireNonNull(format);
+        Bitmap.Type.checkValid(type);
+        return new Codec<Bitmap>() {
+            @Override
+            public Bitmap decode(InputStream in) throws IOException {
+                return Bitmap.read(in, type);
+            }
+            @Override
+            public void encode(Bitmap value, OutputStream out) throws IOException {
+                Bitmap.writeBitmap(value, out, format, quality);
+            }
+            @Override
+            public int sizeOf(Bitmap value) {
+                int bytesPerPixel;
+                switch (value.getType()) {
+                    case Bitmap.Type.RGBA_8888: bytesPerPixel = 4; break;
+                    case Bitmap.Type.ALPHA_8: bytesPerPixel = 1; break;
+                    default: bytesPerPixel = 2; break;
+                }
+                return value.getWidth() * value.getHeight() * bytesPerPixel;
+            }
+        };
+    }
+
+    /**
+     * Returns a codec storing {@link Portable} objects. Each decoded value is a
+     * new instance from the factory that reads its state back with
+     * {@link Portable#readPortable}.
+     */
+    public static <T extends Portable> Codec<T> portableCodec(Producer<T> factory) {
+        Objects.requireNonNull(factory);
+        return new Codec<T>() {
+            @Override
+            public T decode(InputStream in) throws IOException {
+                T value = factory.get();
+                value.readPortable(new BinaryInputStream(in));
+                return value;
+            }
+            @Override
+            public void encode(T value, OutputStream out) throws IOException {
+                BinaryOutputStream stream = new BinaryOutputStream(out);
+                value.writePortable(stream);
+                stream.flush();
+            }
+        };
+    }
+
+    private final DiskLruCache disk;
+    private final Codec<V> codec;
+    private final LruCache<String, V> memory;
+    /**
+     * The load, put or remove in progress for each key. Operations on the same
+     * key run one at a time; concurrent misses share a single load.
+     */
+    private final ConcurrentHashMap<String, FutureTask<V>> operations = new ConcurrentHashMap<>();
+
+    private final AtomicInteger diskHitCount = new AtomicInteger();
+    private final AtomicInteger diskMissCount = new AtomicInteger();
+    private final AtomicInteger createCount = new AtomicInteger();
+
+    /**
+     * @param disk the disk cache, owned by this cache from now on
+     * @param memoryMaxSize the maximum size of the memory cache, in the units of
+     *     {@link Codec#sizeOf}
+     * @param codec the codec converting values from and to bytes
+     */
+    public TieredCache(DiskLruCache disk, int memoryMaxSize, Codec<V> codec) {
+        this.disk = Objects.requireNonNull(disk);
+        this.codec = Objects.requireNonNull(codec);
+        this.memory = new LruCache<String, V>(memoryMaxSize) {
+            @Override
+            protected int sizeOf(String key, V value) {
+                return TieredCache.this.codec.sizeOf(value);
+            }
+            @Override
+            protected void entryRemoved(boolean evicted, String key, V oldValue, V newValue) {
+                TieredCache.this.entryRemoved(evicted, key, oldValue);
+            }
+        };
+    }
+
+    /**
+     * Returns the value for {@code key} from memory, from disk, or created by
+     * {@link #create}, in that order, or null if none of them has a value.
+     */
+    public final V get(String key) throws IOException {
+        V value = memory.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        while (true) {
+            FutureTask<V> load = new Load(key);
+            FutureTask<V> pending = operations.putIfAbsent(key, load);
+            if (pending == null) {
+                try {
+                    load.run();
+                } finally {
+                    operations.remove(key, load);
+                }
+                return result(load);
+            }
+            if (pending instanceof TieredCache<?>.Load) {
+                return result(pending);
+            }
+            // A put or remove, whose outcome decides what to load
+            await(pending);
+            value = memory.getIfPresent(key);
+            if (value != null) {
+                return value;
+            }
+        }
+    }
+
+    private final class Load extends FutureTask<V> {
+        Load(String key) {
+            super(new Callable<V>() {
+                @Override
+                public V call() throws IOException {
+                    return load(key);
+                }
+            });
+        }
+    }
+
+    private V load(String key) throws IOException {
+        V value = memory.getIfPresent(key); // Loaded by another thread just before ours was registered
+        if (value != null) {
+            return value;
+        }
+
+        DiskLruCache.Snapshot snapshot = disk.get(key);
+        if (snapshot != null) {
+            try (InputStream in = new BufferedInputStream(snapshot.getInputStream(0))) {
+                value = codec.decode(in);
+            } finally {
+                snapshot.close();
+            }
+            if (value != null) {
+                diskHitCount.incrementAndGet();
+                memory.put(key, value);
+                return value;
+            }
+        }
+        diskMissCount.incrementAndGet();
+
+        value = create(key);
+        if (value != null) {
+            createCount.incrementAndGet();
+            writeToDisk(key, value);
+            memory.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Caches {@code value} for {@code key} in memory and on disk. Waits for a
+     * load of the same key in progress, so that the loaded value does not
+     * replace this one.
+     *
+     * @return the previous value in memory mapped by {@code key}.
+     */
+    public final V put(String key, V value) throws IOException {
+        Objects.requireNonNull(value);
+        return exclusive(key, new Callable<V>() {
+            @Override
+            public V call() throws IOException {
+                writeToDisk(key, value);
+                return memory.put(key, value);
+            }
+        });
+    }
+
+    private void writeToDisk(String key, V value) throws IOException {
+        DiskLruCache.Editor editor = disk.edit(key);
+        if (editor == null) {
+            return; // Another edit is in progress, the value stays in memory only.
+        }
+        try {
+            try (OutputStream out = new BufferedOutputStream(editor.newOutputStream(0))) {
+                codec.encode(value, out);
+            }
+            editor.commit();
+        } finally {
+            editor.abortUnlessCommitted();
+        }
+    }
+
+    /**
+     * Removes the entry for {@code key} from memory and from disk. Waits for a
+     * load of the same key in progress, so that the loaded value is removed too.
+     *
+     * @return the previous value in memory mapped by {@code key}.
+     */
+    public final V remove(String key) throws IOException {
+        return exclusive(key, new Callable<V>() {
+            @Override
+            public V call() throws IOException {
+                V previous = memory.remove(key);
+                disk.remove(key);
+                return previous;
+            }
+        });
+    }
+
+    /**
+     * Runs the operation once no other load, put or remove of the key is in
+     * progress, and makes the loads of the key started meanwhile wait for it.
+     */
+    private V exclusive(String key, Callable<V> operation) throws IOException {
+        FutureTask<V> task = new FutureTask<>(operation);
+        for (FutureTask<V> pending; (pending = operations.putIfAbsent(key, task)) != null; ) {
+            await(pending);
+        }
+        try {
+            task.run();
+        } finally {
+            operations.remove(key, task);
+        }
+        return result(task);
+    }
+
+    private static void await(FutureTask<?> task) throws InterruptedIOException {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ignored) {
+            // Reported to the thread that ran it.
+        }
+    }
+
+    private static <V> V result(FutureTask<V> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            else if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            else if (cause instanceof Error) throw (Error) cause;
+            else throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns true if {@code key} has a value in memory or on disk. Does not
+     * decode anything, move the entry in either LRU queue, or count a hit or
+     * a miss.
+     */
+    public final boolean contains(String key) {
+        return memory.containsKey(key) || disk.contains(key);
+    }
+
+    /**
+     * Called after a miss in both tiers to compute a value for the corresponding
+     * key. Returns the computed value or null if no value can be computed. The
+     * default implementation returns null.
+     *
+     * <p>The method is called without synchronization, but at most once at a
+     * time for the same key.
+     */
+    protected V create(String key) throws IOException {
+        return null;
+    }
+
+    /**
+     * Called for values that have been evicted or removed from memory. The
+     * value may still be on disk. The default implementation does nothing.
+     *
+     * @see LruCache#entryRemoved
+     */
+    protected void entryRemoved(boolean evicted, String key, V oldValue) {}
+
+    /**
+     * Clears the memory cache, calling {@link #entryRemoved} on each removed value.
+     */
+    public final void evictMemory() {
+        memory.evictAll();
+    }
+
+    /**
+     * Returns the memory cache.
+     */
+    public final LruCache<String, V> getMemoryCache() {
+        return memory;
+    }
+
+    /**
+     * Returns the disk cache.
+     */
+    public final DiskLruCache getDiskCache() {
+        return disk;
+    }
+
+    /**
+     * Returns the number of times a value was decoded from disk.
+     */
+    public final int diskHitCount() {
+        return diskHitCount.get();
+    }
+
+    /**
+     * Returns the number of times a value was found neither in memory nor on disk.
+     */
+    public final int diskMissCount() {
+        return diskMissCount.get();
+    }
+
+    /**
+     * Returns the number of times {@link #create} returned a value.
+     */
+    public final int createCount() {
+        return createCount.get();
+    }
+
+    /**
+     * Clears the memory cache and closes the disk cache.
+     */
+    @Override
+    public void close() throws IOException {
+        memory.evictAll();
+        disk.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TieredCache[memory=%s,diskHits=%d,diskMisses=%d]",
+                memory, diskHitCount.get(), diskMissCount.get());
+    }
+
+}
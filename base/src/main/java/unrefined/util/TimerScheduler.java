@@ -0,0 +1,272 @@
+package unrefined.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed hierarchical timing wheel that runs the timeouts of {@link ScheduledTimer}s on a single
+ * daemon thread. Time is divided into ticks; the wheel has four levels of buckets spanning 1, 256,
+ * 16384 and 1048576 ticks each, so with the default 1ms tick a timeout up to about 18 hours away is
+ * placed directly in its bucket, and later ones wait in the coarsest level until they come in range.
+ * Entries of a coarse bucket cascade down into finer levels as it passes.
+ *
+ * <p>{@link #schedule} and {@link Timeout#cancel} are O(1) and lock-free: they only append to a queue
+ * that the wheel thread drains on its next tick. The thread sleeps until the next occupied bucket,
+ * or indefinitely while no timeout is scheduled, rather than waking up every tick.</p>
+ *
+ * <p>Periodic timeouts are rescheduled relative to their previous deadline rather than to the time
+ * they actually ran, so the wheel thread being late does not accumulate into drift.</p>
+ */
+final class TimerScheduler implements Runnable {
+
+    /**
+     * Called on the wheel thread when a timeout expires. Must return quickly, slow work
+     * belongs to an executor.
+     */
+    interface Task {
+        void expire(Timeout timeout, long deadline);
+    }
+
+    static final class Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimerScheduler scheduler;
+        private final Task task;
+        private final long period;
+        private final boolean skipMissed;
+        private long deadline;
+        private long tick;
+        private volatile int state;
+        private Timeout previous, next;
+
+        private Timeout(TimerScheduler scheduler, Task task, long deadline, long period, boolean skipMissed) {
+            this.scheduler = scheduler;
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+            this.skipMissed = skipMissed;
+        }
+
+        /**
+         * Cancels the timeout. A timeout that is being expired by the wheel thread at the
+         * same time may still run once.
+         *
+         * @return false if the timeout was already cancelled or expired
+         */
+        boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) return false;
+            scheduler.cancelled.add(this);
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+    }
+
+    private static final int[] BUCKETS = new int[] { 256, 64, 64, 64 };
+    private static final int[] SHIFTS = new int[] { 0, 8, 14, 20 };
+
+    private final long tickNanos;
+    private final long origin;
+    private final Timeout[][] wheel;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final List<Timeout> expired = new ArrayList<>();
+    private final Thread thread;
+
+    // Owned by the wheel thread
+    private long currentTick;
+    private int size;
+
+    /**
+     * The time the wheel thread will wake up at, Long.MAX_VALUE if it waits for a timeout to be scheduled.
+     */
+    private volatile long wakeTime = Long.MAX_VALUE;
+
+    TimerScheduler(String name, long tickNanos) {
+        if (tickNanos <= 0) throw new IllegalArgumentException("tickNanos <= 0");
+        this.tickNanos = tickNanos;
+        origin = System.nanoTime();
+        wheel = new Timeout[BUCKETS.length][];
+        for (int i = 0; i < wheel.length; i ++) {
+            wheel[i] = new Timeout[BUCKETS[i]];
+            for (int j = 0; j < wheel[i].length; j ++) {
+                Timeout sentinel = new Timeout(this, null, 0, 0, false);
+                sentinel.previous = sentinel.next = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules the task to expire after the specified delay, then every period if it is positive.
+     *
+     * @param delay the delay in nanoseconds
+     * @param period the period in nanoseconds, 0 for a one-shot timeout
+     * @param skipMissed whether a periodic timeout that fell behind by more than a period skips the
+     *                   missed expirations instead of catching up with them one tick apart
+     */
+    Timeout schedule(Task task, long delay, long period, boolean skipMissed) {
+        if (delay < 0) throw new IllegalArgumentException("delay < 0");
+        if (period < 0) throw new IllegalArgumentException("period < 0");
+        long deadline = System.nanoTime() + delay;
+        Timeout timeout = new Timeout(this, task, deadline, period, skipMissed);
+        pending.add(timeout);
+        long wakeTime = this.wakeTime;
+        if (wakeTime == Long.MAX_VALUE || deadline - wakeTime < 0) LockSupport.unpark(thread);
+        return timeout;
+    }
+
+    private long toTick(long nanos) {
+        long elapsed = nanos - origin;
+        return elapsed <= 0 ? 0 : (elapsed + tickNanos - 1) / tickNanos;
+    }
+
+    private void link(Timeout timeout) {
+        timeout.tick = toTick(timeout.deadline);
+        Timeout sentinel = findBucket(Math.max(timeout.tick, currentTick));
+        timeout.next = sentinel;
+        timeout.previous = sentinel.previous;
+        sentinel.previous.next = timeout;
+        sentinel.previous = timeout;
+        size ++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.next != null) {
+            timeout.previous.next = timeout.next;
+            timeout.next.previous = timeout.previous;
+            timeout.previous = timeout.next = null;
+            size --;
+        }
+    }
+
+    private Timeout findBucket(long tick) {
+        long duration = tick - currentTick;
+        int last = BUCKETS.length - 1;
+        for (int i = 0; i < last; i ++) {
+            if (duration < 1L << SHIFTS[i + 1]) {
+                return wheel[i][(int) (tick >>> SHIFTS[i]) & (BUCKETS[i] - 1)];
+            }
+        }
+        return wheel[last][(int) (tick >>> SHIFTS[last]) & (BUCKETS[last] - 1)];
+    }
+
+    private void advance(long tick) {
+        long previousTick = currentTick;
+        if (tick <= previousTick) return;
+        currentTick = tick;
+
+        for (int i = 0; i < SHIFTS.length; i ++) {
+            long previousTicks = previousTick >>> SHIFTS[i];
+            long currentTicks = tick >>> SHIFTS[i];
+            if (currentTicks == previousTicks) break;
+            expire(i, previousTicks, currentTicks);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long currentTicks) {
+        Timeout[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        long count = Math.min(currentTicks - previousTicks + 1, buckets.length);
+        for (long ticks = previousTicks; ticks < previousTicks + count; ticks ++) {
+            Timeout sentinel = buckets[(int) ticks & mask];
+            Timeout timeout = sentinel.next;
+            sentinel.previous = sentinel.next = sentinel;
+            while (timeout != sentinel) {
+                Timeout next = timeout.next;
+                timeout.previous = timeout.next = null;
+                size --;
+                if (timeout.tick <= currentTick) expired.add(timeout);
+                else link(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Returns the tick to wake up at, or -1 if no timeout is scheduled. Only looks for occupied
+     * buckets until the next cascade of the finest level.
+     */
+    private long nextWakeTick() {
+        if (size == 0) return -1;
+        long boundary = ((currentTick >>> SHIFTS[1]) + 1) << SHIFTS[1];
+        Timeout[] buckets = wheel[0];
+        int mask = buckets.length - 1;
+        for (long tick = currentTick; tick < boundary; tick ++) {
+            Timeout sentinel = buckets[(int) tick & mask];
+            if (sentinel.next != sentinel) return Math.max(tick, currentTick + 1);
+        }
+        return boundary;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Timeout timeout;
+            while ((timeout = pending.poll()) != null) {
+                if (timeout.state == Timeout.ST_INIT) link(timeout);
+            }
+            while ((timeout = cancelled.poll()) != null) {
+                unlink(timeout);
+            }
+
+            long now = System.nanoTime();
+            advance(Math.max(0, (now - origin) / tickNanos));
+            for (int i = 0; i < expired.size(); i ++) {
+                timeout = expired.get(i);
+                if (timeout.state != Timeout.ST_INIT) continue;
+                long deadline = timeout.deadline;
+                if (timeout.period > 0) {
+                    long next = deadline + timeout.period;
+                    if (timeout.skipMissed && next - now <= 0) {
+                        next += ((now - next) / timeout.period + 1) * timeout.period;
+                    }
+                    timeout.deadline = next;
+                    link(timeout);
+                }
+                else if (!Timeout.STATE.compareAndSet(timeout, Timeout.ST_INIT, Timeout.ST_EXPIRED)) continue;
+                try {
+                    timeout.task.expire(timeout, deadline);
+                }
+                catch (Throwable e) {
+                    Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+                    if (handler != null) handler.uncaughtException(thread, e);
+                }
+            }
+            expired.clear();
+
+            long wakeTick = nextWakeTick();
+            if (wakeTick < 0) {
+                wakeTime = Long.MAX_VALUE;
+                if (pending.isEmpty()) LockSupport.park(this);
+            }
+            else {
+                long wakeTime = origin + wakeTick * tickNanos;
+                this.wakeTime = wakeTime;
+                long sleep = wakeTime - System.nanoTime();
+                if (sleep > 0 && pending.isEmpty()) LockSupport.parkNanos(this, sleep);
+            }
+        }
+    }
+
+}
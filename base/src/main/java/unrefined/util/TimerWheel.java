@@ -0,0 +1,117 @@
+package unrefined.util;
+
+import java.util.List;
+
+/**
+ * A hierarchical timer wheel that schedules the expiration of {@link LruCache} entries.
+ * Each level is a ring of buckets spanning a power of two nanoseconds (about 1.07s, 1.14m,
+ * 1.22h, 1.63d and 6.52d per bucket), so scheduling, rescheduling and canceling are O(1), and
+ * advancing the wheel only visits the buckets whose time has passed. Entries of a coarse bucket
+ * that are not due yet cascade down into finer levels as it passes.
+ *
+ * <p>Times are nanoseconds measured from an arbitrary origin and must not be negative.
+ * This class is not thread-safe.</p>
+ */
+final class TimerWheel<K> {
+
+    static final class Node<K> {
+        final K key;
+        long writeTime;
+        long time;
+        Node<K> previous, next;
+        Node(K key) {
+            this.key = key;
+        }
+    }
+
+    private static final int[] BUCKETS = new int[] { 64, 64, 32, 4, 1 };
+    private static final int[] SHIFTS = new int[] { 30, 36, 42, 47, 49 };
+
+    private final Node<K>[][] wheel;
+    private long nanos;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long nanos) {
+        this.nanos = nanos;
+        wheel = (Node<K>[][]) new Node<?>[BUCKETS.length][];
+        for (int i = 0; i < wheel.length; i ++) {
+            wheel[i] = (Node<K>[]) new Node<?>[BUCKETS[i]];
+            for (int j = 0; j < wheel[i].length; j ++) {
+                Node<K> sentinel = new Node<>(null);
+                sentinel.previous = sentinel.next = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * Schedules the node to expire at {@link Node#time}, moving it if it was already scheduled.
+     */
+    void schedule(Node<K> node) {
+        unlink(node);
+        Node<K> sentinel = findBucket(Math.max(node.time, nanos));
+        node.next = sentinel;
+        node.previous = sentinel.previous;
+        sentinel.previous.next = node;
+        sentinel.previous = node;
+    }
+
+    /**
+     * Removes the node from the wheel, if it was scheduled.
+     */
+    void unlink(Node<K> node) {
+        if (node.next != null) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = node.next = null;
+        }
+    }
+
+    private Node<K> findBucket(long time) {
+        long duration = time - nanos;
+        int last = BUCKETS.length - 1;
+        for (int i = 0; i < last; i ++) {
+            if (duration < 1L << SHIFTS[i + 1]) {
+                long ticks = time >>> SHIFTS[i];
+                return wheel[i][(int) ticks & (BUCKETS[i] - 1)];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    /**
+     * Advances the wheel to the specified time, unlinking the nodes that expired
+     * by then into the specified list and rescheduling the rest of the visited buckets.
+     */
+    void advance(long currentNanos, List<Node<K>> expired) {
+        long previousNanos = nanos;
+        if (currentNanos <= previousNanos) return;
+        nanos = currentNanos;
+
+        for (int i = 0; i < SHIFTS.length; i ++) {
+            long previousTicks = previousNanos >>> SHIFTS[i];
+            long currentTicks = currentNanos >>> SHIFTS[i];
+            if (currentTicks == previousTicks) break;
+            expire(i, previousTicks, currentTicks, expired);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long currentTicks, List<Node<K>> expired) {
+        Node<K>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        long count = Math.min(currentTicks - previousTicks + 1, buckets.length);
+        for (long ticks = previousTicks; ticks < previousTicks + count; ticks ++) {
+            Node<K> sentinel = buckets[(int) ticks & mask];
+            Node<K> node = sentinel.next;
+            sentinel.previous = sentinel.next = sentinel;
+            while (node != sentinel) {
+                Node<K> next = node.next;
+                node.previous = node.next = null;
+                if (node.time <= nanos) expired.add(node);
+                else schedule(node);
+                node = next;
+            }
+        }
+    }
+
+}
@@ -131,6 +131,8 @@ public abstract class Animation implements Resettable {
 	// Package access
 	boolean autoRemoveEnabled;
 	boolean autoStartEnabled;
+	boolean pooled; // true if obtained from a pool, never changes
+	boolean free; // true while held by its pool
 
 	// -------------------------------------------------------------------------
 	// Public API
@@ -192,6 +194,29 @@ public abstract class Animation implements Resettable {
 		autoRemoveEnabled = autoStartEnabled = true;
 	}
 
+	/**
+	 * Stops and resets the animation, and returns it to its pool if it was
+	 * created by a pooled factory such as {@link Tween#build()}. The object
+	 * must not be used anymore afterwards. Note that if you use a
+	 * {@link AnimationManager}, this method is automatically called once the
+	 * animation is finished, and a {@link Timeline} calls it on its children
+	 * when it is freed itself.
+	 */
+	public void free() {
+		if (!pooled) reset();
+		else if (!free) {
+			free = true;
+			recycle();
+		}
+	}
+
+	/**
+	 * Returns the object to its pool, which resets it.
+	 */
+	void recycle() {
+		reset();
+	}
+
 	@Override
 	public boolean isIdentity() {
 		return step == -2 && repeatCount == 0 && !iterationStep && !yoyo &&
@@ -1,8 +1,14 @@
 package unrefined.util.animation;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * An AnimationManager updates all your tweens and timelines at once.
@@ -12,6 +18,12 @@ import java.util.List;
  *
  * Just give it a bunch of tweens or timelines and call update() periodically,
  * you don't need to care for anything else! Relax and enjoy your animations.
+ * <p/>
+ *
+ * The manager indexes its animations by target when they are added, so that
+ * the target queries and cancellations only visit the animations of that
+ * target. Therefore, the target of a managed tween and the children of a
+ * managed timeline must not be changed, e.g. with {@link Tween#edit()}.
  *
  * @see Tween
  * @see Timeline
@@ -50,15 +62,31 @@ public class AnimationManager {
 	// -------------------------------------------------------------------------
 
 	private final ArrayList<Animation> objects = new ArrayList<>(20);
+	private final Set<Animation> members = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final Map<Object, Set<Animation>> targets = new IdentityHashMap<>(); // target -> objects containing it
 	private boolean isPaused = false;
 
+	/**
+	 * Managers with fewer animations than this are updated on the calling
+	 * thread, even in parallel mode.
+	 */
+	private static final int MIN_PARALLEL_SIZE = 256;
+	private static final Object NO_TARGET = new Object();
+
+	private boolean isParallel = false;
+	private int[][] partitions; // indices of objects, null when objects changed
+
 	/**
 	 * Adds an animation to the manager and starts or restarts it.
 	 *
 	 * @return The manager, for instruction chaining.
 	 */
 	public AnimationManager add(Animation object) {
-		if (!objects.contains(object)) objects.add(object);
+		if (members.add(object)) {
+			objects.add(object);
+			index(object, object);
+			partitions = null;
+		}
 		if (object.autoStartEnabled) object.start();
 		return this;
 	}
@@ -68,11 +96,7 @@ public class AnimationManager {
 	 * to the given target object.
 	 */
 	public boolean containsTarget(Object target) {
-		for (int i=0, n=objects.size(); i<n; i++) {
-			Animation obj = objects.get(i);
-			if (obj.containsTarget(target)) return true;
-		}
-		return false;
+		return targets.containsKey(target == null ? NO_TARGET : target);
 	}
 
 	/**
@@ -80,8 +104,9 @@ public class AnimationManager {
 	 * to the given target object and to the given tween type.
 	 */
 	public boolean containsTarget(Object target, int tweenType) {
-		for (int i=0, n=objects.size(); i<n; i++) {
-			Animation obj = objects.get(i);
+		Set<Animation> objs = targets.get(target == null ? NO_TARGET : target);
+		if (objs == null) return false;
+		for (Animation obj : objs) {
 			if (obj.containsTarget(target, tweenType)) return true;
 		}
 		return false;
@@ -102,8 +127,9 @@ public class AnimationManager {
 	 * timelines containing a tween associated to the given target.
 	 */
 	public void cancelTarget(Object target) {
-		for (int i=0, n=objects.size(); i<n; i++) {
-			Animation obj = objects.get(i);
+		Set<Animation> objs = targets.get(target == null ? NO_TARGET : target);
+		if (objs == null) return;
+		for (Animation obj : objs) {
 			obj.cancelTarget(target);
 		}
 	}
@@ -114,12 +140,22 @@ public class AnimationManager {
 	 * target and tween type.
 	 */
 	public void cancelTarget(Object target, int tweenType) {
-		for (int i=0, n=objects.size(); i<n; i++) {
-			Animation obj = objects.get(i);
+		Set<Animation> objs = targets.get(target == null ? NO_TARGET : target);
+		if (objs == null) return;
+		for (Animation obj : objs) {
 			obj.cancelTarget(target, tweenType);
 		}
 	}
 
+	/**
+	 * Cancels every tweens associated to any of the given targets. Will also
+	 * cancel every timelines containing a tween associated to any of the given
+	 * targets.
+	 */
+	public void cancelTargets(Collection<?> targets) {
+		for (Object target : targets) cancelTarget(target);
+	}
+
 	/**
 	 * Increases the minimum capacity of the manager. Defaults to 20.
 	 */
@@ -127,6 +163,35 @@ public class AnimationManager {
 		objects.ensureCapacity(minCapacity);
 	}
 
+	/**
+	 * Enables or disables the parallel update mode. This mode is disabled by
+	 * default. When it is enabled, {@link #update(float)} splits the managed
+	 * animations into partitions that share no target, and updates the
+	 * partitions on the common ForkJoinPool. The animations of a partition are
+	 * updated in the same order as in sequential mode, so the relative order
+	 * of the animations of a target is kept, while there is no order between
+	 * different targets anymore. Tweens without target, such as calls and
+	 * marks, all go to the same partition.
+	 * <p/>
+	 *
+	 * The animators and the state change slots are then invoked from worker
+	 * threads: they must only touch their own target, and slots that need a
+	 * specific thread must be connected with a dispatcher.
+	 * <p/>
+	 *
+	 * Partitions are computed when animations are added or removed.
+	 */
+	public void setParallel(boolean parallel) {
+		isParallel = parallel;
+	}
+
+	/**
+	 * Returns true if the parallel update mode is enabled.
+	 */
+	public boolean isParallel() {
+		return isParallel;
+	}
+
 	/**
 	 * Pauses the manager. Further update calls won't have any effect.
 	 */
@@ -144,7 +209,7 @@ public class AnimationManager {
 	/**
 	 * Updates every tweens with a delta time ang handles the tween life-cycles
 	 * automatically. If a tween is finished, it will be removed from the
-	 * manager. The delta time represents the elapsed time between now and the
+	 * manager and freed, see {@link Animation#free()}. The delta time represents the elapsed time between now and the
 	 * last update call. Each animation manages its local time, and adds
 	 * this delta to its local time to update itself.
 	 * <p/>
@@ -154,16 +219,27 @@ public class AnimationManager {
 	 * backward, or by 0.5 to play it twice slower than its normal speed.
 	 */
 	public void update(float delta) {
-		for (int i=objects.size()-1; i>=0; i--) {
+		int size = objects.size(), kept = 0;
+		for (int i=0; i<size; i++) {
 			Animation obj = objects.get(i);
 			if (obj.isFinished() && obj.autoRemoveEnabled) {
-				objects.remove(i);
-				obj.reset();
+				members.remove(obj);
+				unindex(obj, obj);
+				obj.free();
+			} else {
+				if (kept != i) objects.set(kept, obj);
+				kept++;
 			}
 		}
+		if (kept != size) {
+			objects.subList(kept, size).clear();
+			partitions = null;
+		}
 
 		if (!isPaused) {
-			if (delta >= 0) {
+			if (isParallel && objects.size() >= MIN_PARALLEL_SIZE && ForkJoinPool.getCommonPoolParallelism() > 1) {
+				updateParallel(delta);
+			} else if (delta >= 0) {
 				for (int i=0, n=objects.size(); i<n; i++) objects.get(i).update(delta);
 			} else {
 				for (int i=objects.size()-1; i>=0; i--) objects.get(i).update(delta);
@@ -215,6 +291,129 @@ public class AnimationManager {
 	// Helpers
 	// -------------------------------------------------------------------------
 
+	private void index(Animation obj, Animation root) {
+		if (obj instanceof Tween) {
+			Object target = ((Tween)obj).getTarget();
+			if (target == null) target = NO_TARGET;
+			Set<Animation> objs = targets.get(target);
+			if (objs == null) {
+				objs = Collections.newSetFromMap(new IdentityHashMap<>(4));
+				targets.put(target, objs);
+			}
+			objs.add(root);
+		} else {
+			List<Animation> children = ((Timeline)obj).getChildren();
+			for (int i=0, n=children.size(); i<n; i++) index(children.get(i), root);
+		}
+	}
+
+	private void unindex(Animation obj, Animation root) {
+		if (obj instanceof Tween) {
+			Object target = ((Tween)obj).getTarget();
+			if (target == null) target = NO_TARGET;
+			Set<Animation> objs = targets.get(target);
+			if (objs != null && objs.remove(root) && objs.isEmpty()) targets.remove(target);
+		} else {
+			List<Animation> children = ((Timeline)obj).getChildren();
+			for (int i=0, n=children.size(); i<n; i++) unindex(children.get(i), root);
+		}
+	}
+
+	private void updateParallel(final float delta) {
+		if (partitions == null) partitions = partition(objects, ForkJoinPool.getCommonPoolParallelism() << 2);
+		final RecursiveAction[] tasks = new RecursiveAction[partitions.length];
+		for (int i=0; i<tasks.length; i++) {
+			final int[] indices = partitions[i];
+			tasks[i] = new RecursiveAction() {
+				@Override
+				protected void compute() {
+					if (delta >= 0) {
+						for (int j=0; j<indices.length; j++) objects.get(indices[j]).update(delta);
+					} else {
+						for (int j=indices.length-1; j>=0; j--) objects.get(indices[j]).update(delta);
+					}
+				}
+			};
+		}
+		ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Groups the objects sharing a target with a union-find, then spreads the
+	 * groups over at most maxPartitions partitions of balanced sizes. Each
+	 * partition holds ascending object indices.
+	 */
+	private static int[][] partition(List<Animation> objs, int maxPartitions) {
+		int n = objs.size();
+		int[] parents = new int[n];
+		Map<Object, Integer> owners = new IdentityHashMap<>();
+		for (int i=0; i<n; i++) {
+			parents[i] = i;
+			link(objs.get(i), i, owners, parents);
+		}
+
+		int[] groupSizes = new int[n];
+		for (int i=0; i<n; i++) groupSizes[find(parents, i)]++;
+
+		int count = Math.min(maxPartitions, n);
+		int[] loads = new int[count];
+		int[] partitionOf = new int[n];
+		for (int i=0; i<n; i++) {
+			if (groupSizes[i] == 0) continue;
+			int lightest = 0;
+			for (int j=1; j<count; j++) if (loads[j] < loads[lightest]) lightest = j;
+			loads[lightest] += groupSizes[i];
+			partitionOf[i] = lightest;
+		}
+
+		int[][] partitions = new int[count][];
+		for (int j=0; j<count; j++) partitions[j] = new int[loads[j]];
+		int[] sizes = new int[count];
+		for (int i=0; i<n; i++) {
+			int j = partitionOf[find(parents, i)];
+			partitions[j][sizes[j]++] = i;
+		}
+
+		int empty = 0;
+		for (int j=0; j<count; j++) if (loads[j] == 0) empty++;
+		if (empty > 0) {
+			int[][] compact = new int[count-empty][];
+			for (int j=0, k=0; j<count; j++) if (loads[j] > 0) compact[k++] = partitions[j];
+			partitions = compact;
+		}
+		return partitions;
+	}
+
+	private static void link(Animation obj, int index, Map<Object, Integer> owners, int[] parents) {
+		if (obj instanceof Tween) {
+			Object target = ((Tween)obj).getTarget();
+			Integer owner = owners.put(target == null ? NO_TARGET : target, index);
+			if (owner != null) union(parents, owner, index);
+		} else {
+			List<Animation> children = ((Timeline)obj).getChildren();
+			for (int i=0, n=children.size(); i<n; i++) link(children.get(i), index, owners, parents);
+		}
+	}
+
+	private static int find(int[] parents, int i) {
+		while (parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		return i;
+	}
+
+	private static void union(int[] parents, int a, int b) {
+		a = find(parents, a);
+		b = find(parents, b);
+		if (a != b) parents[Math.max(a, b)] = Math.min(a, b);
+	}
+
 	private static int getTweensCount(List<Animation> objs) {
 		int count = 0;
 		for (int i=0, n=objs.size(); i<n; i++) {
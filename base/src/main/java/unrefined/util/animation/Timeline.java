@@ -1,6 +1,8 @@
 package unrefined.util.animation;
 
+import unrefined.context.Environment;
 import unrefined.util.NotInstantiableError;
+import unrefined.util.Pool;
 import unrefined.util.event.EventSlot;
 import unrefined.util.signal.SignalSlot;
 
@@ -82,6 +84,47 @@ public final class Timeline extends Animation {
 		}
 	}
 
+	// -------------------------------------------------------------------------
+	// Static -- pool
+	// -------------------------------------------------------------------------
+
+	private static volatile Pool<Timeline> pool =
+			newPool(Environment.properties().parseIntProperty("unrefined.util.animation.timeline.pool", 128));
+
+	private static Pool<Timeline> newPool(int capacity) {
+		return Pool.ofThreadLocal(() -> {
+			Timeline timeline = new Timeline();
+			timeline.pooled = true;
+			return timeline;
+		}, capacity);
+	}
+
+	private static Timeline obtain() {
+		Timeline timeline = pool.obtain();
+		timeline.free = false;
+		return timeline;
+	}
+
+	/**
+	 * Gets the pool of timelines, to read its size and hit/miss/drop counts.
+	 * Every timeline, including the nested ones, is obtained from this pool,
+	 * and freed back to it with its children once finished if it is managed,
+	 * see {@link #free()}. Timelines are pooled per thread, like tweens.
+	 */
+	public static Pool<Timeline> getPool() {
+		return pool;
+	}
+
+	/**
+	 * Replaces the pool of timelines with one of the given capacity per
+	 * thread. The pooled timelines and the pool counts are dropped. The
+	 * initial capacity is read from the "unrefined.util.animation.timeline.pool"
+	 * property and defaults to 128.
+	 */
+	public static void setPoolCapacity(int capacity) {
+		pool = newPool(capacity);
+	}
+
 	// -------------------------------------------------------------------------
 	// Static -- factories
 	// -------------------------------------------------------------------------
@@ -229,7 +272,7 @@ public final class Timeline extends Animation {
 	 * Creates a new timeline editor with the specified mode.
 	 */
 	public static Editor build(int mode) {
-		return new Editor(new Timeline(), mode);
+		return new Editor(obtain(), mode);
 	}
 
 	/**
@@ -238,7 +281,7 @@ public final class Timeline extends Animation {
 	 * be delayed so that they are triggered one after the other.
 	 */
 	public static Editor sequence() {
-		return new Editor(new Timeline(), SEQUENCE);
+		return new Editor(obtain(), SEQUENCE);
 	}
 
 	/**
@@ -247,7 +290,7 @@ public final class Timeline extends Animation {
 	 * triggered all at once.
 	 */
 	public static Editor parallel() {
-		return new Editor(new Timeline(), PARALLEL);
+		return new Editor(obtain(), PARALLEL);
 	}
 
 	// -------------------------------------------------------------------------
@@ -344,7 +387,7 @@ public final class Timeline extends Animation {
 	 */
 	public void begin(int mode) {
 		if (built) throw new IllegalStateException("You can't push anything to a timeline once it is started");
-		Timeline timeline = new Timeline();
+		Timeline timeline = obtain();
 		timeline.parent = current;
 		timeline.mode = Mode.checkValid(mode);
 		current.children.add(timeline);
@@ -357,7 +400,7 @@ public final class Timeline extends Animation {
 	 */
 	public void beginSequence() {
 		if (built) throw new IllegalStateException("You can't push anything to a timeline once it is started");
-		Timeline timeline = new Timeline();
+		Timeline timeline = obtain();
 		timeline.parent = current;
 		timeline.mode = SEQUENCE;
 		current.children.add(timeline);
@@ -370,7 +413,7 @@ public final class Timeline extends Animation {
 	 */
 	public void beginParallel() {
 		if (built) throw new IllegalStateException("You can't push anything to a timeline once it is started");
-		Timeline timeline = new Timeline();
+		Timeline timeline = obtain();
 		timeline.parent = current;
 		timeline.mode = PARALLEL;
 		current.children.add(timeline);
@@ -413,7 +456,7 @@ public final class Timeline extends Animation {
 	public void reset() {
 		for (int i=children.size()-1; i>=0; i--) {
 			Animation obj = children.remove(i);
-			obj.reset();
+			obj.free();
 		}
 
 		super.reset();
@@ -424,6 +467,11 @@ public final class Timeline extends Animation {
 		built = false;
 	}
 
+	@Override
+	void recycle() {
+		pool.recycle(this);
+	}
+
 	@Override
 	public boolean isIdentity() {
 		return super.isIdentity() && children.isEmpty() && current == null && parent == null && !built;
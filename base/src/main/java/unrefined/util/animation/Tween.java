@@ -1,5 +1,7 @@
 package unrefined.util.animation;
 
+import unrefined.context.Environment;
+import unrefined.util.Pool;
 import unrefined.util.animation.ease.Equation;
 import unrefined.util.animation.ease.Quad;
 import unrefined.util.animation.interpolate.CatmullRom;
@@ -113,6 +115,41 @@ public final class Tween extends Animation {
 		return registeredAnimators.get(someClass);
 	}
 
+	// -------------------------------------------------------------------------
+	// Static -- pool
+	// -------------------------------------------------------------------------
+
+	private static volatile Pool<Tween> pool =
+			newPool(Environment.properties().parseIntProperty("unrefined.util.animation.tween.pool", 1024));
+
+	private static Pool<Tween> newPool(int capacity) {
+		return Pool.ofThreadLocal(() -> {
+			Tween tween = new Tween();
+			tween.pooled = true;
+			return tween;
+		}, capacity);
+	}
+
+	/**
+	 * Gets the pool of the tweens created by {@link #build()}, to read its
+	 * size and hit/miss/drop counts. Tweens are pooled per thread: a tween
+	 * freed by the {@link AnimationManager} is reused by the next
+	 * {@link #build()} of the thread that updated the manager.
+	 */
+	public static Pool<Tween> getPool() {
+		return pool;
+	}
+
+	/**
+	 * Replaces the pool of tweens with one of the given capacity per thread.
+	 * The pooled tweens and the pool counts are dropped. The initial capacity
+	 * is read from the "unrefined.util.animation.tween.pool" property and
+	 * defaults to 1024.
+	 */
+	public static void setPoolCapacity(int capacity) {
+		pool = newPool(capacity);
+	}
+
 	// -------------------------------------------------------------------------
 	// Static -- factories
 	// -------------------------------------------------------------------------
@@ -463,14 +500,19 @@ public final class Tween extends Animation {
 	}
 
 	/**
-	 * Creates a new tween editor.
+	 * Creates a new tween editor, of a tween obtained from the pool. The
+	 * tween is freed back to the pool once finished if it is managed, see
+	 * {@link #free()}.
 	 */
 	public static Editor build() {
-		return new Editor(new Tween());
+		Tween tween = pool.obtain();
+		tween.free = false;
+		return new Editor(tween);
 	}
 
 	/**
-	 * Creates a new tween editor with specified limits.
+	 * Creates a new tween editor with specified limits. Such tweens are not
+	 * pooled.
 	 */
 	public static Editor build(int combinedAttrsLimit, int waypointsLimit) {
 		return new Editor(new Tween(combinedAttrsLimit, waypointsLimit));
@@ -793,6 +835,11 @@ public final class Tween extends Animation {
 		}
 	}
 
+	@Override
+	void recycle() {
+		pool.recycle(this);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	protected void unstarted() {
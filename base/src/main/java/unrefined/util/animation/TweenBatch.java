@@ -0,0 +1,349 @@
+package unrefined.util.animation;
+
+import unrefined.nio.Pointer;
+import unrefined.util.animation.ease.Equation;
+import unrefined.util.animation.ease.Linear;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A data-oriented tween engine, for animating a large number of values such
+ * as the attributes of particles. Where a Tween reads and writes its target
+ * through an {@link Animator} on every update, a TweenBatch holds scalar
+ * <i>tracks</i> in parallel primitive arrays (start, target, delay, duration,
+ * elapsed time and easing equation id), updates them in a tight loop, and
+ * leaves the results in a float array that can be handed to a renderer as a
+ * whole, see {@link #values()}, {@link #getValues(float[], int)} and
+ * {@link #getValues(Pointer, long)}.
+ * <p/>
+ *
+ * Tracks are indexed from 0 in the order they are added, and keep their
+ * index for the life of the batch, so that a vertex attribute or a particle
+ * field can be bound to a fixed range of tracks. A 2D position is simply two
+ * consecutive tracks.
+ * <p/>
+ *
+ * Large batches are updated in parallel slices on the common
+ * {@link ForkJoinPool}. Equations are called from the worker threads in
+ * that case, so they must be stateless, as the provided ones are.
+ * <p/>
+ *
+ * <pre> {@code
+ * TweenBatch batch = new TweenBatch(particles * 2);
+ * for (int i = 0; i < particles; i ++) {
+ *     batch.add(x[i], targetX[i], 1.0f, 0, Quad.OUT);
+ *     batch.add(y[i], targetY[i], 1.0f, 0, Quad.OUT);
+ * }
+ * ...
+ * batch.update(delta);
+ * batch.getValues(vertexPointer, 0);
+ * }</pre>
+ *
+ * A TweenBatch is not thread-safe.
+ *
+ * @see Tween
+ * @author Karstian Lee
+ */
+public class TweenBatch {
+
+	/**
+	 * Batches shorter than this are updated on the calling thread.
+	 */
+	private static final int MIN_GRAIN = 1 << 13;
+
+	// Equation table, id 0 is the linear equation, computed inline
+	private final Map<Equation, Integer> equationIds = new IdentityHashMap<>();
+	private Equation[] equations = new Equation[] { Linear.INOUT };
+
+	// Tracks
+	private float[] starts;
+	private float[] targets;
+	private float[] delays;
+	private float[] durations;
+	private float[] elapsed;
+	private int[] equationOf;
+	private float[] values;
+	private int size;
+
+	private boolean parallel = true;
+
+	/**
+	 * Constructs an empty batch with the given initial capacity.
+	 */
+	public TweenBatch(int initialCapacity) {
+		if (initialCapacity < 0) throw new IllegalArgumentException("initialCapacity < 0");
+		starts = new float[initialCapacity];
+		targets = new float[initialCapacity];
+		delays = new float[initialCapacity];
+		durations = new float[initialCapacity];
+		elapsed = new float[initialCapacity];
+		equationOf = new int[initialCapacity];
+		values = new float[initialCapacity];
+		equationIds.put(Linear.INOUT, 0);
+	}
+
+	/**
+	 * Constructs an empty batch. Equivalent as {@code TweenBatch(64)}.
+	 */
+	public TweenBatch() {
+		this(64);
+	}
+
+	// -------------------------------------------------------------------------
+	// Tracks
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Adds a track running from the start value to the target value.
+	 *
+	 * @param start The start value.
+	 * @param target The target value.
+	 * @param duration The duration of the interpolation. A track with a zero
+	 * duration jumps to its target once the delay elapsed.
+	 * @param delay The delay before the interpolation starts.
+	 * @param equation The easing equation, null for a linear interpolation.
+	 * @return The index of the track.
+	 */
+	public int add(float start, float target, float duration, float delay, Equation equation) {
+		if (size == values.length) ensureCapacity(Math.max(16, size << 1));
+		int track = size ++;
+		set(track, start, target, duration, delay, equation);
+		return track;
+	}
+
+	/**
+	 * Restarts a track with new values.
+	 *
+	 * @param track The index of the track.
+	 * @param start The start value.
+	 * @param target The target value.
+	 * @param duration The duration of the interpolation.
+	 * @param delay The delay before the interpolation starts.
+	 * @param equation The easing equation, null for a linear interpolation.
+	 */
+	public void set(int track, float start, float target, float duration, float delay, Equation equation) {
+		checkIndex(track);
+		if (duration < 0) throw new IllegalArgumentException("Duration can't be negative");
+		if (delay < 0) throw new IllegalArgumentException("Delay can't be negative");
+		starts[track] = start;
+		targets[track] = target;
+		durations[track] = duration;
+		delays[track] = delay;
+		elapsed[track] = 0;
+		equationOf[track] = equationId(equation);
+		values[track] = evaluate(track);
+	}
+
+	/**
+	 * Restarts a track from its current value to a new target value, keeping
+	 * its equation.
+	 *
+	 * @param track The index of the track.
+	 * @param target The new target value.
+	 * @param duration The duration of the interpolation.
+	 */
+	public void retarget(int track, float target, float duration) {
+		checkIndex(track);
+		set(track, values[track], target, duration, 0, equations[equationOf[track]]);
+	}
+
+	/**
+	 * Moves a track to its end, as if it was finished.
+	 */
+	public void finish(int track) {
+		checkIndex(track);
+		elapsed[track] = delays[track] + durations[track];
+		values[track] = targets[track];
+	}
+
+	/**
+	 * Gets the current value of a track.
+	 */
+	public float getValue(int track) {
+		checkIndex(track);
+		return values[track];
+	}
+
+	/**
+	 * Returns true if the track reached its end.
+	 */
+	public boolean isFinished(int track) {
+		checkIndex(track);
+		return elapsed[track] >= delays[track] + durations[track];
+	}
+
+	/**
+	 * Gets the number of tracks.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every track. The equation table is kept.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Increases the capacity of the batch, if necessary, so that it can hold
+	 * at least the given number of tracks without growing.
+	 */
+	public void ensureCapacity(int minCapacity) {
+		if (minCapacity <= values.length) return;
+		starts = Arrays.copyOf(starts, minCapacity);
+		targets = Arrays.copyOf(targets, minCapacity);
+		delays = Arrays.copyOf(delays, minCapacity);
+		durations = Arrays.copyOf(durations, minCapacity);
+		elapsed = Arrays.copyOf(elapsed, minCapacity);
+		equationOf = Arrays.copyOf(equationOf, minCapacity);
+		values = Arrays.copyOf(values, minCapacity);
+	}
+
+	/**
+	 * Sets whether large batches are updated in parallel. Defaults to true.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	private void checkIndex(int track) {
+		if (track < 0 || track >= size) throw new IndexOutOfBoundsException("Track index out of range: " + track);
+	}
+
+	private int equationId(Equation equation) {
+		if (equation == null) return 0;
+		Integer id = equationIds.get(equation);
+		if (id == null) {
+			id = equations.length;
+			equations = Arrays.copyOf(equations, id + 1);
+			equations[id] = equation;
+			equationIds.put(equation, id);
+		}
+		return id;
+	}
+
+	private float evaluate(int i) {
+		float t = elapsed[i] - delays[i], duration = durations[i];
+		if (t >= duration) t = 1;
+		else if (t <= 0) t = 0;
+		else t /= duration;
+		int id = equationOf[i];
+		if (id != 0) t = equations[id].interpolate(t);
+		return starts[i] + (targets[i] - starts[i]) * t;
+	}
+
+	// -------------------------------------------------------------------------
+	// Update
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Updates every track with a delta time. A negative delta plays the tracks
+	 * backward, down to their start values.
+	 *
+	 * @return The number of tracks that have not reached their end yet, or
+	 * their beginning if the delta is negative.
+	 */
+	public int update(float delta) {
+		int size = this.size;
+		if (!parallel || size <= MIN_GRAIN || ForkJoinPool.getCommonPoolParallelism() <= 1) {
+			return update(delta, 0, size);
+		}
+		return ForkJoinPool.commonPool().invoke(new Updater(delta, 0, size));
+	}
+
+	private final class Updater extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = -1824361706853924551L;
+		private final float delta;
+		private final int from, to;
+		Updater(float delta, int from, int to) {
+			this.delta = delta;
+			this.from = from;
+			this.to = to;
+		}
+		@Override
+		protected Integer compute() {
+			if (to - from <= MIN_GRAIN) return update(delta, from, to);
+			int mid = (from + to) >>> 1;
+			Updater right = new Updater(delta, mid, to);
+			right.fork();
+			int running = new Updater(delta, from, mid).compute();
+			return running + right.join();
+		}
+	}
+
+	private int update(float delta, int from, int to) {
+		float[] starts = this.starts, targets = this.targets, delays = this.delays,
+				durations = this.durations, elapsed = this.elapsed, values = this.values;
+		int[] equationOf = this.equationOf;
+		Equation[] equations = this.equations;
+		boolean forward = delta >= 0;
+		int running = 0;
+		for (int i = from; i < to; i ++) {
+			float delay = delays[i], duration = durations[i];
+			float end = delay + duration;
+			float last = elapsed[i];
+			float time = last + delta;
+			if (time < 0) time = 0;
+			else if (time > end) time = end;
+			if (forward ? time < end : time > 0) running ++;
+			if (time == last && duration > 0) continue;
+			elapsed[i] = time;
+
+			// Like Tween, a zero-duration track jumps to its target going
+			// forward, and back to its start going backward
+			float t = time - delay;
+			if (t >= duration) t = forward || t > 0 ? 1 : 0;
+			else if (t <= 0) t = 0;
+			else t /= duration;
+			int id = equationOf[i];
+			if (id != 0) t = equations[id].interpolate(t);
+			float start = starts[i];
+			values[i] = start + (targets[i] - start) * t;
+		}
+		return running;
+	}
+
+	// -------------------------------------------------------------------------
+	// Output
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Gets the backing array of the track values, valid until a track is
+	 * added beyond the capacity. Only the first {@link #size()} elements are
+	 * meaningful.
+	 */
+	public float[] values() {
+		return values;
+	}
+
+	/**
+	 * Copies the track values to the given array.
+	 *
+	 * @param dst The destination array.
+	 * @param offset The index of the value of track 0 in the destination.
+	 */
+	public void getValues(float[] dst, int offset) {
+		System.arraycopy(values, 0, dst, offset, size);
+	}
+
+	/**
+	 * Copies the track values to the given memory, as consecutive floats.
+	 *
+	 * @param dst The destination pointer.
+	 * @param offset The byte offset of the value of track 0 in the destination.
+	 */
+	public void getValues(Pointer dst, long offset) {
+		dst.putFloatArray(offset, values, 0, size);
+	}
+
+}
@@ -0,0 +1,259 @@
+package unrefined.util.animation.ease;
+
+import unrefined.util.NotInstantiableError;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An easing equation backed by a lookup table. The wrapped equation is
+ * sampled at evenly spaced times when the table is built, then each call
+ * to {@link #interpolate(float)} only reads the nearest samples, with
+ * linear or cubic (Catmull-Rom) interpolation between them. This trades a
+ * small error for not calling {@link Math#sin}, {@link Math#pow} or
+ * {@link Math#sqrt} on every step, which matters when animating a large
+ * number of objects.
+ * <p/>
+ *
+ * {@link #of(Equation, float, int)} picks the smallest table whose error
+ * stays within a bound, and {@link #of(Equation)} returns prebuilt tables
+ * of the equations of this package:
+ * <p/>
+ *
+ * <pre> {@code
+ * Tween.build().to(myObject, POSITION, 1.0f)
+ *      .target(50, 70)
+ *      .equation(TableEquation.of(Elastic.OUT))
+ *      .start(myManager);
+ * }</pre>
+ *
+ * Tables are immutable, and can be shared between threads.
+ *
+ * @author Karstian Lee
+ */
+public final class TableEquation extends Equation {
+
+	public static final class Mode {
+		private Mode() {
+			throw new NotInstantiableError(Mode.class);
+		}
+		/**
+		 * Samples are joined by straight lines.
+		 */
+		public static final int LINEAR = 0;
+		/**
+		 * Samples are joined by a Catmull-Rom spline. Needs fewer samples
+		 * than linear mode for smooth equations.
+		 */
+		public static final int CUBIC = 1;
+		public static int checkValid(int mode) {
+			if (mode < LINEAR || mode > CUBIC) throw new IllegalArgumentException("Illegal table mode: " + mode);
+			else return mode;
+		}
+		public static boolean isValid(int mode) {
+			return mode >= LINEAR && mode <= CUBIC;
+		}
+		public static String toString(int mode) {
+			switch (mode) {
+				case LINEAR: return "LINEAR";
+				case CUBIC: return "CUBIC";
+				default: throw new IllegalArgumentException("Illegal table mode: " + mode);
+			}
+		}
+	}
+
+	/**
+	 * The error bound of the prebuilt tables, a tenth of a pixel over a
+	 * thousand pixels.
+	 */
+	public static final float DEFAULT_MAX_ERROR = 1e-4f;
+
+	private static final int MIN_SAMPLES = 16;
+	private static final int MAX_SAMPLES = 4096;
+
+	private static final class Prebuilt {
+		private static final Map<Equation, TableEquation> TABLES = new IdentityHashMap<>();
+		static {
+			Equation[] equations = new Equation[] {
+					Linear.INOUT,
+					Quad.IN, Quad.OUT, Quad.INOUT,
+					Cubic.IN, Cubic.OUT, Cubic.INOUT,
+					Quart.IN, Quart.OUT, Quart.INOUT,
+					Quint.IN, Quint.OUT, Quint.INOUT,
+					Circ.IN, Circ.OUT, Circ.INOUT,
+					Sine.IN, Sine.OUT, Sine.INOUT,
+					Expo.IN, Expo.OUT, Expo.INOUT,
+					Back.IN, Back.OUT, Back.INOUT,
+					Bounce.IN, Bounce.OUT, Bounce.INOUT,
+					Elastic.IN, Elastic.OUT, Elastic.INOUT
+			};
+			for (Equation equation : equations) {
+				TABLES.put(equation, of(equation, DEFAULT_MAX_ERROR, Mode.CUBIC));
+			}
+		}
+	}
+
+	/**
+	 * Returns the prebuilt table of an equation of this package, within
+	 * {@link #DEFAULT_MAX_ERROR}. For other equations, builds a new table
+	 * within the same bound. A table is returned as is.
+	 */
+	public static TableEquation of(Equation equation) {
+		if (equation instanceof TableEquation) return (TableEquation) equation;
+		TableEquation table = Prebuilt.TABLES.get(equation);
+		return table != null ? table : of(equation, DEFAULT_MAX_ERROR, Mode.CUBIC);
+	}
+
+	/**
+	 * Builds the table with the fewest samples whose error stays within the
+	 * given bound, doubling the sample count from 16 up to 4096. The error
+	 * is measured between the samples, see {@link #getMaxError()}. If 4096
+	 * samples are not enough, which happens around the infinite slopes of
+	 * Circ and the kinks of Bounce, the intervals between samples that exceed
+	 * the bound call the equation instead of reading the table.
+	 *
+	 * @param equation The sampled equation.
+	 * @param maxError The maximum absolute error.
+	 * @param mode The interpolation between samples, see {@link Mode}.
+	 */
+	public static TableEquation of(Equation equation, float maxError, int mode) {
+		if (!(maxError > 0)) throw new IllegalArgumentException("maxError <= 0");
+		TableEquation table;
+		int samples = MIN_SAMPLES;
+		do {
+			table = new TableEquation(equation, samples, mode, samples == MAX_SAMPLES ? maxError : Float.POSITIVE_INFINITY);
+			samples <<= 1;
+		}
+		while (table.maxError > maxError && samples <= MAX_SAMPLES);
+		return table;
+	}
+
+	private final Equation equation;
+	private final int mode;
+	private final float[] samples;
+	private final float scale;
+	private final float start, end;
+	private final boolean[] exact; // intervals that call the equation, null if none
+	private final float maxError;
+
+	/**
+	 * Builds a table of the given size.
+	 *
+	 * @param equation The sampled equation.
+	 * @param samples The number of samples, at least 2.
+	 * @param mode The interpolation between samples, see {@link Mode}.
+	 */
+	public TableEquation(Equation equation, int samples, int mode) {
+		this(equation, samples, mode, Float.POSITIVE_INFINITY);
+	}
+
+	private TableEquation(Equation equation, int samples, int mode, float exactAbove) {
+		if (equation == null) throw new NullPointerException("equation");
+		if (samples < 2) throw new IllegalArgumentException("samples < 2");
+		this.equation = equation instanceof TableEquation ? ((TableEquation) equation).equation : equation;
+		this.mode = Mode.checkValid(mode);
+		this.samples = new float[samples];
+		this.scale = samples - 1;
+		// The ends are sampled just inside the range, as some equations like
+		// Expo are only continuous there, and are returned exactly
+		start = this.equation.interpolate(0);
+		end = this.equation.interpolate(1);
+		this.samples[0] = this.equation.interpolate(Float.MIN_NORMAL);
+		this.samples[samples - 1] = this.equation.interpolate(Math.nextDown(1f));
+		for (int i = 1; i < samples - 1; i ++) {
+			this.samples[i] = this.equation.interpolate(i / scale);
+		}
+
+		// Compares the table against the equation at 3 points within every
+		// interval between samples
+		float[] errors = new float[samples - 1];
+		for (int i = 0; i < errors.length; i ++) {
+			for (int j = 1; j < 4; j ++) {
+				float t = (i + j * 0.25f) / scale;
+				errors[i] = Math.max(errors[i], Math.abs(interpolate(t) - this.equation.interpolate(t)));
+			}
+		}
+		boolean[] exact = null;
+		float maxError = 0;
+		for (int i = 0; i < errors.length; i ++) {
+			if (errors[i] > exactAbove) {
+				if (exact == null) exact = new boolean[errors.length];
+				exact[i] = true;
+			}
+			else maxError = Math.max(maxError, errors[i]);
+		}
+		this.exact = exact;
+		this.maxError = maxError;
+	}
+
+	@Override
+	public float interpolate(float t) {
+		float[] samples = this.samples;
+		int last = samples.length - 1;
+		if (!(t > 0)) return start;
+		if (t >= 1) return end;
+		float x = t * scale;
+		int i = (int) x;
+		if (i >= last) return samples[last];
+		if (exact != null && exact[i]) return equation.interpolate(t);
+		float f = x - i;
+		float p1 = samples[i];
+		float p2 = samples[i + 1];
+		if (mode == Mode.LINEAR) return p1 + (p2 - p1) * f;
+		// Ends are extrapolated linearly
+		float p0 = i > 0 ? samples[i - 1] : 2 * p1 - p2;
+		float p3 = i + 2 <= last ? samples[i + 2] : 2 * p2 - p1;
+		return p1 + 0.5f * f * (p2 - p0 + f * (2 * p0 - 5 * p1 + 4 * p2 - p3 + f * (3 * (p1 - p2) + p3 - p0)));
+	}
+
+	/**
+	 * Gets the sampled equation.
+	 */
+	public Equation getEquation() {
+		return equation;
+	}
+
+	/**
+	 * Gets the number of samples of the table.
+	 */
+	public int getSampleCount() {
+		return samples.length;
+	}
+
+	/**
+	 * Gets the interpolation between samples, see {@link Mode}.
+	 */
+	public int getMode() {
+		return mode;
+	}
+
+	/**
+	 * Gets the number of intervals between samples that call the equation
+	 * instead of reading the table, see {@link #of(Equation, float, int)}.
+	 */
+	public int getExactIntervalCount() {
+		int count = 0;
+		if (exact != null) for (boolean e : exact) if (e) count ++;
+		return count;
+	}
+
+	/**
+	 * Gets the largest absolute difference between the table and the
+	 * equation measured when the table was built. Discontinuities of the
+	 * equation between two measured points may exceed it.
+	 */
+	public float getMaxError() {
+		return maxError;
+	}
+
+	@Override
+	public String toString() {
+		return "TableEquation{" +
+				"equation=" + equation +
+				", samples=" + samples.length +
+				", mode=" + Mode.toString(mode) +
+				", maxError=" + maxError +
+				'}';
+	}
+
+}
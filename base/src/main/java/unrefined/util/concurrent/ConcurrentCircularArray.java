@@ -0,0 +1,128 @@
+package unrefined.util.concurrent;
+
+import unrefined.util.FastArray;
+import unrefined.util.function.Slot;
+
+import java.util.Objects;
+
+/**
+ * ConcurrentCircularArray is a bounded, lock-free generic circular array that hands elements over from
+ * producer threads to a single consumer thread without allocating. It either accepts a single
+ * producer thread or multiple producer threads, and in both cases only one thread at a time
+ * may poll or drain it. Offering to a full array fails instead of growing its capacity.
+ */
+public class ConcurrentCircularArray<E> extends ConcurrentCircularBuffer {
+
+    private final E[] elements;
+
+    /**
+     * Creates a single-producer circular array with capacity for at least {@code minCapacity}
+     * elements.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     */
+    public ConcurrentCircularArray(int minCapacity) {
+        this(minCapacity, false);
+    }
+
+    /**
+     * Creates a circular array with capacity for at least {@code minCapacity} elements.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     * @param multiProducer whether multiple threads may offer elements concurrently
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentCircularArray(int minCapacity, boolean multiProducer) {
+        this((E[]) new Object[arrayCapacity(minCapacity)], multiProducer);
+    }
+
+    private ConcurrentCircularArray(E[] elements, boolean multiProducer) {
+        super(elements, multiProducer);
+        this.elements = elements;
+    }
+
+    /**
+     * Add an element at end of the ConcurrentCircularArray.
+     * @param e  Element to add, not null.
+     * @return true if the element was added, false if the array is full.
+     */
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        long sequence = claim();
+        if (sequence < 0) return false;
+        elements[(int) sequence & mask] = e;
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * Add elements at end of the ConcurrentCircularArray, as many as there is free capacity for.
+     * @param src  Elements to add.
+     * @return the number of elements added.
+     */
+    public int offer(E[] src) {
+        return offer(src, 0, src.length);
+    }
+
+    /**
+     * Add <code>length</code> elements starting at <code>offset</code> at end of the
+     * ConcurrentCircularArray, as many as there is free capacity for.
+     * @return the number of elements added.
+     */
+    public int offer(E[] src, int offset, int length) {
+        FastArray.rangeCheck(src.length, offset, offset + length);
+        for (int i = offset; i < offset + length; i ++) {
+            Objects.requireNonNull(src[i]);
+        }
+        return offerArray(src, offset, length);
+    }
+
+    /**
+     * Remove the first element from front of the ConcurrentCircularArray and return it.
+     * @return  The element removed, or <code>null</code> if the array is empty.
+     */
+    public E poll() {
+        long sequence = next();
+        if (sequence < 0) return null;
+        int index = (int) sequence & mask;
+        E e = elements[index];
+        elements[index] = null;
+        release(sequence);
+        return e;
+    }
+
+    /**
+     * Remove up to <code>dst.length</code> elements from front of the ConcurrentCircularArray
+     * into the specified array.
+     * @return the number of elements removed.
+     */
+    public int drain(E[] dst) {
+        return drain(dst, 0, dst.length);
+    }
+
+    /**
+     * Remove up to <code>length</code> elements from front of the ConcurrentCircularArray
+     * into the specified array starting at <code>offset</code>.
+     * @return the number of elements removed.
+     */
+    public int drain(E[] dst, int offset, int length) {
+        FastArray.rangeCheck(dst.length, offset, offset + length);
+        return drainArray(dst, offset, length);
+    }
+
+    /**
+     * Remove up to <code>limit</code> elements from front of the ConcurrentCircularArray,
+     * passing each of them to the specified slot.
+     * @return the number of elements removed.
+     */
+    public int drain(Slot<? super E> slot, int limit) {
+        int count = readable(limit);
+        long head = head();
+        for (int i = 0; i < count; i ++) {
+            slot.accept(elements[(int) (head + i) & mask]);
+        }
+        consumed(count);
+        return count;
+    }
+
+}
@@ -0,0 +1,268 @@
+package unrefined.util.concurrent;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * The sequencing shared by the bounded concurrent circular arrays. A single consumer owns the
+ * head sequence; the tail sequence is owned by a single producer, or claimed with CAS
+ * by multiple producers, in which case every slot also records the sequence that was
+ * last published into it so the consumer never reads a slot that is still being written.
+ *
+ * <p>Both sequences are padded to occupy their own cache lines, and each side caches
+ * the last sequence it read from the other side, so an uncontended offer or poll touches
+ * no cache line written by the other thread.</p>
+ */
+abstract class ConcurrentCircularBuffer {
+
+    abstract static class SequenceLeftPadding {
+        long p00, p01, p02, p03, p04, p05, p06;
+    }
+
+    abstract static class SequenceValue extends SequenceLeftPadding {
+        volatile long value;
+        long cache; // the owner's last view of the opposite sequence
+    }
+
+    static final class Sequence extends SequenceValue {
+        long p10, p11, p12, p13, p14, p15, p16;
+
+        private static final AtomicLongFieldUpdater<SequenceValue> UPDATER =
+                AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+
+        long get() {
+            return value;
+        }
+
+        void lazySet(long newValue) {
+            UPDATER.lazySet(this, newValue);
+        }
+
+        boolean compareAndSet(long expectedValue, long newValue) {
+            return UPDATER.compareAndSet(this, expectedValue, newValue);
+        }
+    }
+
+    private final Object elements;
+    final int mask;
+    private final int capacity;
+    private final boolean multiProducer;
+    private final Sequence head = new Sequence();
+    private final Sequence tail = new Sequence();
+    private final AtomicLongArray published; // sequence + 1 once a slot is written, multi producer only
+
+    ConcurrentCircularBuffer(Object elements, boolean multiProducer) {
+        this.elements = elements;
+        this.capacity = Array.getLength(elements);
+        this.mask = capacity - 1;
+        this.multiProducer = multiProducer;
+        this.published = multiProducer ? new AtomicLongArray(capacity) : null;
+    }
+
+    static int arrayCapacity(int minCapacity) {
+        if (minCapacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1");
+        }
+        if (minCapacity > (2 << 29)) {
+            throw new IllegalArgumentException("capacity must be <= 2^30");
+        }
+
+        // If minCapacity isn't a power of 2, round up to the next highest
+        // power of 2.
+        if (Integer.bitCount(minCapacity) != 1) {
+            return Integer.highestOneBit(minCapacity - 1) << 1;
+        } else {
+            return minCapacity;
+        }
+    }
+
+    /**
+     * Claims one slot for the calling producer.
+     *
+     * @return the sequence of the claimed slot, or -1 if the array is full
+     */
+    final long claim() {
+        if (multiProducer) {
+            while (true) {
+                long t = tail.get();
+                if (t - head.get() >= capacity) return -1;
+                if (tail.compareAndSet(t, t + 1)) return t;
+            }
+        }
+        else {
+            long t = tail.value;
+            if (t - tail.cache >= capacity) {
+                tail.cache = head.get();
+                if (t - tail.cache >= capacity) return -1;
+            }
+            return t;
+        }
+    }
+
+    /**
+     * Makes the slot claimed by {@link #claim()} visible to the consumer.
+     */
+    final void publish(long sequence) {
+        if (multiProducer) published.lazySet((int) sequence & mask, sequence + 1);
+        else tail.lazySet(sequence + 1);
+    }
+
+    /**
+     * Returns the sequence of the next readable slot for the consumer, or -1 if the array is empty.
+     */
+    final long next() {
+        long h = head.value;
+        if (multiProducer) {
+            return published.get((int) h & mask) == h + 1 ? h : -1;
+        }
+        else {
+            if (h >= head.cache) {
+                head.cache = tail.get();
+                if (h >= head.cache) return -1;
+            }
+            return h;
+        }
+    }
+
+    /**
+     * Returns the slot returned by {@link #next()} to the producers.
+     */
+    final void release(long sequence) {
+        head.lazySet(sequence + 1);
+    }
+
+    /**
+     * Returns the number of consecutive readable slots from the head, at most <code>limit</code>.
+     */
+    final int readable(int limit) {
+        long h = head.value;
+        if (multiProducer) {
+            int count = 0;
+            while (count < limit && published.get((int) (h + count) & mask) == h + count + 1) {
+                count ++;
+            }
+            return count;
+        }
+        else {
+            long available = head.cache - h;
+            if (available < limit) {
+                head.cache = tail.get();
+                available = head.cache - h;
+            }
+            return (int) Math.min(limit, available);
+        }
+    }
+
+    /**
+     * Returns the head sequence, only meaningful to the consumer.
+     */
+    final long head() {
+        return head.value;
+    }
+
+    /**
+     * Releases <code>count</code> slots from the head, after the consumer has read them.
+     */
+    final void consumed(int count) {
+        long h = head.value;
+        if (elements instanceof Object[]) clear(h, count);
+        head.lazySet(h + count);
+    }
+
+    private void clear(long sequence, int count) {
+        int index = (int) sequence & mask;
+        int first = Math.min(count, capacity - index);
+        Arrays.fill((Object[]) elements, index, index + first, null);
+        Arrays.fill((Object[]) elements, 0, count - first, null);
+    }
+
+    /**
+     * Copies up to <code>length</code> elements from the specified array into free slots.
+     *
+     * @return the number of elements copied
+     */
+    final int offerArray(Object src, int offset, int length) {
+        long t;
+        int count;
+        if (multiProducer) {
+            do {
+                t = tail.get();
+                count = (int) Math.min(length, capacity - (t - head.get()));
+                if (count <= 0) return 0;
+            }
+            while (!tail.compareAndSet(t, t + count));
+        }
+        else {
+            t = tail.value;
+            if (capacity - (t - tail.cache) < length) tail.cache = head.get();
+            count = (int) Math.min(length, capacity - (t - tail.cache));
+            if (count <= 0) return 0;
+        }
+
+        int index = (int) t & mask;
+        int first = Math.min(count, capacity - index);
+        System.arraycopy(src, offset, elements, index, first);
+        System.arraycopy(src, offset + first, elements, 0, count - first);
+
+        if (multiProducer) {
+            for (int i = 0; i < count; i ++) {
+                published.lazySet((int) (t + i) & mask, t + i + 1);
+            }
+        }
+        else tail.lazySet(t + count);
+        return count;
+    }
+
+    /**
+     * Moves up to <code>length</code> readable elements into the specified array.
+     *
+     * @return the number of elements moved
+     */
+    final int drainArray(Object dst, int offset, int length) {
+        int count = readable(length);
+        if (count <= 0) return 0;
+
+        int index = (int) head.value & mask;
+        int first = Math.min(count, capacity - index);
+        System.arraycopy(elements, index, dst, offset, first);
+        System.arraycopy(elements, 0, dst, offset + first, count - first);
+
+        consumed(count);
+        return count;
+    }
+
+    /**
+     * Returns the number of elements in the array. The result is only a snapshot
+     * while producers or the consumer are running.
+     */
+    public int size() {
+        long h = head.get();
+        long t = tail.get();
+        return (int) Math.max(0, Math.min(capacity, t - h));
+    }
+
+    /**
+     * Returns true if the size of the array is 0. The result is only a snapshot
+     * while producers or the consumer are running.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the maximum number of elements the array can hold.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns true if multiple threads may offer elements concurrently.
+     */
+    public boolean isMultiProducer() {
+        return multiProducer;
+    }
+
+}
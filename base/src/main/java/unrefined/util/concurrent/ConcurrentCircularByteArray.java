@@ -0,0 +1,119 @@
+package unrefined.util.concurrent;
+
+import unrefined.util.FastArray;
+import unrefined.util.function.ByteSlot;
+
+/**
+ * ConcurrentCircularByteArray is a bounded, lock-free circular byte array that hands bytes over from
+ * producer threads to a single consumer thread without allocating. It either accepts a single
+ * producer thread or multiple producer threads, and in both cases only one thread at a time
+ * may poll or drain it. Offering to a full array fails instead of growing its capacity.
+ */
+public class ConcurrentCircularByteArray extends ConcurrentCircularBuffer {
+
+    private final byte[] elements;
+
+    /**
+     * Creates a single-producer circular array with capacity for at least {@code minCapacity}
+     * bytes.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     */
+    public ConcurrentCircularByteArray(int minCapacity) {
+        this(minCapacity, false);
+    }
+
+    /**
+     * Creates a circular array with capacity for at least {@code minCapacity} bytes.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     * @param multiProducer whether multiple threads may offer bytes concurrently
+     */
+    public ConcurrentCircularByteArray(int minCapacity, boolean multiProducer) {
+        this(new byte[arrayCapacity(minCapacity)], multiProducer);
+    }
+
+    private ConcurrentCircularByteArray(byte[] elements, boolean multiProducer) {
+        super(elements, multiProducer);
+        this.elements = elements;
+    }
+
+    /**
+     * Add a byte at end of the ConcurrentCircularByteArray.
+     * @param e  Byte to add.
+     * @return true if the byte was added, false if the array is full.
+     */
+    public boolean offer(byte e) {
+        long sequence = claim();
+        if (sequence < 0) return false;
+        elements[(int) sequence & mask] = e;
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * Add bytes at end of the ConcurrentCircularByteArray, as many as there is free capacity for.
+     * @param src  Bytes to add.
+     * @return the number of bytes added.
+     */
+    public int offer(byte[] src) {
+        return offer(src, 0, src.length);
+    }
+
+    /**
+     * Add <code>length</code> bytes starting at <code>offset</code> at end of the
+     * ConcurrentCircularByteArray, as many as there is free capacity for.
+     * @return the number of bytes added.
+     */
+    public int offer(byte[] src, int offset, int length) {
+        FastArray.rangeCheck(src.length, offset, offset + length);
+        return offerArray(src, offset, length);
+    }
+
+    /**
+     * Remove the first byte from front of the ConcurrentCircularByteArray and return it.
+     * @return  The byte removed, or <code>valueIfEmpty</code> if the array is empty.
+     */
+    public byte poll(byte valueIfEmpty) {
+        long sequence = next();
+        if (sequence < 0) return valueIfEmpty;
+        byte e = elements[(int) sequence & mask];
+        release(sequence);
+        return e;
+    }
+
+    /**
+     * Remove up to <code>dst.length</code> bytes from front of the ConcurrentCircularByteArray
+     * into the specified array.
+     * @return the number of bytes removed.
+     */
+    public int drain(byte[] dst) {
+        return drain(dst, 0, dst.length);
+    }
+
+    /**
+     * Remove up to <code>length</code> bytes from front of the ConcurrentCircularByteArray
+     * into the specified array starting at <code>offset</code>.
+     * @return the number of bytes removed.
+     */
+    public int drain(byte[] dst, int offset, int length) {
+        FastArray.rangeCheck(dst.length, offset, offset + length);
+        return drainArray(dst, offset, length);
+    }
+
+    /**
+     * Remove up to <code>limit</code> bytes from front of the ConcurrentCircularByteArray,
+     * passing each of them to the specified slot.
+     * @return the number of bytes removed.
+     */
+    public int drain(ByteSlot slot, int limit) {
+        int count = readable(limit);
+        long head = head();
+        for (int i = 0; i < count; i ++) {
+            slot.accept(elements[(int) (head + i) & mask]);
+        }
+        consumed(count);
+        return count;
+    }
+
+}
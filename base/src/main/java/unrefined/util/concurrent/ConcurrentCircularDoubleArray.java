@@ -0,0 +1,119 @@
+package unrefined.util.concurrent;
+
+import unrefined.util.FastArray;
+import unrefined.util.function.DoubleSlot;
+
+/**
+ * ConcurrentCircularDoubleArray is a bounded, lock-free circular double array that hands doubles over from
+ * producer threads to a single consumer thread without allocating. It either accepts a single
+ * producer thread or multiple producer threads, and in both cases only one thread at a time
+ * may poll or drain it. Offering to a full array fails instead of growing its capacity.
+ */
+public class ConcurrentCircularDoubleArray extends ConcurrentCircularBuffer {
+
+    private final double[] elements;
+
+    /**
+     * Creates a single-producer circular array with capacity for at least {@code minCapacity}
+     * doubles.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     */
+    public ConcurrentCircularDoubleArray(int minCapacity) {
+        this(minCapacity, false);
+    }
+
+    /**
+     * Creates a circular array with capacity for at least {@code minCapacity} doubles.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     * @param multiProducer whether multiple threads may offer doubles concurrently
+     */
+    public ConcurrentCircularDoubleArray(int minCapacity, boolean multiProducer) {
+        this(new double[arrayCapacity(minCapacity)], multiProducer);
+    }
+
+    private ConcurrentCircularDoubleArray(double[] elements, boolean multiProducer) {
+        super(elements, multiProducer);
+        this.elements = elements;
+    }
+
+    /**
+     * Add a double at end of the ConcurrentCircularDoubleArray.
+     * @param e  Double to add.
+     * @return true if the double was added, false if the array is full.
+     */
+    public boolean offer(double e) {
+        long sequence = claim();
+        if (sequence < 0) return false;
+        elements[(int) sequence & mask] = e;
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * Add doubles at end of the ConcurrentCircularDoubleArray, as many as there is free capacity for.
+     * @param src  Doubles to add.
+     * @return the number of doubles added.
+     */
+    public int offer(double[] src) {
+        return offer(src, 0, src.length);
+    }
+
+    /**
+     * Add <code>length</code> doubles starting at <code>offset</code> at end of the
+     * ConcurrentCircularDoubleArray, as many as there is free capacity for.
+     * @return the number of doubles added.
+     */
+    public int offer(double[] src, int offset, int length) {
+        FastArray.rangeCheck(src.length, offset, offset + length);
+        return offerArray(src, offset, length);
+    }
+
+    /**
+     * Remove the first double from front of the ConcurrentCircularDoubleArray and return it.
+     * @return  The double removed, or <code>valueIfEmpty</code> if the array is empty.
+     */
+    public double poll(double valueIfEmpty) {
+        long sequence = next();
+        if (sequence < 0) return valueIfEmpty;
+        double e = elements[(int) sequence & mask];
+        release(sequence);
+        return e;
+    }
+
+    /**
+     * Remove up to <code>dst.length</code> doubles from front of the ConcurrentCircularDoubleArray
+     * into the specified array.
+     * @return the number of doubles removed.
+     */
+    public int drain(double[] dst) {
+        return drain(dst, 0, dst.length);
+    }
+
+    /**
+     * Remove up to <code>length</code> doubles from front of the ConcurrentCircularDoubleArray
+     * into the specified array starting at <code>offset</code>.
+     * @return the number of doubles removed.
+     */
+    public int drain(double[] dst, int offset, int length) {
+        FastArray.rangeCheck(dst.length, offset, offset + length);
+        return drainArray(dst, offset, length);
+    }
+
+    /**
+     * Remove up to <code>limit</code> doubles from front of the ConcurrentCircularDoubleArray,
+     * passing each of them to the specified slot.
+     * @return the number of doubles removed.
+     */
+    public int drain(DoubleSlot slot, int limit) {
+        int count = readable(limit);
+        long head = head();
+        for (int i = 0; i < count; i ++) {
+            slot.accept(elements[(int) (head + i) & mask]);
+        }
+        consumed(count);
+        return count;
+    }
+
+}
@@ -0,0 +1,119 @@
+package unrefined.util.concurrent;
+
+import unrefined.util.FastArray;
+import unrefined.util.function.FloatSlot;
+
+/**
+ * ConcurrentCircularFloatArray is a bounded, lock-free circular float array that hands floats over from
+ * producer threads to a single consumer thread without allocating. It either accepts a single
+ * producer thread or multiple producer threads, and in both cases only one thread at a time
+ * may poll or drain it. Offering to a full array fails instead of growing its capacity.
+ */
+public class ConcurrentCircularFloatArray extends ConcurrentCircularBuffer {
+
+    private final float[] elements;
+
+    /**
+     * Creates a single-producer circular array with capacity for at least {@code minCapacity}
+     * floats.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     */
+    public ConcurrentCircularFloatArray(int minCapacity) {
+        this(minCapacity, false);
+    }
+
+    /**
+     * Creates a circular array with capacity for at least {@code minCapacity} floats.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     * @param multiProducer whether multiple threads may offer floats concurrently
+     */
+    public ConcurrentCircularFloatArray(int minCapacity, boolean multiProducer) {
+        this(new float[arrayCapacity(minCapacity)], multiProducer);
+    }
+
+    private ConcurrentCircularFloatArray(float[] elements, boolean multiProducer) {
+        super(elements, multiProducer);
+        this.elements = elements;
+    }
+
+    /**
+     * Add a float at end of the ConcurrentCircularFloatArray.
+     * @param e  Float to add.
+     * @return true if the float was added, false if the array is full.
+     */
+    public boolean offer(float e) {
+        long sequence = claim();
+        if (sequence < 0) return false;
+        elements[(int) sequence & mask] = e;
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * Add floats at end of the ConcurrentCircularFloatArray, as many as there is free capacity for.
+     * @param src  Floats to add.
+     * @return the number of floats added.
+     */
+    public int offer(float[] src) {
+        return offer(src, 0, src.length);
+    }
+
+    /**
+     * Add <code>length</code> floats starting at <code>offset</code> at end of the
+     * ConcurrentCircularFloatArray, as many as there is free capacity for.
+     * @return the number of floats added.
+     */
+    public int offer(float[] src, int offset, int length) {
+        FastArray.rangeCheck(src.length, offset, offset + length);
+        return offerArray(src, offset, length);
+    }
+
+    /**
+     * Remove the first float from front of the ConcurrentCircularFloatArray and return it.
+     * @return  The float removed, or <code>valueIfEmpty</code> if the array is empty.
+     */
+    public float poll(float valueIfEmpty) {
+        long sequence = next();
+        if (sequence < 0) return valueIfEmpty;
+        float e = elements[(int) sequence & mask];
+        release(sequence);
+        return e;
+    }
+
+    /**
+     * Remove up to <code>dst.length</code> floats from front of the ConcurrentCircularFloatArray
+     * into the specified array.
+     * @return the number of floats removed.
+     */
+    public int drain(float[] dst) {
+        return drain(dst, 0, dst.length);
+    }
+
+    /**
+     * Remove up to <code>length</code> floats from front of the ConcurrentCircularFloatArray
+     * into the specified array starting at <code>offset</code>.
+     * @return the number of floats removed.
+     */
+    public int drain(float[] dst, int offset, int length) {
+        FastArray.rangeCheck(dst.length, offset, offset + length);
+        return drainArray(dst, offset, length);
+    }
+
+    /**
+     * Remove up to <code>limit</code> floats from front of the ConcurrentCircularFloatArray,
+     * passing each of them to the specified slot.
+     * @return the number of floats removed.
+     */
+    public int drain(FloatSlot slot, int limit) {
+        int count = readable(limit);
+        long head = head();
+        for (int i = 0; i < count; i ++) {
+            slot.accept(elements[(int) (head + i) & mask]);
+        }
+        consumed(count);
+        return count;
+    }
+
+}
@@ -0,0 +1,119 @@
+package unrefined.util.concurrent;
+
+import unrefined.util.FastArray;
+import unrefined.util.function.IntSlot;
+
+/**
+ * ConcurrentCircularIntArray is a bounded, lock-free circular integer array that hands integers over from
+ * producer threads to a single consumer thread without allocating. It either accepts a single
+ * producer thread or multiple producer threads, and in both cases only one thread at a time
+ * may poll or drain it. Offering to a full array fails instead of growing its capacity.
+ */
+public class ConcurrentCircularIntArray extends ConcurrentCircularBuffer {
+
+    private final int[] elements;
+
+    /**
+     * Creates a single-producer circular array with capacity for at least {@code minCapacity}
+     * integers.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     */
+    public ConcurrentCircularIntArray(int minCapacity) {
+        this(minCapacity, false);
+    }
+
+    /**
+     * Creates a circular array with capacity for at least {@code minCapacity} integers.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     * @param multiProducer whether multiple threads may offer integers concurrently
+     */
+    public ConcurrentCircularIntArray(int minCapacity, boolean multiProducer) {
+        this(new int[arrayCapacity(minCapacity)], multiProducer);
+    }
+
+    private ConcurrentCircularIntArray(int[] elements, boolean multiProducer) {
+        super(elements, multiProducer);
+        this.elements = elements;
+    }
+
+    /**
+     * Add an integer at end of the ConcurrentCircularIntArray.
+     * @param e  Integer to add.
+     * @return true if the integer was added, false if the array is full.
+     */
+    public boolean offer(int e) {
+        long sequence = claim();
+        if (sequence < 0) return false;
+        elements[(int) sequence & mask] = e;
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * Add integers at end of the ConcurrentCircularIntArray, as many as there is free capacity for.
+     * @param src  Integers to add.
+     * @return the number of integers added.
+     */
+    public int offer(int[] src) {
+        return offer(src, 0, src.length);
+    }
+
+    /**
+     * Add <code>length</code> integers starting at <code>offset</code> at end of the
+     * ConcurrentCircularIntArray, as many as there is free capacity for.
+     * @return the number of integers added.
+     */
+    public int offer(int[] src, int offset, int length) {
+        FastArray.rangeCheck(src.length, offset, offset + length);
+        return offerArray(src, offset, length);
+    }
+
+    /**
+     * Remove the first integer from front of the ConcurrentCircularIntArray and return it.
+     * @return  The integer removed, or <code>valueIfEmpty</code> if the array is empty.
+     */
+    public int poll(int valueIfEmpty) {
+        long sequence = next();
+        if (sequence < 0) return valueIfEmpty;
+        int e = elements[(int) sequence & mask];
+        release(sequence);
+        return e;
+    }
+
+    /**
+     * Remove up to <code>dst.length</code> integers from front of the ConcurrentCircularIntArray
+     * into the specified array.
+     * @return the number of integers removed.
+     */
+    public int drain(int[] dst) {
+        return drain(dst, 0, dst.length);
+    }
+
+    /**
+     * Remove up to <code>length</code> integers from front of the ConcurrentCircularIntArray
+     * into the specified array starting at <code>offset</code>.
+     * @return the number of integers removed.
+     */
+    public int drain(int[] dst, int offset, int length) {
+        FastArray.rangeCheck(dst.length, offset, offset + length);
+        return drainArray(dst, offset, length);
+    }
+
+    /**
+     * Remove up to <code>limit</code> integers from front of the ConcurrentCircularIntArray,
+     * passing each of them to the specified slot.
+     * @return the number of integers removed.
+     */
+    public int drain(IntSlot slot, int limit) {
+        int count = readable(limit);
+        long head = head();
+        for (int i = 0; i < count; i ++) {
+            slot.accept(elements[(int) (head + i) & mask]);
+        }
+        consumed(count);
+        return count;
+    }
+
+}
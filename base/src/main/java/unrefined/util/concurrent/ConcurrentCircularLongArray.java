@@ -0,0 +1,119 @@
+package unrefined.util.concurrent;
+
+import unrefined.util.FastArray;
+import unrefined.util.function.LongSlot;
+
+/**
+ * ConcurrentCircularLongArray is a bounded, lock-free circular long array that hands longs over from
+ * producer threads to a single consumer thread without allocating. It either accepts a single
+ * producer thread or multiple producer threads, and in both cases only one thread at a time
+ * may poll or drain it. Offering to a full array fails instead of growing its capacity.
+ */
+public class ConcurrentCircularLongArray extends ConcurrentCircularBuffer {
+
+    private final long[] elements;
+
+    /**
+     * Creates a single-producer circular array with capacity for at least {@code minCapacity}
+     * longs.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     */
+    public ConcurrentCircularLongArray(int minCapacity) {
+        this(minCapacity, false);
+    }
+
+    /**
+     * Creates a circular array with capacity for at least {@code minCapacity} longs.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     * @param multiProducer whether multiple threads may offer longs concurrently
+     */
+    public ConcurrentCircularLongArray(int minCapacity, boolean multiProducer) {
+        this(new long[arrayCapacity(minCapacity)], multiProducer);
+    }
+
+    private ConcurrentCircularLongArray(long[] elements, boolean multiProducer) {
+        super(elements, multiProducer);
+        this.elements = elements;
+    }
+
+    /**
+     * Add a long at end of the ConcurrentCircularLongArray.
+     * @param e  Long to add.
+     * @return true if the long was added, false if the array is full.
+     */
+    public boolean offer(long e) {
+        long sequence = claim();
+        if (sequence < 0) return false;
+        elements[(int) sequence & mask] = e;
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * Add longs at end of the ConcurrentCircularLongArray, as many as there is free capacity for.
+     * @param src  Longs to add.
+     * @return the number of longs added.
+     */
+    public int offer(long[] src) {
+        return offer(src, 0, src.length);
+    }
+
+    /**
+     * Add <code>length</code> longs starting at <code>offset</code> at end of the
+     * ConcurrentCircularLongArray, as many as there is free capacity for.
+     * @return the number of longs added.
+     */
+    public int offer(long[] src, int offset, int length) {
+        FastArray.rangeCheck(src.length, offset, offset + length);
+        return offerArray(src, offset, length);
+    }
+
+    /**
+     * Remove the first long from front of the ConcurrentCircularLongArray and return it.
+     * @return  The long removed, or <code>valueIfEmpty</code> if the array is empty.
+     */
+    public long poll(long valueIfEmpty) {
+        long sequence = next();
+        if (sequence < 0) return valueIfEmpty;
+        long e = elements[(int) sequence & mask];
+        release(sequence);
+        return e;
+    }
+
+    /**
+     * Remove up to <code>dst.length</code> longs from front of the ConcurrentCircularLongArray
+     * into the specified array.
+     * @return the number of longs removed.
+     */
+    public int drain(long[] dst) {
+        return drain(dst, 0, dst.length);
+    }
+
+    /**
+     * Remove up to <code>length</code> longs from front of the ConcurrentCircularLongArray
+     * into the specified array starting at <code>offset</code>.
+     * @return the number of longs removed.
+     */
+    public int drain(long[] dst, int offset, int length) {
+        FastArray.rangeCheck(dst.length, offset, offset + length);
+        return drainArray(dst, offset, length);
+    }
+
+    /**
+     * Remove up to <code>limit</code> longs from front of the ConcurrentCircularLongArray,
+     * passing each of them to the specified slot.
+     * @return the number of longs removed.
+     */
+    public int drain(LongSlot slot, int limit) {
+        int count = readable(limit);
+        long head = head();
+        for (int i = 0; i < count; i ++) {
+            slot.accept(elements[(int) (head + i) & mask]);
+        }
+        consumed(count);
+        return count;
+    }
+
+}
@@ -0,0 +1,119 @@
+package unrefined.util.concurrent;
+
+import unrefined.util.FastArray;
+import unrefined.util.function.ShortSlot;
+
+/**
+ * ConcurrentCircularShortArray is a bounded, lock-free circular short array that hands shorts over from
+ * producer threads to a single consumer thread without allocating. It either accepts a single
+ * producer thread or multiple producer threads, and in both cases only one thread at a time
+ * may poll or drain it. Offering to a full array fails instead of growing its capacity.
+ */
+public class ConcurrentCircularShortArray extends ConcurrentCircularBuffer {
+
+    private final short[] elements;
+
+    /**
+     * Creates a single-producer circular array with capacity for at least {@code minCapacity}
+     * shorts.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     */
+    public ConcurrentCircularShortArray(int minCapacity) {
+        this(minCapacity, false);
+    }
+
+    /**
+     * Creates a circular array with capacity for at least {@code minCapacity} shorts.
+     *
+     * @param minCapacity the minimum capacity, between 1 and 2^30 inclusive
+     * @param multiProducer whether multiple threads may offer shorts concurrently
+     */
+    public ConcurrentCircularShortArray(int minCapacity, boolean multiProducer) {
+        this(new short[arrayCapacity(minCapacity)], multiProducer);
+    }
+
+    private ConcurrentCircularShortArray(short[] elements, boolean multiProducer) {
+        super(elements, multiProducer);
+        this.elements = elements;
+    }
+
+    /**
+     * Add a short at end of the ConcurrentCircularShortArray.
+     * @param e  Short to add.
+     * @return true if the short was added, false if the array is full.
+     */
+    public boolean offer(short e) {
+        long sequence = claim();
+        if (sequence < 0) return false;
+        elements[(int) sequence & mask] = e;
+        publish(sequence);
+        return true;
+    }
+
+    /**
+     * Add shorts at end of the ConcurrentCircularShortArray, as many as there is free capacity for.
+     * @param src  Shorts to add.
+     * @return the number of shorts added.
+     */
+    public int offer(short[] src) {
+        return offer(src, 0, src.length);
+    }
+
+    /**
+     * Add <code>length</code> shorts starting at <code>offset</code> at end of the
+     * ConcurrentCircularShortArray, as many as there is free capacity for.
+     * @return the number of shorts added.
+     */
+    public int offer(short[] src, int offset, int length) {
+        FastArray.rangeCheck(src.length, offset, offset + length);
+        return offerArray(src, offset, length);
+    }
+
+    /**
+     * Remove the first short from front of the ConcurrentCircularShortArray and return it.
+     * @return  The short removed, or <code>valueIfEmpty</code> if the array is empty.
+     */
+    public short poll(short valueIfEmpty) {
+        long sequence = next();
+        if (sequence < 0) return valueIfEmpty;
+        short e = elements[(int) sequence & mask];
+        release(sequence);
+        return e;
+    }
+
+    /**
+     * Remove up to <code>dst.length</code> shorts from front of the ConcurrentCircularShortArray
+     * into the specified array.
+     * @return the number of shorts removed.
+     */
+    public int drain(short[] dst) {
+        return drain(dst, 0, dst.length);
+    }
+
+    /**
+     * Remove up to <code>length</code> shorts from front of the ConcurrentCircularShortArray
+     * into the specified array starting at <code>offset</code>.
+     * @return the number of shorts removed.
+     */
+    public int drain(short[] dst, int offset, int length) {
+        FastArray.rangeCheck(dst.length, offset, offset + length);
+        return drainArray(dst, offset, length);
+    }
+
+    /**
+     * Remove up to <code>limit</code> shorts from front of the ConcurrentCircularShortArray,
+     * passing each of them to the specified slot.
+     * @return the number of shorts removed.
+     */
+    public int drain(ShortSlot slot, int limit) {
+        int count = readable(limit);
+        long head = head();
+        for (int i = 0; i < count; i ++) {
+            slot.accept(elements[(int) (head + i) & mask]);
+        }
+        consumed(count);
+        return count;
+    }
+
+}
@@ -0,0 +1,477 @@
+package unrefined.util.concurrent;
+
+import unrefined.util.LruCache;
+import unrefined.util.function.Slot;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent counterpart of {@link LruCache} that holds strong references to a limited number
+ * of values, with the same {@link #create}, {@link #entryRemoved} and {@link #sizeOf} hooks.
+ *
+ * <p>Values live in a {@link ConcurrentHashMap}, so {@link #get} of a cached value takes no lock.
+ * Instead of reordering the eviction queue on every hit, a reader records the access in one of
+ * several striped, lossy read buffers; the buffers are replayed against the queue by whichever
+ * thread next holds the eviction lock, either a writer or a reader that found its buffer full.
+ * When the buffers overflow, some accesses are dropped, so the eviction order is
+ * an approximation of LRU under heavy read load.</p>
+ *
+ * <p>Writes ({@link #put}, {@link #remove}, eviction and creation of missing values) are serialized
+ * by the eviction lock. Statistics are kept in {@link LongAdder}s and are never locked.</p>
+ *
+ * <p>This class does not allow null to be used as a key or value. A return
+ * value of null from {@link #get}, {@link #put} or {@link #remove} is
+ * unambiguous: the key was not in the cache.
+ */
+public class ConcurrentLruCache<K, V> {
+
+    private static final int READ_BUFFER_SIZE = 16;
+
+    private static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        int size;
+        Node<K, V> previous, next; // guarded by the eviction lock
+        boolean linked;            // guarded by the eviction lock
+        Node(K key, V value, int size) {
+            this.key = key;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private final ConcurrentHashMap<K, Node<K, V>> map;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ConcurrentCircularArray<Node<K, V>>[] readBuffers;
+    private final int readBufferMask;
+    private final Slot<Node<K, V>> moveToTail = this::moveToTail;
+
+    // Eviction queue, least recently accessed first, guarded by the eviction lock
+    private Node<K, V> head, tail;
+
+    /** Size of this cache in units. Not necessarily the number of elements. */
+    private volatile int size;
+    private volatile int maxSize;
+
+    private final LongAdder putCount = new LongAdder();
+    private final LongAdder createCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * @param maxSize for caches that do not override {@link #sizeOf}, this is
+     *     the maximum number of entries in the cache. For all other caches,
+     *     this is the maximum sum of the sizes of the entries in this cache.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        this.map = new ConcurrentHashMap<>();
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        this.readBuffers = (ConcurrentCircularArray<Node<K, V>>[]) new ConcurrentCircularArray<?>[stripes];
+        for (int i = 0; i < stripes; i ++) {
+            readBuffers[i] = new ConcurrentCircularArray<>(READ_BUFFER_SIZE, true);
+        }
+        this.readBufferMask = stripes - 1;
+    }
+
+    /**
+     * Sets the size of the cache.
+     *
+     * @param maxSize The new maximum size.
+     */
+    public void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+
+        this.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Returns the value for {@code key} if it exists in the cache or can be
+     * created by {@code #create}. If a value was returned, it is moved to the
+     * head of the queue. This returns null if a value is not cached and cannot
+     * be created.
+     */
+    public final V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        Node<K, V> node = map.get(key);
+        if (node != null) {
+            hitCount.increment();
+            recordAccess(node);
+            return node.value;
+        }
+        missCount.increment();
+
+        /*
+         * Attempt to create a value. This may take a long time, and the map
+         * may be different when create() returns. If a conflicting value was
+         * added to the map while create() was working, we leave that value in
+         * the map and release the created value.
+         */
+
+        V createdValue = create(key);
+        if (createdValue == null) {
+            return null;
+        }
+
+        V mapValue;
+        evictionLock.lock();
+        try {
+            createCount.increment();
+            drainReadBuffers();
+            node = map.get(key);
+            if (node != null) {
+                // There was a conflict so keep the existing value
+                mapValue = node.value;
+                moveToTail(node);
+            } else {
+                mapValue = null;
+                node = new Node<>(key, createdValue, safeSizeOf(key, createdValue));
+                map.put(key, node);
+                linkLast(node);
+                size += node.size;
+            }
+        }
+        finally {
+            evictionLock.unlock();
+        }
+
+        if (mapValue != null) {
+            entryRemoved(false, key, createdValue, mapValue);
+            return mapValue;
+        } else {
+            trimToSize(maxSize);
+            return createdValue;
+        }
+    }
+
+    /**
+     * Caches {@code value} for {@code key}. The value is moved to the head of
+     * the queue.
+     *
+     * @return the previous value mapped by {@code key}.
+     */
+    public final V put(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        if (value == null) {
+            throw new NullPointerException("value == null");
+        }
+
+        int valueSize = safeSizeOf(key, value);
+        V previous;
+        putCount.increment();
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            Node<K, V> node = map.get(key);
+            if (node != null) {
+                previous = node.value;
+                node.value = value;
+                size += valueSize - node.size;
+                node.size = valueSize;
+                moveToTail(node);
+            } else {
+                previous = null;
+                node = new Node<>(key, value, valueSize);
+                map.put(key, node);
+                linkLast(node);
+                size += valueSize;
+            }
+        }
+        finally {
+            evictionLock.unlock();
+        }
+
+        if (previous != null) {
+            entryRemoved(false, key, previous, value);
+        }
+
+        trimToSize(maxSize);
+        return previous;
+    }
+
+    /**
+     * Remove the eldest entries until the total of remaining entries is at or
+     * below the requested size.
+     *
+     * @param maxSize the maximum size of the cache before returning. May be -1
+     *            to evict even 0-sized elements.
+     */
+    public void trimToSize(int maxSize) {
+        while (true) {
+            Node<K, V> toEvict;
+            evictionLock.lock();
+            try {
+                if (size < 0 || (map.isEmpty() && size != 0)) {
+                    throw new IllegalStateException(getClass().getName()
+                            + ".sizeOf() is reporting inconsistent results!");
+                }
+
+                if (size <= maxSize) {
+                    break;
+                }
+
+                drainReadBuffers();
+                toEvict = head;
+                if (toEvict == null) {
+                    break;
+                }
+
+                map.remove(toEvict.key, toEvict);
+                unlink(toEvict);
+                size -= toEvict.size;
+                evictionCount.increment();
+            }
+            finally {
+                evictionLock.unlock();
+            }
+
+            entryRemoved(true, toEvict.key, toEvict.value, null);
+        }
+    }
+
+    /**
+     * Removes the entry for {@code key} if it exists.
+     *
+     * @return the previous value mapped by {@code key}.
+     */
+    public final V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        V previous;
+        evictionLock.lock();
+        try {
+            Node<K, V> node = map.remove(key);
+            if (node != null) {
+                previous = node.value;
+                unlink(node);
+                size -= node.size;
+            }
+            else previous = null;
+        }
+        finally {
+            evictionLock.unlock();
+        }
+
+        if (previous != null) {
+            entryRemoved(false, key, previous, null);
+        }
+
+        return previous;
+    }
+
+    private void recordAccess(Node<K, V> node) {
+        int probe = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        ConcurrentCircularArray<Node<K, V>> buffer = readBuffers[(probe ^ (probe >>> 16)) & readBufferMask];
+        if (!buffer.offer(node) && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            }
+            finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    // Must hold the eviction lock, which makes the holder the single consumer of every read buffer
+    private void drainReadBuffers() {
+        for (ConcurrentCircularArray<Node<K, V>> buffer : readBuffers) {
+            buffer.drain(moveToTail, READ_BUFFER_SIZE);
+        }
+    }
+
+    private void moveToTail(Node<K, V> node) {
+        if (node.linked && node != tail) {
+            unlink(node);
+            linkLast(node);
+        }
+    }
+
+    private void linkLast(Node<K, V> node) {
+        node.previous = tail;
+        node.next = null;
+        if (tail == null) head = node;
+        else tail.next = node;
+        tail = node;
+        node.linked = true;
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (!node.linked) return;
+        if (node.previous == null) head = node.next;
+        else node.previous.next = node.next;
+        if (node.next == null) tail = node.previous;
+        else node.next.previous = node.previous;
+        node.previous = node.next = null;
+        node.linked = false;
+    }
+
+    /**
+     * Called for entries that have been evicted or removed. This method is
+     * invoked when a value is evicted to make space, removed by a call to
+     * {@link #remove}, or replaced by a call to {@link #put}. The default
+     * implementation does nothing.
+     *
+     * <p>The method is called without holding the eviction lock: other threads may
+     * access the cache while this method is executing.
+     *
+     * @param evicted true if the entry is being removed to make space, false
+     *     if the removal was caused by a {@link #put} or {@link #remove}.
+     * @param newValue the new value for {@code key}, if it exists. If non-null,
+     *     this removal was caused by a {@link #put} or a {@link #get}. Otherwise, it was caused by
+     *     an eviction or a {@link #remove}.
+     */
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {}
+
+    /**
+     * Called after a cache miss to compute a value for the corresponding key.
+     * Returns the computed value or null if no value can be computed. The
+     * default implementation returns null.
+     *
+     * <p>The method is called without holding the eviction lock: other threads may
+     * access the cache while this method is executing.
+     *
+     * <p>If a value for {@code key} exists in the cache when this method
+     * returns, the created value will be released with {@link #entryRemoved}
+     * and discarded. This can occur when multiple threads request the same key
+     * at the same time (causing multiple values to be created), or when one
+     * thread calls {@link #put} while another is creating a value for the same
+     * key.
+     */
+    protected V create(K key) {
+        return null;
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the size of the entry for {@code key} and {@code value} in
+     * user-defined units.  The default implementation returns 1 so that size
+     * is the number of entries and max size is the maximum number of entries.
+     *
+     * <p>An entry's size must not change while it is in the cache.
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    /**
+     * Clear the cache, calling {@link #entryRemoved} on each removed entry.
+     */
+    public final void evictAll() {
+        trimToSize(-1); // -1 will evict 0-sized elements
+    }
+
+    /**
+     * For caches that do not override {@link #sizeOf}, this returns the number
+     * of entries in the cache. For all other caches, this returns the sum of
+     * the sizes of the entries in this cache.
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * For caches that do not override {@link #sizeOf}, this returns the maximum
+     * number of entries in the cache. For all other caches, this returns the
+     * maximum sum of the sizes of the entries in this cache.
+     */
+    public final int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned a value that was
+     * already present in the cache.
+     */
+    public final long hitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned null or required a new
+     * value to be created.
+     */
+    public final long missCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of times {@link #create(Object)} returned a value.
+     */
+    public final long createCount() {
+        return createCount.sum();
+    }
+
+    /**
+     * Returns the number of times {@link #put} was called.
+     */
+    public final long putCount() {
+        return putCount.sum();
+    }
+
+    /**
+     * Returns the number of values that have been evicted.
+     */
+    public final long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Returns a copy of the current contents of the cache, ordered from least
+     * recently accessed to most recently accessed.
+     */
+    public final Map<K, V> snapshot() {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            Map<K, V> snapshot = new LinkedHashMap<>();
+            for (Node<K, V> node = head; node != null; node = node.next) {
+                snapshot.put(node.key, node.value);
+            }
+            return snapshot;
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        long hitCount = this.hitCount.sum();
+        long accesses = hitCount + missCount.sum();
+        long hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return getClass().getName() + "@" + Integer.toHexString(hashCode())
+                + '{' +
+                "maxSize=" + maxSize +
+                ", hits=" + hitCount +
+                ", misses=" + (accesses - hitCount) +
+                ", hitRate=" + hitPercent + '%' +
+                '}';
+    }
+
+}
@@ -0,0 +1,488 @@
+package unrefined.util.concurrent;
+
+import unrefined.context.Environment;
+import unrefined.util.NotInstantiableError;
+import unrefined.util.function.Functor;
+import unrefined.util.function.Slot;
+import unrefined.util.signal.Dispatcher;
+import unrefined.util.signal.Signal;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A shared pool for background work such as loading and decoding.
+ *
+ * <p>Tasks are queued by {@link Priority}, then in submission order, and run on a work-stealing
+ * {@link ForkJoinPool} sized to the available processors, or, with {@link #ofVirtualThreads}, each on
+ * its own virtual thread where the JVM supports them (Java 21+). A {@link Task} can be cancelled,
+ * chained with {@link Task#then}, and report its completion through a {@link Dispatcher}, e.g. onto
+ * the UI thread, with {@link Task#whenDone}. Each task measures the time it waited in the queue and
+ * the time it ran, and the worker sums them up.</p>
+ *
+ * <pre>{@code
+ * Worker.defaultInstance().submit(() -> Bitmap.read(file), Worker.Priority.HIGH)
+ *         .whenDone(task -> view.setBitmap(task.getNow()), Dispatcher.defaultInstance());
+ * }</pre>
+ *
+ * <p>The default instance reads its parallelism from the <code>unrefined.util.worker.parallelism</code>
+ * property, and uses virtual threads if <code>unrefined.util.worker.virtual</code> is true and they
+ * are supported.</p>
+ */
+public class Worker implements Executor {
+
+    public static final class Priority {
+        private Priority() {
+            throw new NotInstantiableError(Priority.class);
+        }
+        public static final int MIN = 1;
+        public static final int LOW = 3;
+        public static final int NORMAL = 5;
+        public static final int HIGH = 7;
+        public static final int MAX = 10;
+        public static boolean isValid(int priority) {
+            return priority >= MIN && priority <= MAX;
+        }
+        public static int checkValid(int priority) {
+            if (priority < MIN || priority > MAX) throw new IllegalArgumentException("Illegal worker priority: " + priority);
+            else return priority;
+        }
+    }
+
+    private static volatile Worker DEFAULT_INSTANCE;
+    private static final Object DEFAULT_INSTANCE_LOCK = new Object();
+    public static Worker defaultInstance() {
+        if (DEFAULT_INSTANCE == null) synchronized (DEFAULT_INSTANCE_LOCK) {
+            if (DEFAULT_INSTANCE == null) {
+                Environment properties = Environment.properties();
+                if (properties.parseBooleanProperty("unrefined.util.worker.virtual") && isVirtualThreadsSupported())
+                    DEFAULT_INSTANCE = ofVirtualThreads("Worker");
+                else DEFAULT_INSTANCE = new Worker("Worker",
+                        properties.parseIntProperty("unrefined.util.worker.parallelism", Runtime.getRuntime().availableProcessors()));
+            }
+        }
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Returns true if the JVM supports virtual threads.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return VirtualThreads.FACTORY != null;
+    }
+
+    private static final class VirtualThreads {
+        private static final Method FACTORY;
+        static {
+            Method factory;
+            try {
+                factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            }
+            catch (NoSuchMethodException | SecurityException e) {
+                factory = null;
+            }
+            FACTORY = factory;
+        }
+        private static ExecutorService newExecutor() {
+            try {
+                return (ExecutorService) FACTORY.invoke(null);
+            }
+            catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException("Virtual threads not available", e);
+            }
+        }
+    }
+
+    /**
+     * Creates a worker running each task on a new virtual thread. Priorities only order the tasks
+     * that are queued at the same time, since they are started as soon as they are submitted.
+     *
+     * @throws UnsupportedOperationException if the JVM does not support virtual threads
+     */
+    public static Worker ofVirtualThreads(String name) {
+        if (!isVirtualThreadsSupported()) throw new UnsupportedOperationException("Virtual threads not supported");
+        return new Worker(name, VirtualThreads.newExecutor());
+    }
+
+    private final String name;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final PriorityBlockingQueue<Task<?>> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Runnable runNext = this::runNext;
+
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+
+    /**
+     * Creates a worker with a work-stealing pool of the specified number of daemon threads.
+     */
+    public Worker(String name, int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism <= 0");
+        this.name = Objects.requireNonNull(name);
+        this.parallelism = parallelism;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, true);
+    }
+
+    private Worker(String name, ExecutorService executor) {
+        this.name = name;
+        this.parallelism = -1;
+        this.executor = executor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of threads of the pool, or -1 for a worker running on virtual threads.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Submits the task with {@link Priority#NORMAL} priority.
+     */
+    public <V> Task<V> submit(Callable<V> callable) {
+        return submit(callable, Priority.NORMAL);
+    }
+
+    public <V> Task<V> submit(Callable<V> callable, int priority) {
+        Task<V> task = new Task<>(this, Objects.requireNonNull(callable), Priority.checkValid(priority));
+        enqueue(task);
+        return task;
+    }
+
+    /**
+     * Submits the task with {@link Priority#NORMAL} priority.
+     */
+    public Task<Void> submit(Runnable runnable) {
+        return submit(runnable, Priority.NORMAL);
+    }
+
+    public Task<Void> submit(Runnable runnable, int priority) {
+        Objects.requireNonNull(runnable);
+        return submit(() -> {
+            runnable.run();
+            return null;
+        }, priority);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submit(command);
+    }
+
+    /**
+     * Queues the task. If the executor rejects it the task fails with the rejection, so it is never
+     * left pending in the queue.
+     */
+    private void enqueue(Task<?> task) {
+        task.sequence = nextSequence.getAndIncrement();
+        task.queueTime = System.nanoTime();
+        submittedCount.increment();
+        if (executor.isShutdown()) {
+            RejectedExecutionException e = new RejectedExecutionException(name + " has been shut down");
+            task.setException(e);
+            throw e;
+        }
+        queue.add(task);
+        try {
+            executor.execute(runNext);
+        }
+        catch (RejectedExecutionException e) {
+            if (queue.remove(task)) {
+                task.setException(e);
+                throw e;
+            }
+            // A runNext scheduled earlier took the task, so another queued task has no runNext left
+            Task<?> stranded = queue.poll();
+            if (stranded != null) stranded.setException(e);
+        }
+    }
+
+    private void runNext() {
+        Task<?> task = queue.poll();
+        if (task != null) task.run();
+    }
+
+    /**
+     * Stops accepting tasks. Queued tasks still run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Returns the number of tasks waiting to start.
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.sum();
+    }
+
+    /**
+     * Returns the total time tasks waited in the queue, in nanoseconds.
+     */
+    public long getTotalQueueNanos() {
+        return queueNanos.sum();
+    }
+
+    /**
+     * Returns the total time tasks ran, in nanoseconds.
+     */
+    public long getTotalRunNanos() {
+        return runNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Worker[name=%s,parallelism=%d,queued=%d,submitted=%d,completed=%d,failed=%d,cancelled=%d]",
+                name, parallelism, queue.size(), submittedCount.sum(), completedCount.sum(), failedCount.sum(), cancelledCount.sum());
+    }
+
+    /**
+     * A task submitted to a {@link Worker}.
+     */
+    public static final class Task<V> extends FutureTask<V> implements Comparable<Task<?>> {
+
+        private final Worker worker;
+        private final int priority;
+        private long sequence;
+        private long queueTime;
+        private volatile long startTime;
+        private volatile long endTime;
+        private volatile boolean failed;
+        private boolean done;
+        private List<Runnable> continuations;
+
+        private final Signal<Slot<Task<V>>> onDone = Signal.ofSlot();
+
+        private Task(Worker worker, Callable<V> callable, int priority) {
+            super(callable);
+            this.worker = worker;
+            this.priority = priority;
+        }
+
+        public Worker getWorker() {
+            return worker;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        /**
+         * Emitted once the task completed, failed or was cancelled. Slots connected after that are
+         * never actuated, see {@link #whenDone}.
+         */
+        public Signal<Slot<Task<V>>> onDone() {
+            return onDone;
+        }
+
+        /**
+         * Actuates the slot with this task through the dispatcher once the task is done, or right
+         * away if it already is.
+         *
+         * @param dispatcher the dispatcher to deliver through, null for the default one
+         * @return this task
+         */
+        public Task<V> whenDone(Slot<Task<V>> slot, Dispatcher dispatcher) {
+            synchronized (this) {
+                if (!done) {
+                    onDone.connect(slot, dispatcher);
+                    return this;
+                }
+            }
+            Signal<Slot<Task<V>>> signal = Signal.ofSlot();
+            signal.connect(slot, dispatcher);
+            signal.emit(this);
+            return this;
+        }
+
+        /**
+         * Returns a task that applies the function to the result of this task, submitted to the same
+         * worker with the same priority once this task completed. The returned task fails with the
+         * cause of this task if it failed, and is cancelled if this task is.
+         */
+        public <R> Task<R> then(Functor<? super V, ? extends R> function) {
+            return then(function, priority);
+        }
+
+        public <R> Task<R> then(Functor<? super V, ? extends R> function, int priority) {
+            Objects.requireNonNull(function);
+            Task<R> next = new Task<>(worker, () -> {
+                try {
+                    return function.apply(get());
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) throw (Exception) cause;
+                    else if (cause instanceof Error) throw (Error) cause;
+                    else throw e;
+                }
+            }, Priority.checkValid(priority));
+            Runnable continuation = () -> {
+                if (isCancelled()) next.cancel(false);
+                else {
+                    try {
+                        worker.enqueue(next);
+                    }
+                    catch (RejectedExecutionException e) {
+                        // next has already failed with the rejection
+                    }
+                }
+            };
+            synchronized (this) {
+                if (!done) {
+                    if (continuations == null) continuations = new ArrayList<>(1);
+                    continuations.add(continuation);
+                    return next;
+                }
+            }
+            continuation.run();
+            return next;
+        }
+
+        /**
+         * Returns the result if the task completed, or null if it is not done, failed or was cancelled.
+         */
+        public V getNow() {
+            if (!isDone() || isCancelled() || failed) return null;
+            try {
+                return get();
+            }
+            catch (InterruptedException | ExecutionException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Returns true if the task threw an exception.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+
+        /**
+         * Returns the time the task waited in the queue in nanoseconds, or -1 if it has not started.
+         */
+        public long getQueueNanos() {
+            long startTime = this.startTime;
+            return startTime == 0 ? -1 : startTime - queueTime;
+        }
+
+        /**
+         * Returns the time the task ran in nanoseconds, or -1 if it has not finished running.
+         */
+        public long getRunNanos() {
+            long startTime = this.startTime, endTime = this.endTime;
+            return startTime == 0 || endTime == 0 ? -1 : endTime - startTime;
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) return;
+            long startTime = System.nanoTime();
+            this.startTime = startTime;
+            worker.queueNanos.add(startTime - queueTime);
+            try {
+                super.run();
+            }
+            finally {
+                long endTime = System.nanoTime();
+                this.endTime = endTime;
+                worker.runNanos.add(endTime - startTime);
+            }
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            failed = true;
+            super.setException(t);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) worker.cancelledCount.increment();
+            else if (failed) worker.failedCount.increment();
+            else worker.completedCount.increment();
+            List<Runnable> continuations;
+            synchronized (this) {
+                done = true;
+                continuations = this.continuations;
+                this.continuations = null;
+            }
+            onDone.emit(this);
+            if (continuations != null) {
+                for (Runnable continuation : continuations) {
+                    continuation.run();
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            if (priority != other.priority) return Integer.compare(other.priority, priority);
+            else return Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public String toString() {
+            String state = isCancelled() ? "cancelled" : failed ? "failed" : isDone() ? "completed" : startTime != 0 ? "running" : "queued";
+            return String.format("Task[priority=%d,state=%s,queueNanos=%d,runNanos=%d]", priority, state, getQueueNanos(), getRunNanos());
+        }
+
+    }
+
+}
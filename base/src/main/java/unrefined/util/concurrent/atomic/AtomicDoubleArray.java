@@ -8,6 +8,8 @@
 
 package unrefined.util.concurrent.atomic;
 
+import unrefined.util.function.DoubleBiOperator;
+
 import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
@@ -235,6 +237,60 @@ public class AtomicDoubleArray implements java.io.Serializable {
         }
     }
 
+    /**
+     * Atomically updates the element at index {@code i} with the
+     * results of applying the given function to the current and given
+     * values, returning the previous value. The function should be
+     * side-effect-free, since it may be re-applied when attempted
+     * updates fail due to contention among threads.
+     *
+     * <p>Under heavy contention on the same elements, prefer a
+     * {@link DoubleArrayAccumulator}, which spreads the updates.
+     *
+     * @param i the index
+     * @param x the update value
+     * @param accumulatorFunction a side-effect-free function of two arguments
+     * @return the previous value
+     */
+    public final double getAndAccumulate(int i, double x, DoubleBiOperator accumulatorFunction) {
+        while (true) {
+            long current = array.get(i);
+            double currentVal = Double.longBitsToDouble(current);
+            double nextVal = accumulatorFunction.apply(currentVal, x);
+            long next = Double.doubleToRawLongBits(nextVal);
+            if (array.compareAndSet(i, current, next)) {
+                return currentVal;
+            }
+        }
+    }
+
+    /**
+     * Atomically updates the element at index {@code i} with the
+     * results of applying the given function to the current and given
+     * values, returning the updated value. The function should be
+     * side-effect-free, since it may be re-applied when attempted
+     * updates fail due to contention among threads.
+     *
+     * <p>Under heavy contention on the same elements, prefer a
+     * {@link DoubleArrayAccumulator}, which spreads the updates.
+     *
+     * @param i the index
+     * @param x the update value
+     * @param accumulatorFunction a side-effect-free function of two arguments
+     * @return the updated value
+     */
+    public final double accumulateAndGet(int i, double x, DoubleBiOperator accumulatorFunction) {
+        while (true) {
+            long current = array.get(i);
+            double currentVal = Double.longBitsToDouble(current);
+            double nextVal = accumulatorFunction.apply(currentVal, x);
+            long next = Double.doubleToRawLongBits(nextVal);
+            if (array.compareAndSet(i, current, next)) {
+                return nextVal;
+            }
+        }
+    }
+
     /**
      * Returns the String representation of the current values of array.
      * @return the String representation of the current values of array
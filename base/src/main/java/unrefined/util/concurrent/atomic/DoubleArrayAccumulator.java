@@ -0,0 +1,258 @@
+/*
+ * Originally written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ *
+ * Modified by Karstian Lee in order to support striped double array accumulation
+ */
+
+package unrefined.util.concurrent.atomic;
+
+import unrefined.util.function.DoubleBiOperator;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An array of running {@code double} values, each updated using a
+ * supplied function, as if by a {@link DoubleAccumulator} per element.
+ * It is the striped counterpart of
+ * {@link AtomicDoubleArray#accumulateAndGet}: updates first go to a base
+ * array, and when they are contended across threads, the threads move to
+ * additional rows of the array, selected by a per-thread hash code, so
+ * that they stop competing for the same elements. Rows are created on
+ * demand, up to the number of CPUs. Method {@link #get} combines the
+ * element across the rows.
+ *
+ * <p>This class is usually preferable to {@link AtomicDoubleArray} when
+ * multiple threads update common values that are used for purposes such
+ * as per-frame statistics that are frequently updated but less frequently
+ * read. Each row takes as much memory as the base array.
+ *
+ * <p>The supplied accumulator function should be side-effect-free,
+ * commutative and associative, see {@link DoubleAccumulator}.
+ *
+ * @author Doug Lea
+ * @author Karstian Lee
+ */
+public class DoubleArrayAccumulator {
+
+    private static final AtomicIntegerFieldUpdater<DoubleArrayAccumulator> ROWS_BUSY =
+            AtomicIntegerFieldUpdater.newUpdater(DoubleArrayAccumulator.class, "rowsBusy");
+
+    private final DoubleBiOperator function;
+    private final long identity;
+    private final AtomicLongArray base;
+
+    /** Table of rows. When non-null, size is a power of 2. */
+    private volatile AtomicLongArray[] rows;
+
+    /** Spinlock (locked via CAS) used when resizing and/or creating rows. */
+    private volatile int rowsBusy;
+
+    /**
+     * Creates a new instance of the given length using the given
+     * accumulator function and identity element, with all elements
+     * initially the identity.
+     *
+     * @param length the length of the array
+     * @param accumulatorFunction a side-effect-free function of two arguments
+     * @param identity identity (initial value) for the accumulator function
+     */
+    public DoubleArrayAccumulator(int length, DoubleBiOperator accumulatorFunction, double identity) {
+        this.function = Objects.requireNonNull(accumulatorFunction);
+        this.identity = Double.doubleToRawLongBits(identity);
+        this.base = newRow(length);
+    }
+
+    private AtomicLongArray newRow(int length) {
+        if (identity == 0) return new AtomicLongArray(length);
+        long[] values = new long[length];
+        Arrays.fill(values, identity);
+        return new AtomicLongArray(values);
+    }
+
+    private long combine(long a, double x) {
+        return Double.doubleToRawLongBits(function.apply(Double.longBitsToDouble(a), x));
+    }
+
+    /**
+     * Returns the length of the array.
+     *
+     * @return the length of the array
+     */
+    public final int length() {
+        return base.length();
+    }
+
+    /**
+     * Updates the element at index {@code i} with the given value.
+     *
+     * @param i the index
+     * @param x the value
+     */
+    public void accumulate(int i, double x) {
+        AtomicLongArray[] rs; AtomicLongArray row; long v, r; int m;
+        if ((rs = rows) != null || !((r = combine(v = base.get(i), x)) == v || base.compareAndSet(i, v, r))) {
+            boolean uncontended = true;
+            if (rs == null || (m = rs.length - 1) < 0 ||
+                    (row = rs[Striped.getProbe() & m]) == null ||
+                    !(uncontended = (r = combine(v = row.get(i), x)) == v || row.compareAndSet(i, v, r)))
+                accumulate(i, x, uncontended);
+        }
+    }
+
+    private void accumulate(int i, double x, boolean wasUncontended) {
+        int h = Striped.getProbe();
+        boolean collide = false;
+        for (;;) {
+            AtomicLongArray[] rs; AtomicLongArray row; int n; long v, r;
+            if ((rs = rows) != null && (n = rs.length) > 0) {
+                if ((row = rs[(n - 1) & h]) == null) {
+                    if (rowsBusy == 0 && ROWS_BUSY.compareAndSet(this, 0, 1)) {
+                        try {
+                            if (rows == rs && rs[(n - 1) & h] == null) rs[(n - 1) & h] = newRow(length());
+                        } finally {
+                            rowsBusy = 0;
+                        }
+                        continue;
+                    }
+                    collide = false;
+                }
+                else if (!wasUncontended)
+                    wasUncontended = true;
+                else if ((r = combine(v = row.get(i), x)) == v || row.compareAndSet(i, v, r))
+                    return;
+                else if (n >= Striped.NCPU || rows != rs)
+                    collide = false;
+                else if (!collide)
+                    collide = true;
+                else if (rowsBusy == 0 && ROWS_BUSY.compareAndSet(this, 0, 1)) {
+                    try {
+                        if (rows == rs) rows = Arrays.copyOf(rs, n << 1);
+                    } finally {
+                        rowsBusy = 0;
+                    }
+                    collide = false;
+                    continue;
+                }
+                h = Striped.advanceProbe(h);
+            }
+            else if (rowsBusy == 0 && rows == rs && ROWS_BUSY.compareAndSet(this, 0, 1)) {
+                try {
+                    if (rows == rs) {
+                        AtomicLongArray[] newRows = new AtomicLongArray[2];
+                        newRows[h & 1] = newRow(length());
+                        rows = newRows;
+                    }
+                } finally {
+                    rowsBusy = 0;
+                }
+            }
+            else if ((r = combine(v = base.get(i), x)) == v || base.compareAndSet(i, v, r))
+                return;
+        }
+    }
+
+    /**
+     * Returns the current value of the element at index {@code i}.
+     * The returned value is <em>NOT</em> an atomic snapshot; invocation
+     * in the absence of concurrent updates returns an accurate result,
+     * but concurrent updates that occur while the value is being
+     * calculated might not be incorporated.
+     *
+     * @param i the index
+     * @return the current value
+     */
+    public double get(int i) {
+        double result = Double.longBitsToDouble(base.get(i));
+        AtomicLongArray[] rs = rows;
+        if (rs != null) {
+            for (AtomicLongArray row : rs)
+                if (row != null)
+                    result = function.apply(result, Double.longBitsToDouble(row.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Equivalent in effect to {@link #get} followed by resetting the
+     * element at index {@code i} to the identity. If there are updates
+     * concurrent with this method, the returned value is <em>not</em>
+     * guaranteed to be the final value occurring before the reset.
+     *
+     * @param i the index
+     * @return the value before reset
+     */
+    public double getThenReset(int i) {
+        double result = Double.longBitsToDouble(base.getAndSet(i, identity));
+        AtomicLongArray[] rs = rows;
+        if (rs != null) {
+            for (AtomicLongArray row : rs)
+                if (row != null)
+                    result = function.apply(result, Double.longBitsToDouble(row.getAndSet(i, identity)));
+        }
+        return result;
+    }
+
+    /**
+     * Copies the current values of all elements to the specified array,
+     * see {@link #get}.
+     *
+     * @param dst the destination array, at least {@link #length} long
+     */
+    public void get(double[] dst) {
+        int length = length();
+        if (dst.length < length) throw new ArrayIndexOutOfBoundsException("dst.length < length()");
+        for (int i = 0; i < length; i ++) {
+            dst[i] = Double.longBitsToDouble(base.get(i));
+        }
+        AtomicLongArray[] rs = rows;
+        if (rs != null) {
+            for (AtomicLongArray row : rs) {
+                if (row != null) for (int i = 0; i < length; i ++) {
+                    dst[i] = function.apply(dst[i], Double.longBitsToDouble(row.get(i)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Resets all elements to the identity value. This method is only
+     * effective if there are no concurrent updates.
+     */
+    public void reset() {
+        int length = length();
+        for (int i = 0; i < length; i ++) {
+            base.set(i, identity);
+        }
+        AtomicLongArray[] rs = rows;
+        if (rs != null) {
+            for (AtomicLongArray row : rs) {
+                if (row != null) for (int i = 0; i < length; i ++) {
+                    row.set(i, identity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the String representation of the current values of array.
+     * @return the String representation of the current values of array
+     */
+    public String toString() {
+        int iMax = length() - 1;
+        if (iMax == -1) return "[]";
+
+        StringBuilder b = new StringBuilder();
+        b.append('[');
+        for (int i = 0; ; i ++) {
+            b.append(get(i));
+            if (i == iMax) return b.append(']').toString();
+            else b.append(',').append(' ');
+        }
+    }
+
+}
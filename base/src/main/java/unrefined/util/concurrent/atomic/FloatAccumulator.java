@@ -0,0 +1,242 @@
+/*
+ * Originally written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ *
+ * Modified by Karstian Lee in order to support float accumulation
+ */
+
+package unrefined.util.concurrent.atomic;
+
+import unrefined.util.function.FloatBiOperator;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One or more variables that together maintain a running {@code float}
+ * value updated using a supplied function.  When updates (method
+ * {@link #accumulate}) are contended across threads, the set of variables
+ * may grow dynamically to reduce contention.  Method {@link #get}
+ * (or, equivalently, {@link #floatValue}) returns the current value
+ * across the variables maintaining updates.
+ *
+ * <p>This class is usually preferable to {@link AtomicFloat} when
+ * multiple threads update a common value that is used for purposes such
+ * as summary statistics that are frequently updated but less frequently
+ * read.
+ *
+ * <p>The supplied accumulator function should be side-effect-free,
+ * since it may be re-applied when attempted updates fail due to
+ * contention among threads.  For predictable results, the accumulator
+ * function should be commutative and associative within the floating
+ * point tolerance required in usage contexts. The function is applied
+ * with an existing value (or identity) as one argument, and a given
+ * update as the other argument. Order of accumulation within or across
+ * threads is not guaranteed. Thus, this class may not be applicable if
+ * numerical stability is required, especially when combining values of
+ * substantially different orders of magnitude.
+ *
+ * <p>Class {@link FloatAdder} provides analogs of the functionality
+ * of this class for the common special case of maintaining sums.  The
+ * call {@code new FloatAdder()} is equivalent to {@code new
+ * FloatAccumulator((x, y) -> x + y, 0.0f)}.
+ *
+ * <p>This class extends {@link Number}, but does <em>not</em> define
+ * methods such as {@code equals}, {@code hashCode} and {@code
+ * compareTo} because instances are expected to be mutated, and so are
+ * not useful as collection keys.
+ *
+ * @author Doug Lea
+ * @author Karstian Lee
+ */
+public class FloatAccumulator extends Striped {
+
+    private static final long serialVersionUID = -7470917380219416553L;
+
+    private final FloatBiOperator function;
+
+    /**
+     * Creates a new instance using the given accumulator function
+     * and identity element.
+     * @param accumulatorFunction a side-effect-free function of two arguments
+     * @param identity identity (initial value) for the accumulator function
+     */
+    public FloatAccumulator(FloatBiOperator accumulatorFunction, float identity) {
+        super(bits(identity));
+        this.function = Objects.requireNonNull(accumulatorFunction);
+    }
+
+    private static long bits(float x) {
+        return Float.floatToRawIntBits(x) & 0xFFFFFFFFL;
+    }
+
+    private static float value(long bits) {
+        return Float.intBitsToFloat((int) bits);
+    }
+
+    @Override
+    final long combine(long a, long b) {
+        return bits(function.apply(value(a), value(b)));
+    }
+
+    /**
+     * Updates with the given value.
+     *
+     * @param x the value
+     */
+    public void accumulate(float x) {
+        update(bits(x));
+    }
+
+    /**
+     * Returns the current value.  The returned value is <em>NOT</em>
+     * an atomic snapshot; invocation in the absence of concurrent
+     * updates returns an accurate result, but concurrent updates that
+     * occur while the value is being calculated might not be
+     * incorporated.
+     *
+     * @return the current value
+     */
+    public float get() {
+        return value(combined());
+    }
+
+    /**
+     * Resets variables maintaining updates to the identity value.
+     * This method may be a useful alternative to creating a new
+     * updater, but is only effective if there are no concurrent
+     * updates.  Because this method is intrinsically racy, it should
+     * only be used when it is known that no threads are concurrently
+     * updating.
+     */
+    public void reset() {
+        resetAll();
+    }
+
+    /**
+     * Equivalent in effect to {@link #get} followed by {@link
+     * #reset}. This method may apply for example during quiescent
+     * points between multithreaded computations.  If there are
+     * updates concurrent with this method, the returned value is
+     * <em>not</em> guaranteed to be the final value occurring before
+     * the reset.
+     *
+     * @return the value before reset
+     */
+    public float getThenReset() {
+        return value(combinedThenReset());
+    }
+
+    /**
+     * Returns the String representation of the current value.
+     * @return the String representation of the current value
+     */
+    public String toString() {
+        return Float.toString(get());
+    }
+
+    /**
+     * Equivalent to {@link #get}.
+     *
+     * @return the current value
+     */
+    public float floatValue() {
+        return get();
+    }
+
+    /**
+     * Returns the {@linkplain #get current value} as a {@code double}
+     * after a widening primitive conversion.
+     */
+    public double doubleValue() {
+        return get();
+    }
+
+    /**
+     * Returns the {@linkplain #get current value} as a {@code long}
+     * after a narrowing primitive conversion.
+     */
+    public long longValue() {
+        return (long) get();
+    }
+
+    /**
+     * Returns the {@linkplain #get current value} as an {@code int}
+     * after a narrowing primitive conversion.
+     */
+    public int intValue() {
+        return (int) get();
+    }
+
+    /**
+     * Serialization proxy, used to avoid reference to the non-public
+     * Striped superclass in serialized forms. The accumulator function
+     * has to be serializable for the accumulator to be.
+     * @serial include
+     */
+    private static class SerializationProxy implements Serializable {
+        private static final long serialVersionUID = -2284738206394872913L;
+
+        /**
+         * The current value returned by get().
+         * @serial
+         */
+        private final float value;
+
+        /**
+         * The function used for updates.
+         * @serial
+         */
+        private final FloatBiOperator function;
+
+        /**
+         * The identity value, as raw bits.
+         * @serial
+         */
+        private final long identity;
+
+        SerializationProxy(float value, FloatBiOperator function, long identity) {
+            this.value = value;
+            this.function = function;
+            this.identity = identity;
+        }
+
+        /**
+         * Returns a {@code FloatAccumulator} object with initial state
+         * held by this proxy.
+         *
+         * @return a {@code FloatAccumulator} object with initial state
+         * held by this proxy
+         */
+        private Object readResolve() {
+            float d = value(identity);
+            FloatAccumulator a = new FloatAccumulator(function, d);
+            a.base = bits(value);
+            return a;
+        }
+    }
+
+    /**
+     * Returns a
+     * <a href="{@docRoot}/serialized-form.html#unrefined.util.concurrent.atomic.FloatAccumulator.SerializationProxy">
+     * SerializationProxy</a>
+     * representing the state of this instance.
+     *
+     * @return a {@link SerializationProxy}
+     * representing the state of this instance
+     */
+    private Object writeReplace() {
+        return new SerializationProxy(get(), function, identity);
+    }
+
+    /**
+     * @param s the stream
+     * @throws java.io.InvalidObjectException always
+     */
+    private void readObject(ObjectInputStream s) throws InvalidObjectException {
+        throw new InvalidObjectException("Proxy required");
+    }
+}
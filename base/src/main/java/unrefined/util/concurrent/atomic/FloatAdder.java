@@ -0,0 +1,220 @@
+/*
+ * Originally written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ *
+ * Modified by Karstian Lee in order to support float sums
+ */
+
+package unrefined.util.concurrent.atomic;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * One or more variables that together maintain an initially zero
+ * {@code float} sum.  When updates (method {@link #add}) are
+ * contended across threads, the set of variables may grow dynamically
+ * to reduce contention.  Method {@link #sum} (or, equivalently {@link
+ * #floatValue}) returns the current total combined across the
+ * variables maintaining the sum.  The order of accumulation within or
+ * across threads is not guaranteed. Thus, this class may not be
+ * applicable if numerical stability is required, especially when
+ * combining values of substantially different orders of magnitude.
+ *
+ * <p>This class is usually preferable to {@link AtomicFloat} when
+ * multiple threads update a common value that is used for purposes such
+ * as summary statistics that are frequently updated but less frequently
+ * read.
+ *
+ * <p>This class extends {@link Number}, but does <em>not</em> define
+ * methods such as {@code equals}, {@code hashCode} and {@code
+ * compareTo} because instances are expected to be mutated, and so are
+ * not useful as collection keys.
+ *
+ * @author Doug Lea
+ * @author Karstian Lee
+ */
+public class FloatAdder extends Striped {
+
+    private static final long serialVersionUID = 3587012408741364961L;
+
+    /**
+     * Creates a new adder with initial sum of zero.
+     */
+    public FloatAdder() {
+        super(0L);
+    }
+
+    private static long bits(float x) {
+        return Float.floatToRawIntBits(x) & 0xFFFFFFFFL;
+    }
+
+    private static float value(long bits) {
+        return Float.intBitsToFloat((int) bits);
+    }
+
+    @Override
+    final long combine(long a, long b) {
+        return bits(value(a) + value(b));
+    }
+
+    /**
+     * Adds the given value.
+     *
+     * @param x the value to add
+     */
+    public void add(float x) {
+        update(bits(x));
+    }
+
+    /**
+     * Equivalent to {@code add(1.0f)}.
+     */
+    public void increment() {
+        add(1.0f);
+    }
+
+    /**
+     * Equivalent to {@code add(-1.0f)}.
+     */
+    public void decrement() {
+        add(-1.0f);
+    }
+
+    /**
+     * Returns the current sum.  The returned value is <em>NOT</em> an
+     * atomic snapshot; invocation in the absence of concurrent
+     * updates returns an accurate result, but concurrent updates that
+     * occur while the sum is being calculated might not be
+     * incorporated.  Also, because floating-point arithmetic is not
+     * strictly associative, the returned result need not be identical
+     * to the value that would be obtained in a sequential series of
+     * updates to a single variable.
+     *
+     * @return the sum
+     */
+    public float sum() {
+        return value(combined());
+    }
+
+    /**
+     * Resets variables maintaining the sum to zero.  This method may
+     * be a useful alternative to creating a new adder, but is only
+     * effective if there are no concurrent updates.  Because this
+     * method is intrinsically racy, it should only be used when it is
+     * known that no threads are concurrently updating.
+     */
+    public void reset() {
+        resetAll();
+    }
+
+    /**
+     * Equivalent in effect to {@link #sum} followed by {@link
+     * #reset}. This method may apply for example during quiescent
+     * points between multithreaded computations.  If there are
+     * updates concurrent with this method, the returned value is
+     * <em>not</em> guaranteed to be the final value occurring before
+     * the reset.
+     *
+     * @return the sum
+     */
+    public float sumThenReset() {
+        return value(combinedThenReset());
+    }
+
+    /**
+     * Returns the String representation of the {@link #sum}.
+     * @return the String representation of the {@link #sum}
+     */
+    public String toString() {
+        return Float.toString(sum());
+    }
+
+    /**
+     * Equivalent to {@link #sum}.
+     *
+     * @return the sum
+     */
+    public float floatValue() {
+        return sum();
+    }
+
+    /**
+     * Returns the {@link #sum} as a {@code double} after a
+     * widening primitive conversion.
+     */
+    public double doubleValue() {
+        return sum();
+    }
+
+    /**
+     * Returns the {@link #sum} as a {@code long} after a
+     * narrowing primitive conversion.
+     */
+    public long longValue() {
+        return (long) sum();
+    }
+
+    /**
+     * Returns the {@link #sum} as an {@code int} after a
+     * narrowing primitive conversion.
+     */
+    public int intValue() {
+        return (int) sum();
+    }
+
+    /**
+     * Serialization proxy, used to avoid reference to the non-public
+     * Striped superclass in serialized forms.
+     * @serial include
+     */
+    private static class SerializationProxy implements Serializable {
+        private static final long serialVersionUID = 7249069246863182397L;
+
+        /**
+         * The current value returned by sum().
+         * @serial
+         */
+        private final float value;
+
+        SerializationProxy(FloatAdder a) {
+            value = a.sum();
+        }
+
+        /**
+         * Returns a {@code FloatAdder} object with initial state
+         * held by this proxy.
+         *
+         * @return a {@code FloatAdder} object with initial state
+         * held by this proxy
+         */
+        private Object readResolve() {
+            FloatAdder a = new FloatAdder();
+            a.base = bits(value);
+            return a;
+        }
+    }
+
+    /**
+     * Returns a
+     * <a href="{@docRoot}/serialized-form.html#unrefined.util.concurrent.atomic.FloatAdder.SerializationProxy">
+     * SerializationProxy</a>
+     * representing the state of this instance.
+     *
+     * @return a {@link SerializationProxy}
+     * representing the state of this instance
+     */
+    private Object writeReplace() {
+        return new SerializationProxy(this);
+    }
+
+    /**
+     * @param s the stream
+     * @throws java.io.InvalidObjectException always
+     */
+    private void readObject(ObjectInputStream s) throws InvalidObjectException {
+        throw new InvalidObjectException("Proxy required");
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Originally written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ *
+ * Modified by Karstian Lee in order to support float and double accumulation
+ * with arbitrary functions, without access to the thread probe
+ */
+
+package unrefined.util.concurrent.atomic;
+
+import unrefined.util.ProducerThreadLocal;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A package-local class holding common representation and mechanics
+ * for classes supporting dynamic striping on 64bit values.
+ *
+ * <p>This class maintains a lazily-initialized table of atomically
+ * updated variables, plus an extra "base" field. The table size
+ * is a power of two. Indexing uses masked per-thread hash codes.
+ *
+ * <p>Updates first try the base field. When a CAS on it fails, the
+ * thread moves to the table cell its hash code selects, creating the
+ * table and the cell on demand. A thread that keeps colliding on a
+ * cell rehashes, and doubles the table while it is smaller than the
+ * number of CPUs. Cells are padded to reduce false sharing.
+ *
+ * <p>Values are stored as raw bits, subclasses define how bits are
+ * combined with {@link #combine} and the identity of the combination.
+ *
+ * @author Doug Lea
+ * @author Karstian Lee
+ */
+abstract class Striped extends Number {
+
+    private static final long serialVersionUID = 6305264613488367427L;
+
+    /** Number of CPUS, to place bound on table size */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    static class CellLeftPadding {
+        long p0, p1, p2, p3, p4, p5, p6;
+    }
+
+    static class CellValue extends CellLeftPadding {
+        volatile long value;
+    }
+
+    /**
+     * Padded variant of AtomicLong. Subclassing keeps the padding fields
+     * on both sides of the value regardless of the field layout of the VM.
+     */
+    static final class Cell extends CellValue {
+        long q0, q1, q2, q3, q4, q5, q6;
+        private static final AtomicLongFieldUpdater<CellValue> VALUE =
+                AtomicLongFieldUpdater.newUpdater(CellValue.class, "value");
+        Cell(long x) {
+            value = x;
+        }
+        boolean cas(long cmp, long val) {
+            return VALUE.compareAndSet(this, cmp, val);
+        }
+    }
+
+    private static final AtomicLongFieldUpdater<Striped> BASE =
+            AtomicLongFieldUpdater.newUpdater(Striped.class, "base");
+    private static final AtomicIntegerFieldUpdater<Striped> CELLS_BUSY =
+            AtomicIntegerFieldUpdater.newUpdater(Striped.class, "cellsBusy");
+
+    /**
+     * Per-thread hash codes. The JDK classes use a hidden field of
+     * Thread, which is only reached on contention, as is this one.
+     */
+    private static final ThreadLocal<int[]> PROBE = new ProducerThreadLocal<>(() -> {
+        int probe = ThreadLocalRandom.current().nextInt();
+        return new int[] { probe == 0 ? 1 : probe };
+    });
+
+    /** Table of cells. When non-null, size is a power of 2. */
+    transient volatile Cell[] cells;
+
+    /** Base value, used mainly when there is no contention. */
+    transient volatile long base;
+
+    /** Spinlock (locked via CAS) used when resizing and/or creating Cells. */
+    transient volatile int cellsBusy;
+
+    final transient long identity;
+
+    Striped(long identity) {
+        this.identity = identity;
+        base = identity;
+    }
+
+    /**
+     * Returns the bits of the combination of the two values held as bits.
+     */
+    abstract long combine(long a, long b);
+
+    final boolean casBase(long cmp, long val) {
+        return BASE.compareAndSet(this, cmp, val);
+    }
+
+    final boolean casCellsBusy() {
+        return CELLS_BUSY.compareAndSet(this, 0, 1);
+    }
+
+    static int getProbe() {
+        return PROBE.get()[0];
+    }
+
+    /**
+     * Pseudo-randomly advances and records the given probe value for the
+     * given thread.
+     */
+    static int advanceProbe(int probe) {
+        probe ^= probe << 13;   // xorshift
+        probe ^= probe >>> 17;
+        probe ^= probe << 5;
+        PROBE.get()[0] = probe;
+        return probe;
+    }
+
+    /**
+     * Combines {@code x} into the value, trying the base field, then the
+     * cell of the calling thread, before falling back to the slow path.
+     */
+    final void update(long x) {
+        Cell[] cs; long b, v, r; int m; Cell c;
+        if ((cs = cells) != null || !casBase(b = base, combine(b, x))) {
+            boolean uncontended = true;
+            if (cs == null || (m = cs.length - 1) < 0 ||
+                    (c = cs[getProbe() & m]) == null ||
+                    !(uncontended = (r = combine(v = c.value, x)) == v || c.cas(v, r)))
+                accumulate(x, uncontended);
+        }
+    }
+
+    /**
+     * Handles cases of updates involving initialization, resizing,
+     * creating new Cells, and/or contention.
+     *
+     * @param x the value
+     * @param wasUncontended false if CAS failed before call
+     */
+    private void accumulate(long x, boolean wasUncontended) {
+        int h = getProbe();
+        boolean collide = false;                // True if last slot nonempty
+        done: for (;;) {
+            Cell[] cs; Cell c; int n; long v;
+            if ((cs = cells) != null && (n = cs.length) > 0) {
+                if ((c = cs[(n - 1) & h]) == null) {
+                    if (cellsBusy == 0) {       // Try to attach new Cell
+                        Cell r = new Cell(combine(identity, x));
+                        if (cellsBusy == 0 && casCellsBusy()) {
+                            try {               // Recheck under lock
+                                Cell[] rs; int m, j;
+                                if ((rs = cells) != null &&
+                                        (m = rs.length) > 0 &&
+                                        rs[j = (m - 1) & h] == null) {
+                                    rs[j] = r;
+                                    break done;
+                                }
+                            } finally {
+                                cellsBusy = 0;
+                            }
+                            continue;           // Slot is now non-empty
+                        }
+                    }
+                    collide = false;
+                }
+                else if (!wasUncontended)       // CAS already known to fail
+                    wasUncontended = true;      // Continue after rehash
+                else if (c.cas(v = c.value, combine(v, x)))
+                    break;
+                else if (n >= NCPU || cells != cs)
+                    collide = false;            // At max size or stale
+                else if (!collide)
+                    collide = true;
+                else if (cellsBusy == 0 && casCellsBusy()) {
+                    try {
+                        if (cells == cs)        // Expand table unless stale
+                            cells = Arrays.copyOf(cs, n << 1);
+                    } finally {
+                        cellsBusy = 0;
+                    }
+                    collide = false;
+                    continue;                   // Retry with expanded table
+                }
+                h = advanceProbe(h);
+            }
+            else if (cellsBusy == 0 && cells == cs && casCellsBusy()) {
+                try {                           // Initialize table
+                    if (cells == cs) {
+                        Cell[] rs = new Cell[2];
+                        rs[h & 1] = new Cell(combine(identity, x));
+                        cells = rs;
+                        break done;
+                    }
+                } finally {
+                    cellsBusy = 0;
+                }
+            }
+            // Fall back on using base
+            else if (casBase(v = base, combine(v, x)))
+                break done;
+        }
+    }
+
+    /**
+     * Returns the bits of the combination of the base and all cells. The
+     * returned value is NOT an atomic snapshot; invocation in the absence
+     * of concurrent updates returns an accurate result, but concurrent
+     * updates that occur while the value is being calculated might not be
+     * incorporated.
+     */
+    final long combined() {
+        Cell[] cs = cells;
+        long result = base;
+        if (cs != null) {
+            for (Cell c : cs)
+                if (c != null)
+                    result = combine(result, c.value);
+        }
+        return result;
+    }
+
+    /**
+     * Resets the base and all cells to the identity. Only effective if
+     * there are no concurrent updates.
+     */
+    final void resetAll() {
+        Cell[] cs = cells;
+        base = identity;
+        if (cs != null) {
+            for (Cell c : cs)
+                if (c != null)
+                    c.value = identity;
+        }
+    }
+
+    /**
+     * Equivalent in effect to {@link #combined} followed by {@link #resetAll}.
+     */
+    final long combinedThenReset() {
+        Cell[] cs = cells;
+        long result = BASE.getAndSet(this, identity);
+        if (cs != null) {
+            for (Cell c : cs) {
+                if (c != null) {
+                    long v = Cell.VALUE.getAndSet(c, identity);
+                    result = combine(result, v);
+                }
+            }
+        }
+        return result;
+    }
+
+}
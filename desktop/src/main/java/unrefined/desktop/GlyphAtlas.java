@@ -0,0 +1,422 @@
+package unrefined.desktop;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextAttribute;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An atlas of the glyphs of a {@link Font} at a given size, rasterized once with anti-aliased alpha, then
+ * drawn by blitting their cells with the text color instead of shaping and filling their outlines on every call.
+ *
+ * <p>Only simple text is supported: one glyph per char, no kerning, ligatures, underline, strikethrough,
+ * font transform or right-to-left run, and no script needing shaping such as Arabic or Devanagari.
+ * {@link #drawText} returns false for anything else, for the caller to fall back to a {@link java.awt.font.TextLayout}.
+ * Glyphs are placed at whole pixels, so the atlas suits texts drawn with a translation-only transform.</p>
+ *
+ * <p>The atlas keeps an alpha mask of its glyphs, and a tinted copy of the used part of it for each of the last
+ * few colors drawn. The tinted copies of all atlases share a budget of 16 MB, of which one atlas takes at most a
+ * quarter; text whose color does not fit is not drawn. Atlases are thread-safe.</p>
+ */
+public final class GlyphAtlas {
+
+    private static final int INITIAL_SIZE = 256;
+    private static final int MAX_SIZE = 4096;
+    private static final int MAX_TINTS = 8;
+    private static final int MIN_TINT_HEIGHT = 32;
+    private static final long MAX_TINT_PIXELS = 1L << 22;
+    private static final long MAX_ATLAS_TINT_PIXELS = MAX_TINT_PIXELS >> 2;
+    private static final int PADDING = 1;
+
+    // Pixels of the tinted copies of all atlases
+    private static final AtomicLong TINT_PIXELS = new AtomicLong();
+
+    private static final Map<Key, GlyphAtlas> ATLASES = new LinkedHashMap<Key, GlyphAtlas>(16, 0.75f, true) {
+        private static final long serialVersionUID = 7328160587049237616L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, GlyphAtlas> eldest) {
+            if (size() <= 32) return false;
+            eldest.getValue().dropTints();
+            return true;
+        }
+    };
+
+    private static final class Key {
+        private final Font font;
+        private final boolean antiAlias;
+        private final boolean fractionalMetrics;
+        Key(Font font, boolean antiAlias, boolean fractionalMetrics) {
+            this.font = font;
+            this.antiAlias = antiAlias;
+            this.fractionalMetrics = fractionalMetrics;
+        }
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) return true;
+            if (!(object instanceof Key)) return false;
+            Key key = (Key) object;
+            return antiAlias == key.antiAlias && fractionalMetrics == key.fractionalMetrics && font.equals(key.font);
+        }
+        @Override
+        public int hashCode() {
+            return (font.hashCode() * 31 + (antiAlias ? 1 : 0)) * 31 + (fractionalMetrics ? 1 : 0);
+        }
+    }
+
+    /**
+     * Returns the atlas of the font for the specified render context, or null if the font is not supported,
+     * see {@link #isSupported(Font)}. The last 32 atlases used are kept.
+     */
+    public static GlyphAtlas of(Font font, FontRenderContext fontRenderContext) {
+        if (!isSupported(font)) return null;
+        Key key = new Key(font, fontRenderContext.isAntiAliased(), fontRenderContext.usesFractionalMetrics());
+        synchronized (ATLASES) {
+            GlyphAtlas atlas = ATLASES.get(key);
+            if (atlas == null) {
+                atlas = new GlyphAtlas(font, key.antiAlias, key.fractionalMetrics);
+                ATLASES.put(key, atlas);
+            }
+            return atlas;
+        }
+    }
+
+    /**
+     * Drops all atlases.
+     */
+    public static void clearAll() {
+        synchronized (ATLASES) {
+            for (GlyphAtlas atlas : ATLASES.values()) {
+                atlas.dropTints();
+            }
+            ATLASES.clear();
+        }
+    }
+
+    /**
+     * Returns whether the font draws one glyph per char, left to right, without decoration.
+     */
+    public static boolean isSupported(Font font) {
+        if (font.hasLayoutAttributes() || font.isTransformed()) return false;
+        Map<TextAttribute, ?> attributes = font.getAttributes();
+        Object underline = attributes.get(TextAttribute.UNDERLINE);
+        if (underline != null && !TextHints.UNDERLINE_OFF.equals(underline)) return false;
+        if (Boolean.TRUE.equals(attributes.get(TextAttribute.STRIKETHROUGH))) return false;
+        return !TextAttribute.RUN_DIRECTION_RTL.equals(attributes.get(TextAttribute.RUN_DIRECTION));
+    }
+
+    /**
+     * Returns whether the char is drawn by a single glyph, unaffected by its neighbours.
+     */
+    public static boolean isSimple(char c) {
+        if (c < 0x20) return false;                         // Controls
+        if (c < 0x0300) return c < 0x7F || c >= 0xA0;       // Latin, IPA
+        if (c < 0x0370) return false;                       // Combining diacritical marks
+        if (c < 0x0590) return c < 0x0483 || c > 0x0489;    // Greek, Cyrillic, Armenian
+        if (c < 0x2000) return false;                       // Hebrew, Arabic, Indic...
+        if (c < 0x2C00) return c > 0x200F && (c < 0x2028 || c > 0x202E) && (c < 0x2060 || c > 0x206F)
+                && (c < 0x20D0 || c > 0x20FF);              // Punctuation, symbols, box drawing
+        if (c < 0x3000) return false;
+        if (c < 0xA000) return c < 0x302A || c > 0x302F && c != 0x3099 && c != 0x309A; // CJK, kana
+        if (c < 0xAC00) return false;
+        if (c < 0xD7A4) return true;                        // Hangul syllables
+        if (c < 0xFF00) return false;                       // Surrogates, private use, presentation forms
+        return c < 0xFFF0;                                  // Halfwidth and fullwidth forms
+    }
+
+    private final Font font;
+    private final FontRenderContext fontRenderContext;
+
+    // Glyph index by char, in pages of 256 chars: 0 unknown, -1 unsupported, else cell + 1
+    private final int[][] pages = new int[256][];
+
+    // Cells
+    private int[] cellX = new int[64], cellY = new int[64], cellWidth = new int[64], cellHeight = new int[64];
+    private int[] bearingX = new int[64], bearingY = new int[64];
+    private float[] advances = new float[64];
+    private int cellCount;
+
+    // Shelf packing
+    private BufferedImage mask;
+    private Graphics2D maskGraphics;
+    private int shelfX, shelfY, shelfHeight;
+
+    private static final class Tint {
+        private final BufferedImage image;
+        private final long pixels;
+        private int cellCount;
+        Tint(BufferedImage image) {
+            this.image = image;
+            this.pixels = (long) image.getWidth() * image.getHeight();
+        }
+    }
+    private final Map<Integer, Tint> tints = new LinkedHashMap<Integer, Tint>(MAX_TINTS * 2, 0.75f, true) {
+        private static final long serialVersionUID = -2941650392836437610L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Tint> eldest) {
+            if (size() <= MAX_TINTS) return false;
+            release(eldest.getValue());
+            return true;
+        }
+    };
+    private long tintPixels;
+
+    private int[] glyphs = new int[64];
+
+    private GlyphAtlas(Font font, boolean antiAlias, boolean fractionalMetrics) {
+        this.font = Objects.requireNonNull(font);
+        this.fontRenderContext = new FontRenderContext(null, antiAlias, fractionalMetrics);
+        setMask(new BufferedImage(INITIAL_SIZE, INITIAL_SIZE, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    private void setMask(BufferedImage mask) {
+        if (maskGraphics != null) maskGraphics.dispose();
+        this.mask = mask;
+        maskGraphics = mask.createGraphics();
+        maskGraphics.setComposite(AlphaComposite.Src);
+        maskGraphics.setColor(Color.WHITE);
+        maskGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, fontRenderContext.isAntiAliased() ?
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        maskGraphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fontRenderContext.usesFractionalMetrics() ?
+                RenderingHints.VALUE_FRACTIONALMETRICS_ON : RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+        maskGraphics.setFont(font);
+    }
+
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * Draws the specified range of the text at the baseline origin, with the color of the graphics context.
+     * The text is moved left by {@code alignment} times its advance: 0 to start at x, 0.5 to be centered on x,
+     * 1 to end at x.
+     *
+     * @return false if nothing was drawn because the text is not simple, the atlas is full or the color
+     * does not fit the tint budget
+     */
+    public synchronized boolean drawText(Graphics2D graphics2D, CharSequence text, int start, int end,
+                                         float x, float y, float alignment) {
+        int length = end - start;
+        if (glyphs.length < length) glyphs = new int[Math.max(length, glyphs.length << 1)];
+        int[] glyphs = this.glyphs;
+        float advance = 0;
+        for (int i = 0; i < length; i ++) {
+            int glyph = glyph(text.charAt(start + i));
+            if (glyph < 0) return false;
+            glyphs[i] = glyph;
+            advance += advances[glyph];
+        }
+        Color color = graphics2D.getColor();
+        Tint tint = tint(color.getRGB());
+        if (tint == null) return false;
+        BufferedImage image = tint.image;
+        float penX = x - advance * alignment;
+        int baseline = Math.round(y);
+        for (int i = 0; i < length; i ++) {
+            int glyph = glyphs[i];
+            int width = cellWidth[glyph];
+            if (width != 0) {
+                int dx = Math.round(penX) + bearingX[glyph];
+                int dy = baseline + bearingY[glyph];
+                int sx = cellX[glyph], sy = cellY[glyph];
+                int height = cellHeight[glyph];
+                graphics2D.drawImage(image, dx, dy, dx + width, dy + height, sx, sy, sx + width, sy + height, null);
+            }
+            penX += advances[glyph];
+        }
+        return true;
+    }
+
+    /**
+     * Returns the advance of the specified range of the text, or -1 if it is not simple.
+     */
+    public synchronized float measureText(CharSequence text, int start, int end) {
+        float advance = 0;
+        for (int i = start; i < end; i ++) {
+            int glyph = glyph(text.charAt(i));
+            if (glyph < 0) return -1;
+            advance += advances[glyph];
+        }
+        return advance;
+    }
+
+    private int glyph(char c) {
+        int[] page = pages[c >>> 8];
+        if (page == null) pages[c >>> 8] = page = new int[256];
+        int index = page[c & 0xFF];
+        if (index == 0) {
+            index = isSimple(c) && font.canDisplay(c) ? rasterize(c) + 1 : -1;
+            // A full atlas is not remembered, later chars may still fit after clear()
+            if (index != 0) page[c & 0xFF] = index;
+            else return -1;
+        }
+        return index - 1;
+    }
+
+    // Returns the new cell, -1 if the atlas is full
+    private int rasterize(char c) {
+        GlyphVector glyphVector = font.createGlyphVector(fontRenderContext, new char[] {c});
+        Rectangle bounds = glyphVector.getGlyphPixelBounds(0, fontRenderContext, 0, 0);
+        float advance = glyphVector.getGlyphMetrics(0).getAdvanceX();
+        int x = 0, y = 0;
+        if (!bounds.isEmpty()) {
+            int width = bounds.width + PADDING, height = bounds.height + PADDING;
+            if (shelfX + width > mask.getWidth()) {
+                shelfX = 0;
+                shelfY += shelfHeight;
+                shelfHeight = 0;
+            }
+            while (shelfY + height > mask.getHeight() || width > mask.getWidth()) {
+                if (!grow()) return -1;
+            }
+            x = shelfX;
+            y = shelfY;
+            shelfX += width;
+            shelfHeight = Math.max(shelfHeight, height);
+            maskGraphics.drawGlyphVector(glyphVector, x - bounds.x, y - bounds.y);
+        }
+        int cell = cellCount ++;
+        if (cell == cellX.length) {
+            int capacity = cell << 1;
+            cellX = Arrays.copyOf(cellX, capacity);
+            cellY = Arrays.copyOf(cellY, capacity);
+            cellWidth = Arrays.copyOf(cellWidth, capacity);
+            cellHeight = Arrays.copyOf(cellHeight, capacity);
+            bearingX = Arrays.copyOf(bearingX, capacity);
+            bearingY = Arrays.copyOf(bearingY, capacity);
+            advances = Arrays.copyOf(advances, capacity);
+        }
+        cellX[cell] = x;
+        cellY[cell] = y;
+        cellWidth[cell] = bounds.isEmpty() ? 0 : bounds.width;
+        cellHeight[cell] = bounds.isEmpty() ? 0 : bounds.height;
+        bearingX[cell] = bounds.x;
+        bearingY[cell] = bounds.y;
+        advances[cell] = advance;
+        return cell;
+    }
+
+    // Doubles the height, then the width, of the atlas, dropping the tints
+    private boolean grow() {
+        int width = mask.getWidth(), height = mask.getHeight();
+        if (height < width) height <<= 1;
+        else if (width < MAX_SIZE) width <<= 1;
+        else return false;
+        BufferedImage grown = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        grown.setData(mask.getRaster());
+        setMask(grown);
+        dropTints();
+        return true;
+    }
+
+    // Returns the tinted copy of the used rows of the atlas for the color, tinting the cells added since it was
+    // last used, or null if it does not fit the budgets even after dropping the other tints of this atlas
+    private Tint tint(int argb) {
+        int used = shelfY + shelfHeight;
+        Tint tint = tints.get(argb);
+        if (tint != null && tint.image.getHeight() < used) {
+            tints.remove(argb);
+            release(tint);
+            tint = null;
+        }
+        if (tint == null) {
+            int width = mask.getWidth();
+            int height = used <= MIN_TINT_HEIGHT ? MIN_TINT_HEIGHT : Integer.highestOneBit(used - 1) << 1;
+            height = Math.min(height, mask.getHeight());
+            long pixels = (long) width * height;
+            if (pixels > MAX_ATLAS_TINT_PIXELS) return null;
+            for (Iterator<Tint> iterator = tints.values().iterator(); iterator.hasNext()
+                    && (tintPixels + pixels > MAX_ATLAS_TINT_PIXELS || TINT_PIXELS.get() + pixels > MAX_TINT_PIXELS); ) {
+                release(iterator.next());
+                iterator.remove();
+            }
+            if (TINT_PIXELS.addAndGet(pixels) > MAX_TINT_PIXELS) {
+                TINT_PIXELS.addAndGet(-pixels);
+                return null;
+            }
+            tintPixels += pixels;
+            tint = new Tint(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE));
+            tints.put(argb, tint);
+        }
+        if (tint.cellCount < cellCount) {
+            int alpha = argb >>> 24, red = (argb >>> 16) & 0xFF, green = (argb >>> 8) & 0xFF, blue = argb & 0xFF;
+            int[] pixels = null;
+            for (int cell = tint.cellCount; cell < cellCount; cell ++) {
+                int width = cellWidth[cell], height = cellHeight[cell];
+                if (width == 0) continue;
+                int size = width * height;
+                if (pixels == null || pixels.length < size) pixels = new int[size];
+                mask.getRaster().getDataElements(cellX[cell], cellY[cell], width, height, pixels);
+                for (int i = 0; i < size; i ++) {
+                    int a = (pixels[i] >>> 24) * alpha / 255;
+                    pixels[i] = a << 24 | (red * a / 255) << 16 | (green * a / 255) << 8 | blue * a / 255;
+                }
+                tint.image.getRaster().setDataElements(cellX[cell], cellY[cell], width, height, pixels);
+            }
+            tint.cellCount = cellCount;
+        }
+        return tint;
+    }
+
+    // Gives the pixels of a tinted copy removed from the tints back to the budget
+    private void release(Tint tint) {
+        tintPixels -= tint.pixels;
+        TINT_PIXELS.addAndGet(-tint.pixels);
+    }
+
+    // Drops the tinted copies
+    private synchronized void dropTints() {
+        for (Tint tint : tints.values()) {
+            release(tint);
+        }
+        tints.clear();
+    }
+
+    /**
+     * Drops all glyphs, e.g. when the atlas is full.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < pages.length; i ++) {
+            pages[i] = null;
+        }
+        cellCount = 0;
+        shelfX = shelfY = shelfHeight = 0;
+        setMask(new BufferedImage(INITIAL_SIZE, INITIAL_SIZE, BufferedImage.TYPE_INT_ARGB));
+        dropTints();
+    }
+
+    /**
+     * Returns the number of glyphs in the atlas.
+     */
+    public synchronized int size() {
+        return cellCount;
+    }
+
+    public synchronized int getWidth() {
+        return mask.getWidth();
+    }
+
+    public synchronized int getHeight() {
+        return mask.getHeight();
+    }
+
+    @Override
+    public String toString() {
+        synchronized (this) {
+            return String.format("GlyphAtlas[font=%s,glyphs=%d,width=%d,height=%d,tints=%d]",
+                    font, cellCount, mask.getWidth(), mask.getHeight(), tints.size());
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package unrefined.desktop;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.text.AttributedString;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of {@link TextLayout}s, keyed by text, {@link Font} (which carries the text
+ * attributes) and {@link FontRenderContext}, so that text drawn every frame is shaped once.
+ *
+ * <p>Lookups are lock-free. When the cache grows past its capacity, one thread evicts entries with a
+ * CLOCK sweep: entries used since the previous sweep get a second chance, the others are dropped,
+ * until the cache is back to 7/8 of its capacity. Layouts are immutable and safe to share between
+ * threads.</p>
+ *
+ * <p>Texts longer than the maximum cached length are shaped on every call and not cached, so that
+ * a few large paragraphs do not pin memory.</p>
+ */
+public final class TextLayoutCache {
+
+    private static final class Key {
+        private final String text;
+        private final Font font;
+        private final FontRenderContext fontRenderContext;
+        private final int hash;
+        Key(String text, Font font, FontRenderContext fontRenderContext) {
+            this.text = text;
+            this.font = font;
+            this.fontRenderContext = fontRenderContext;
+            this.hash = (text.hashCode() * 31 + font.hashCode()) * 31 + fontRenderContext.hashCode();
+        }
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) return true;
+            if (!(object instanceof Key)) return false;
+            Key key = (Key) object;
+            return hash == key.hash && text.equals(key.text) && font.equals(key.font) &&
+                    fontRenderContext.equals(key.fontRenderContext);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final TextLayout textLayout;
+        private volatile boolean referenced;
+        Entry(TextLayout textLayout) {
+            this.textLayout = textLayout;
+        }
+    }
+
+    private final ConcurrentHashMap<Key, Entry> entries;
+    private final int capacity;
+    private final int maxTextLength;
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param capacity the maximum number of cached layouts
+     * @param maxTextLength the maximum length of the cached texts
+     */
+    public TextLayoutCache(int capacity, int maxTextLength) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity <= 0");
+        if (maxTextLength < 0) throw new IllegalArgumentException("maxTextLength < 0");
+        this.capacity = capacity;
+        this.maxTextLength = maxTextLength;
+        entries = new ConcurrentHashMap<>(Math.min(capacity, 256) * 2);
+    }
+
+    /**
+     * Returns the layout of the specified range of the text, shaping and caching it if needed.
+     * The range must not be empty.
+     */
+    public TextLayout getTextLayout(CharSequence text, int start, int end, Font font, FontRenderContext fontRenderContext) {
+        Objects.requireNonNull(font);
+        Objects.requireNonNull(fontRenderContext);
+        String string = text.subSequence(start, end).toString();
+        if (string.length() > maxTextLength) {
+            missCount.increment();
+            return newTextLayout(string, font, fontRenderContext);
+        }
+        Key key = new Key(string, font, fontRenderContext);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (!entry.referenced) entry.referenced = true;
+            hitCount.increment();
+            return entry.textLayout;
+        }
+        missCount.increment();
+        TextLayout textLayout = newTextLayout(string, font, fontRenderContext);
+        entries.putIfAbsent(key, new Entry(textLayout));
+        if (entries.size() > capacity) evict();
+        return textLayout;
+    }
+
+    private static TextLayout newTextLayout(String text, Font font, FontRenderContext fontRenderContext) {
+        return new TextLayout(new AttributedString(text, font.getAttributes()).getIterator(), fontRenderContext);
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) return;
+        try {
+            int target = capacity - (capacity >> 3);
+            while (entries.size() > target) {
+                Iterator<Entry> iterator = entries.values().iterator();
+                while (iterator.hasNext() && entries.size() > target) {
+                    Entry entry = iterator.next();
+                    if (entry.referenced) entry.referenced = false;
+                    else {
+                        iterator.remove();
+                        evictionCount.increment();
+                    }
+                }
+            }
+        }
+        finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Drops all cached layouts.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int maxTextLength() {
+        return maxTextLength;
+    }
+
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of layouts shaped, including those of texts too long to be cached.
+     */
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        long hits = hitCount.sum();
+        long accesses = hits + missCount.sum();
+        int hitPercent = accesses != 0 ? (int) (100 * hits / accesses) : 0;
+        return String.format("TextLayoutCache[size=%d,capacity=%d,hits=%d,misses=%d,evictions=%d,hitRate=%d%%]",
+                entries.size(), capacity, hits, missCount.sum(), evictionCount.sum(), hitPercent);
+    }
+
+}
@@ -2,10 +2,13 @@ package unrefined.runtime;
 
 import unrefined.context.Container;
 import unrefined.context.ContextListener;
+import unrefined.context.FrameClock;
 import unrefined.desktop.BitmapSupport;
 import unrefined.media.graphics.Bitmap;
 import unrefined.media.graphics.Graphics;
+import unrefined.media.graphics.Rectangle;
 
+import java.awt.BufferCapabilities;
 import java.awt.Canvas;
 import java.awt.EventQueue;
 import java.awt.Graphics2D;
@@ -16,6 +19,7 @@ import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 
 public class DesktopContext extends DesktopEmbeddedContext {
 
@@ -86,6 +90,11 @@ public class DesktopContext extends DesktopEmbeddedContext {
         component.onDispose = () -> {
             synchronized (graphicsLock) {
                 graphics = null;
+                if (buffer != null) {
+                    buffer.flush();
+                    buffer = null;
+                }
+                shownWidth = shownHeight = -1;
             }
             EventQueue.invokeLater(() -> {
                 ContextListener listener = getContextListener();
@@ -94,46 +103,180 @@ public class DesktopContext extends DesktopEmbeddedContext {
         };
     }
 
+    // Pending paint, guarded by dirtyLock
+    private final Object dirtyLock = new Object();
+    private boolean paintPending = false;
+    private boolean fullPaint = false;
+    private int dirtyLeft, dirtyTop, dirtyRight, dirtyBottom;
+    private boolean hasDirtyRegion = false;
+
+    // Contents of the surface, kept between partial paints when the buffer strategy does not keep them,
+    // guarded by graphicsLock
+    private VolatileImage buffer = null;
+    private boolean bufferValid = false;
+    // Size of the last frame shown, guarded by graphicsLock
+    private int shownWidth = -1, shownHeight = -1;
+
     @Override
     public void requestPaint() {
         if (graphics == null) return;
-        EventQueue.invokeLater(() -> {
-            synchronized (graphicsLock) {
-                if (graphics == null) return;
-                GraphicsComponent canvas = (GraphicsComponent) getCanvas();
-                BufferStrategy bufferStrategy = canvas.getBufferStrategy();
-                if (bufferStrategy == null) return;
-                // Render single frame
-                do {
-                    // The following loop ensures that the contents of the drawing buffer
-                    // are consistent in case the underlying surface was recreated
-                    do {
-                        // Get a new graphics context every time through the loop
-                        // to make sure the strategy is validated
-                        Graphics2D graphics2D = (Graphics2D) bufferStrategy.getDrawGraphics();
-
-                        // Render to graphics
-                        try {
-                            graphics.setGraphics2D(graphics2D);
-                            graphics.reset();
-                            ContextListener listener = getContextListener();
-                            if (listener != null) listener.onPaint(this, graphics, false);
-                        }
-                        finally { // Dispose the graphics
-                            graphics2D.dispose();
-                        }
-
-                        // Repeat the rendering if the drawing buffer contents
-                        // were restored
-                    } while (bufferStrategy.contentsRestored());
-
-                    // Display the buffer
-                    bufferStrategy.show();
-
-                    // Repeat the rendering if the drawing buffer was lost
-                } while (bufferStrategy.contentsLost());
+        synchronized (dirtyLock) {
+            fullPaint = true;
+            if (paintPending) return;
+            paintPending = true;
+        }
+        EventQueue.invokeLater(this::paint);
+    }
+
+    @Override
+    public void requestPaint(Rectangle dirty) {
+        if (graphics == null) return;
+        int left = dirty.getX(), top = dirty.getY();
+        int right = left + dirty.getWidth(), bottom = top + dirty.getHeight();
+        if (right <= left || bottom <= top) return;
+        synchronized (dirtyLock) {
+            if (hasDirtyRegion) {
+                dirtyLeft = Math.min(dirtyLeft, left);
+                dirtyTop = Math.min(dirtyTop, top);
+                dirtyRight = Math.max(dirtyRight, right);
+                dirtyBottom = Math.max(dirtyBottom, bottom);
             }
-        });
+            else {
+                hasDirtyRegion = true;
+                dirtyLeft = left;
+                dirtyTop = top;
+                dirtyRight = right;
+                dirtyBottom = bottom;
+            }
+            if (paintPending) return;
+            paintPending = true;
+        }
+        EventQueue.invokeLater(this::paint);
+    }
+
+    private void paint() {
+        synchronized (graphicsLock) {
+            java.awt.Rectangle dirtyRegion;
+            synchronized (dirtyLock) {
+                paintPending = false;
+                dirtyRegion = fullPaint || !hasDirtyRegion ? null :
+                        new java.awt.Rectangle(dirtyLeft, dirtyTop, dirtyRight - dirtyLeft, dirtyBottom - dirtyTop);
+                fullPaint = false;
+                hasDirtyRegion = false;
+            }
+            if (graphics == null) return;
+            GraphicsComponent canvas = (GraphicsComponent) getCanvas();
+            BufferStrategy bufferStrategy = canvas.getBufferStrategy();
+            if (bufferStrategy == null) return;
+            int width = canvas.getWidth(), height = canvas.getHeight();
+            if (width <= 0 || height <= 0) return;
+            // The strategy buffers are recreated on resize
+            if (width != shownWidth || height != shownHeight) dirtyRegion = null;
+            if (dirtyRegion != null) {
+                dirtyRegion = dirtyRegion.intersection(new java.awt.Rectangle(width, height));
+                if (dirtyRegion.isEmpty()) return;
+            }
+            float alpha = advanceFrameClock();
+            BufferCapabilities capabilities = bufferStrategy.getCapabilities();
+            BufferCapabilities.FlipContents flipContents = capabilities.getFlipContents();
+            if (dirtyRegion == null || !capabilities.isPageFlipping() || flipContents == BufferCapabilities.FlipContents.COPIED) {
+                // Render to the strategy, whose back buffer keeps the previous frame outside the dirty region
+                showFrame(bufferStrategy, dirtyRegion, alpha, width, height);
+                bufferValid = false;
+            }
+            else {
+                // After a flip the back buffer holds an older frame, if any, render the dirty region to the buffer
+                renderBuffer(canvas.getGraphicsConfiguration(), dirtyRegion, alpha, width, height);
+                showBuffer(bufferStrategy);
+            }
+            shownWidth = width;
+            shownHeight = height;
+        }
+    }
+
+    // Renders the region of a frame to the strategy and shows it, all the frame if the buffer was lost
+    private void showFrame(BufferStrategy bufferStrategy, java.awt.Rectangle dirtyRegion, float alpha, int width, int height) {
+        boolean lost;
+        do {
+            // The following loop ensures that the contents of the drawing buffer
+            // are consistent in case the underlying surface was recreated
+            boolean restored;
+            do {
+                // Get a new graphics context every time through the loop
+                // to make sure the strategy is validated
+                Graphics2D graphics2D = (Graphics2D) bufferStrategy.getDrawGraphics();
+                try {
+                    render(graphics2D, dirtyRegion, alpha, width, height);
+                }
+                finally {
+                    graphics2D.dispose();
+                }
+
+                // Repeat the rendering if the drawing buffer contents
+                // were restored
+                restored = bufferStrategy.contentsRestored();
+                if (restored) dirtyRegion = null;
+            } while (restored);
+
+            // Display the buffer
+            bufferStrategy.show();
+
+            // Repeat the rendering if the drawing buffer was lost
+            lost = bufferStrategy.contentsLost();
+            if (lost) dirtyRegion = null;
+        } while (lost);
+    }
+
+    // Renders the region of a frame to the buffer, all the frame if the buffer is new or was lost
+    private void renderBuffer(GraphicsConfiguration configuration, java.awt.Rectangle dirtyRegion, float alpha, int width, int height) {
+        if (buffer != null && (buffer.getWidth() != width || buffer.getHeight() != height)) {
+            buffer.flush();
+            buffer = null;
+        }
+        do {
+            int validation = buffer == null ? VolatileImage.IMAGE_INCOMPATIBLE : buffer.validate(configuration);
+            if (validation == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (buffer != null) buffer.flush();
+                // Backed by device pixels on HiDPI displays, like the strategy buffers
+                buffer = configuration.createCompatibleVolatileImage(width, height);
+                bufferValid = false;
+            }
+            else if (validation == VolatileImage.IMAGE_RESTORED) bufferValid = false;
+            Graphics2D graphics2D = buffer.createGraphics();
+            try {
+                render(graphics2D, bufferValid ? dirtyRegion : null, alpha, width, height);
+            }
+            finally {
+                graphics2D.dispose();
+            }
+            bufferValid = !buffer.contentsLost();
+        } while (!bufferValid);
+    }
+
+    private void render(Graphics2D graphics2D, java.awt.Rectangle dirtyRegion, float alpha, int width, int height) {
+        graphics2D.setBackground(getCanvas().getBackground());
+        if (dirtyRegion == null) graphics2D.clearRect(0, 0, width, height);
+        else graphics2D.clearRect(dirtyRegion.x, dirtyRegion.y, dirtyRegion.width, dirtyRegion.height);
+        graphics.setGraphics2D(graphics2D, dirtyRegion);
+        graphics.reset();
+        ContextListener listener = getContextListener();
+        if (listener != null) listener.onPaint(this, graphics, false, alpha);
+    }
+
+    // Copies the whole buffer to the strategy and shows it
+    private void showBuffer(BufferStrategy bufferStrategy) {
+        do {
+            do {
+                Graphics2D drawGraphics = (Graphics2D) bufferStrategy.getDrawGraphics();
+                try {
+                    drawGraphics.drawImage(buffer, 0, 0, null);
+                }
+                finally {
+                    drawGraphics.dispose();
+                }
+            } while (bufferStrategy.contentsRestored());
+            bufferStrategy.show();
+        } while (bufferStrategy.contentsLost());
     }
 
     @Override
@@ -149,8 +292,9 @@ public class DesktopContext extends DesktopEmbeddedContext {
                     graphics2D.clearRect(0, 0, image.getWidth(), image.getHeight());
                     graphics.setGraphics2D(graphics2D);
                     graphics.reset();
+                    FrameClock clock = getFrameClock();
                     ContextListener listener = getContextListener();
-                    if (listener != null) listener.onPaint(this, graphics, true);
+                    if (listener != null) listener.onPaint(this, graphics, true, clock == null ? 1 : clock.getAlpha());
                 }
                 finally {
                     graphics2D.dispose();
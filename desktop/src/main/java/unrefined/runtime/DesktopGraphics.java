@@ -1,10 +1,13 @@
 package unrefined.runtime;
 
+import unrefined.context.Environment;
 import unrefined.desktop.AWTSupport;
 import unrefined.desktop.AttributedCharSequence;
 import unrefined.desktop.CharArrayIterator;
 import unrefined.desktop.FontSupport;
+import unrefined.desktop.GlyphAtlas;
 import unrefined.desktop.TextHints;
+import unrefined.desktop.TextLayoutCache;
 import unrefined.desktop.TextPathLayout;
 import unrefined.media.graphics.Bitmap;
 import unrefined.media.graphics.Brush;
@@ -41,7 +44,6 @@ import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
 import java.text.AttributedCharacterIterator;
-import java.text.AttributedString;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -50,19 +52,45 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DesktopGraphics extends Graphics {
 
+    private static final TextLayoutCache TEXT_LAYOUT_CACHE = new TextLayoutCache(
+            Environment.properties().parseIntProperty("unrefined.desktop.text.layout.cache", 1024), 256);
+
+    /**
+     * Returns the cache of the text layouts shaped by drawText, measureText and hitText, shared by all
+     * DesktopGraphics. Its capacity is read from the "unrefined.desktop.text.layout.cache" property.
+     */
+    public static TextLayoutCache getTextLayoutCache() {
+        return TEXT_LAYOUT_CACHE;
+    }
+
     private volatile Graphics2D graphics2D;
     private volatile Graphics2D background;
     private volatile int width, height;
     private volatile Info info;
+    private volatile java.awt.Rectangle dirtyRegion;
+    private volatile boolean glyphAtlasText = Environment.properties().parseBooleanProperty("unrefined.desktop.text.glyphAtlas");
 
     DesktopGraphics() {
         info = new Info();
     }
 
     void setGraphics2D(Graphics2D graphics2D) {
+        setGraphics2D(graphics2D, null);
+    }
+
+    /**
+     * Sets the graphics context, restricted to the dirty region in the default user space of the surface,
+     * that setClip and clear can not exceed. A null region is the whole surface.
+     */
+    void setGraphics2D(Graphics2D graphics2D, java.awt.Rectangle dirtyRegion) {
+        this.dirtyRegion = dirtyRegion;
         this.graphics2D = graphics2D;
         this.background = (Graphics2D) graphics2D.create();
         this.background.setComposite(AlphaComposite.Src);
+        if (dirtyRegion != null) {
+            graphics2D.setClip(dirtyRegion);
+            background.setClip(dirtyRegion);
+        }
     }
 
     public DesktopGraphics(Graphics2D graphics2D, int width, int height) {
@@ -239,6 +267,7 @@ public class DesktopGraphics extends Graphics {
     public void drawText(CharSequence text, int start, int end, float x, float y) {
         if (isDisposed()) throw new AlreadyDisposedException();
         int textAlignment = getTextAlignment();
+        if (glyphAtlasText && drawGlyphAtlasText(text, start, end, x, y, textAlignment)) return;
         TextLayout textLayout;
         if (text instanceof String) {
             String string = (String) text;
@@ -247,13 +276,9 @@ public class DesktopGraphics extends Graphics {
                 graphics2D.drawString(string, x, y);
                 return;
             }
-            else textLayout = new TextLayout(
-                    new AttributedString(string.substring(start, end), graphics2D.getFont().getAttributes()).getIterator(),
-                    graphics2D.getFontRenderContext());
+            else textLayout = getTextLayout(string, start, end);
         }
-        else textLayout = new TextLayout(
-                    new AttributedCharSequence(text.subSequence(start, end), graphics2D.getFont().getAttributes()).getIterator(),
-                    graphics2D.getFontRenderContext());
+        else textLayout = getTextLayout(text, start, end);
         float advance = textLayout.getAdvance();
         switch (textAlignment) {
             case Text.Alignment.END: x -= advance; break;
@@ -266,9 +291,7 @@ public class DesktopGraphics extends Graphics {
     @Override
     public void drawText(CharSequence text, int start, int end, Transform transform) {
         if (isDisposed()) throw new AlreadyDisposedException();
-        TextLayout textLayout = new TextLayout(
-                new AttributedCharSequence(text.subSequence(start, end), graphics2D.getFont().getAttributes()).getIterator(),
-                graphics2D.getFontRenderContext());
+        TextLayout textLayout = getTextLayout(text, start, end);
         int textAlignment = getTextAlignment();
         if (getStyle() == Style.STROKE && textAlignment == Text.Alignment.START)
             graphics2D.draw(textLayout.getOutline(((DesktopTransform) transform).getAffineTransform()));
@@ -344,29 +367,12 @@ public class DesktopGraphics extends Graphics {
     @Override
     public float measureText(CharSequence text, int start, int end) {
         if (isDisposed()) throw new AlreadyDisposedException();
-        FontMetrics fontMetrics = graphics2D.getFontMetrics();
-        Rectangle2D bounds2D;
-        if (text instanceof String) {
-            String string = (String) text;
-            bounds2D = fontMetrics.getStringBounds(string, start, end, graphics2D);
-        }
-        else if (text instanceof PhantomString) {
-            PhantomString string = (PhantomString) text;
-            bounds2D = fontMetrics.getStringBounds(string.array(), start, end, graphics2D);
-        }
-        else {
-            AttributedCharacterIterator iterator = new AttributedCharSequence(text).getIterator();
-            bounds2D = fontMetrics.getStringBounds(iterator, start, end, graphics2D);
-        }
-        return (float) bounds2D.getWidth();
+        return start == end ? 0 : getTextLayout(text, start, end).getAdvance();
     }
 
     @Override
     public float measureText(char[] text, int offset, int length) {
-        if (isDisposed()) throw new AlreadyDisposedException();
-        FontMetrics fontMetrics = graphics2D.getFontMetrics();
-        Rectangle2D bounds2D = fontMetrics.getStringBounds(text, offset, length, graphics2D);
-        return (float) bounds2D.getWidth();
+        return measureText(new PhantomString(text, offset, length));
     }
 
     @Override
@@ -374,26 +380,22 @@ public class DesktopGraphics extends Graphics {
         if (isDisposed()) throw new AlreadyDisposedException();
         FontMetrics fontMetrics = graphics2D.getFontMetrics();
         LineMetrics lineMetrics;
-        Rectangle2D bounds2D;
         if (text instanceof String) {
             String string = (String) text;
             lineMetrics = fontMetrics.getLineMetrics(string, start, end, graphics2D);
-            bounds2D = fontMetrics.getStringBounds(string, start, end, graphics2D);
         }
         else if (text instanceof PhantomString) {
             PhantomString string = (PhantomString) text;
             lineMetrics = fontMetrics.getLineMetrics(string.array(), start, end, graphics2D);
-            bounds2D = fontMetrics.getStringBounds(string.array(), start, end, graphics2D);
         }
         else {
             AttributedCharacterIterator iterator = new AttributedCharSequence(text).getIterator();
             lineMetrics = fontMetrics.getLineMetrics(iterator, start, end, graphics2D);
-            bounds2D = fontMetrics.getStringBounds(iterator, start, end, graphics2D);
         }
         if (metrics != null) metrics.setMetrics(lineMetrics.getBaselineOffsets()[lineMetrics.getBaselineIndex()],
                 lineMetrics.getAscent(), lineMetrics.getDescent(), lineMetrics.getLeading(),
                 fontMetrics.getMaxAscent(), fontMetrics.getMaxDescent(), fontMetrics.getMaxAdvance());
-        if (bounds != null) AWTSupport.floatRectangle(bounds2D, bounds);
+        if (bounds != null) AWTSupport.floatRectangle(getStringBounds(text, start, end), bounds);
     }
 
     @Override
@@ -421,21 +423,7 @@ public class DesktopGraphics extends Graphics {
     @Override
     public void measureText(CharSequence text, int start, int end, RectangleF bounds) {
         if (isDisposed()) throw new AlreadyDisposedException();
-        FontMetrics fontMetrics = graphics2D.getFontMetrics();
-        Rectangle2D bounds2D;
-        if (text instanceof String) {
-            String string = (String) text;
-            bounds2D = fontMetrics.getStringBounds(string, start, end, graphics2D);
-        }
-        else if (text instanceof PhantomString) {
-            PhantomString string = (PhantomString) text;
-            bounds2D = fontMetrics.getStringBounds(string.array(), start, end, graphics2D);
-        }
-        else {
-            AttributedCharacterIterator iterator = new AttributedCharSequence(text).getIterator();
-            bounds2D = fontMetrics.getStringBounds(iterator, start, end, graphics2D);
-        }
-        AWTSupport.floatRectangle(bounds2D, bounds);
+        AWTSupport.floatRectangle(getStringBounds(text, start, end), bounds);
     }
 
     @Override
@@ -443,11 +431,10 @@ public class DesktopGraphics extends Graphics {
         if (isDisposed()) throw new AlreadyDisposedException();
         FontMetrics fontMetrics = graphics2D.getFontMetrics();
         LineMetrics lineMetrics = fontMetrics.getLineMetrics(text, offset, length, graphics2D);
-        Rectangle2D bounds2D = fontMetrics.getStringBounds(text, offset, length, graphics2D);
         if (metrics != null) metrics.setMetrics(lineMetrics.getBaselineOffsets()[lineMetrics.getBaselineIndex()],
                 lineMetrics.getAscent(), lineMetrics.getDescent(), lineMetrics.getLeading(),
                 fontMetrics.getMaxAscent(), fontMetrics.getMaxDescent(), fontMetrics.getMaxAdvance());
-        if (bounds != null) AWTSupport.floatRectangle(bounds2D, bounds);
+        if (bounds != null) AWTSupport.floatRectangle(getStringBounds(new PhantomString(text, offset, length), 0, length), bounds);
     }
 
     @Override
@@ -462,18 +449,42 @@ public class DesktopGraphics extends Graphics {
 
     @Override
     public void measureText(char[] text, int offset, int length, RectangleF bounds) {
-        if (isDisposed()) throw new AlreadyDisposedException();
-        FontMetrics fontMetrics = graphics2D.getFontMetrics();
-        Rectangle2D bounds2D = fontMetrics.getStringBounds(text, offset, length, graphics2D);
-        AWTSupport.floatRectangle(bounds2D, bounds);
+        measureText(new PhantomString(text, offset, length), bounds);
+    }
+
+    private boolean drawGlyphAtlasText(CharSequence text, int start, int end, float x, float y, int textAlignment) {
+        if (start == end || getStyle() != Style.FILL || !(graphics2D.getPaint() instanceof Color) ||
+                (graphics2D.getTransform().getType() & ~AffineTransform.TYPE_TRANSLATION) != 0) return false;
+        GlyphAtlas glyphAtlas = GlyphAtlas.of(graphics2D.getFont(), graphics2D.getFontRenderContext());
+        if (glyphAtlas == null) return false;
+        float alignment;
+        switch (textAlignment) {
+            case Text.Alignment.END: alignment = 1; break;
+            case Text.Alignment.MIDDLE: alignment = 0.5f; break;
+            default: alignment = 0; break;
+        }
+        return glyphAtlas.drawText(graphics2D, text, start, end, x, y, alignment);
+    }
+
+    private TextLayout getTextLayout(CharSequence text, int start, int end) {
+        return TEXT_LAYOUT_CACHE.getTextLayout(text, start, end, graphics2D.getFont(), graphics2D.getFontRenderContext());
+    }
+
+    /**
+     * Returns the logical bounds of the text, as {@link java.awt.Font#getStringBounds}, from the cached layout.
+     */
+    private Rectangle2D getStringBounds(CharSequence text, int start, int end) {
+        if (start == end) return graphics2D.getFontMetrics().getStringBounds("", graphics2D);
+        TextLayout textLayout = getTextLayout(text, start, end);
+        float ascent = textLayout.getAscent();
+        return new Rectangle2D.Float(0, -ascent, textLayout.getAdvance(),
+                ascent + textLayout.getDescent() + textLayout.getLeading());
     }
 
     @Override
     public void hitText(CharSequence text, int start, int end, float xOffset, Text.HitInfo hitInfo) {
         if (isDisposed()) throw new AlreadyDisposedException();
-        TextLayout textLayout = new TextLayout(
-                new AttributedCharSequence(text.subSequence(start, end), graphics2D.getFont().getAttributes()).getIterator(),
-                graphics2D.getFontRenderContext());
+        TextLayout textLayout = getTextLayout(text, start, end);
         TextHitInfo textHitInfo = textLayout.hitTestChar(xOffset, 0);
         int insertionIndex = textHitInfo.getInsertionIndex();
         Rectangle2D bounds = textLayout.getBounds();
@@ -504,7 +515,14 @@ public class DesktopGraphics extends Graphics {
     public void setClip(Path clip) {
         if (isDisposed()) throw new AlreadyDisposedException();
         info.setClip(clip);
-        graphics2D.setClip(clip == null ? null : ((DesktopPath) clip).getPath2D());
+        if (dirtyRegion == null) graphics2D.setClip(clip == null ? null : ((DesktopPath) clip).getPath2D());
+        else {
+            AffineTransform transform = graphics2D.getTransform();
+            graphics2D.setTransform(AWTSupport.getDefaultTransform(graphics2D));
+            graphics2D.setClip(dirtyRegion);
+            graphics2D.setTransform(transform);
+            if (clip != null) graphics2D.clip(((DesktopPath) clip).getPath2D());
+        }
     }
 
     @Override
@@ -754,6 +772,25 @@ public class DesktopGraphics extends Graphics {
                 subpixelText ? RenderingHints.VALUE_FRACTIONALMETRICS_ON : RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
     }
 
+    /**
+     * Returns whether filled text is drawn from {@link GlyphAtlas}es, see {@link #setGlyphAtlasText(boolean)}.
+     */
+    public boolean isGlyphAtlasText() {
+        if (isDisposed()) throw new AlreadyDisposedException();
+        return glyphAtlasText;
+    }
+
+    /**
+     * Sets whether filled text drawn at a position with a solid color brush is blitted from a {@link GlyphAtlas}
+     * of the current font, which is much faster than shaping it for consoles and HUDs drawing many glyphs a frame.
+     * Glyphs are snapped to whole pixels. Complex scripts, decorated or transformed fonts, and transformed graphics
+     * fall back to the outline rendering. Defaults to the "unrefined.desktop.text.glyphAtlas" property.
+     */
+    public void setGlyphAtlasText(boolean glyphAtlasText) {
+        if (isDisposed()) throw new AlreadyDisposedException();
+        this.glyphAtlasText = glyphAtlasText;
+    }
+
     @Override
     public boolean isUnderlineText() {
         if (isDisposed()) throw new AlreadyDisposedException();